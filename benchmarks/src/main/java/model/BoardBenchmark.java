@@ -0,0 +1,97 @@
+package model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Board primitives, for the bitboard and the char[][] board side by side.
+ * Each operation runs once per position of the phase's set.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BoardBenchmark {
+  private static final int SET_SIZE = 3;
+
+  @Param({"opening", "midgame", "endgame"})
+  public String phase;
+
+  @Param({"bitboard", "array"})
+  public String board;
+
+  private String[] moves;
+  private IGameBoard[] boards;
+  private int[] lastColumns;
+  private int[] lastRows;
+
+  @Setup
+  public void setUp() {
+    moves = Positions.forPhase(phase);
+    boards = new IGameBoard[SET_SIZE];
+    lastColumns = new int[SET_SIZE];
+    lastRows = new int[SET_SIZE];
+    for (int i = 0; i < SET_SIZE; i ++) {
+      boards[i] = Positions.play(Positions.newBoard(board), moves[i]);
+      lastColumns[i] = moves[i].charAt(moves[i].length() - 1) - '0';
+      lastRows[i] = boards[i].getMostRecentRowFilled(lastColumns[i]);
+    }
+  }
+
+  /** A new board and every move of the position through updateBoardForMove */
+  @Benchmark
+  @OperationsPerInvocation(SET_SIZE)
+  public void updateBoardForMove(Blackhole hole) {
+    for (int i = 0; i < SET_SIZE; i ++) {
+      hole.consume(Positions.play(Positions.newBoard(board), moves[i]));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(SET_SIZE)
+  public void findWinner(Blackhole hole) {
+    for (int i = 0; i < SET_SIZE; i ++) {
+      hole.consume(boards[i].findWinner(lastRows[i], lastColumns[i],
+          Positions.FIRST, Positions.SECOND, 'N'));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(SET_SIZE)
+  public void computerFindNextWinMove(Blackhole hole) {
+    for (int i = 0; i < SET_SIZE; i ++) {
+      hole.consume(boards[i].computerFindNextWinMove(Positions.FIRST));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(SET_SIZE)
+  public void returnBoardCurrentState(Blackhole hole) {
+    for (int i = 0; i < SET_SIZE; i ++) {
+      hole.consume(boards[i].returnBoardCurrentState());
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(SET_SIZE)
+  public void snapshot(Blackhole hole) {
+    for (int i = 0; i < SET_SIZE; i ++) {
+      hole.consume(boards[i].snapshot());
+    }
+  }
+}
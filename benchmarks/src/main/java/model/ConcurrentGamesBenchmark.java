@@ -0,0 +1,103 @@
+package model;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import views.IListener;
+
+/**
+ * Many threads making moves on many human-vs-human games at once, both
+ * players of a game racing each other. Finished games are replaced by
+ * new ones. The teardown checks that every board still holds a legal
+ * turn order, so the run doubles as a stress test of the per-game locking.
+ * With metrics on, all games share one GameMetrics, as under a
+ * GameSessionManager.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class ConcurrentGamesBenchmark {
+  @Param({"16", "1024"})
+  public int games;
+
+  @Param({"false", "true"})
+  public boolean metrics;
+
+  private AtomicReferenceArray<Game> table;
+  private GameMetrics gameMetrics;
+
+  static class Game {
+    final GameModeHumanvsHuman model = new GameModeHumanvsHuman();
+    final IListener[] players = {
+      new GameTurnBenchmark.QuietListener(), new GameTurnBenchmark.QuietListener()
+    };
+
+    Game(GameMetrics metrics) {
+      model.setMetrics(metrics);
+      model.registerListener(players[0], true);
+      model.registerListener(players[1], true);
+    }
+  }
+
+  @Setup
+  public void setUp() {
+    gameMetrics = metrics ? new GameMetrics() : null;
+    table = new AtomicReferenceArray<Game>(games);
+    for (int i = 0; i < games; i ++) {
+      table.set(i, new Game(gameMetrics));
+    }
+  }
+
+  @Benchmark
+  public boolean selectColumnForMove() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int index = random.nextInt(games);
+    Game game = table.get(index);
+    boolean moved = game.model.selectColumnForMove(game.players[random.nextInt(2)],
+        random.nextInt(BitBoard.COLS));
+    if (!moved && !game.model.gameInProgress) {
+      table.compareAndSet(index, game, new Game(gameMetrics));
+    }
+    return moved;
+  }
+
+  @TearDown
+  public void checkBoards() {
+    for (int i = 0; i < games; i ++) {
+      char[][] board = table.get(i).model.getCopyOfGameBoard();
+      int first = 0;
+      int second = 0;
+      for (char[] row : board) {
+        for (char cell : row) {
+          if (cell == Positions.FIRST) {
+            first ++;
+          } else if (cell == Positions.SECOND) {
+            second ++;
+          }
+        }
+      }
+      if (first != second && first != second + 1) {
+        throw new IllegalStateException("Game " + i + " lost its turn order");
+      }
+    }
+  }
+}
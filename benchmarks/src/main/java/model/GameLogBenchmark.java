@@ -0,0 +1,80 @@
+package model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import utilities.Difficulty;
+import views.IListener;
+
+/**
+ * Latency of one turn of GameModeHumanvsComputer.selectColumnForMove
+ * with and without the moves going to a GameLog. The computer plays
+ * random moves, so the turn is cheap and the cost of logging its two
+ * moves is not hidden behind a search. syncBatchMoves 0 runs without
+ * a log; 1 forces the file to disk after every move. The log's writer
+ * thread competes for the CPU with the game on machines with few
+ * cores, which shows in the tail rather than in the median.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class GameLogBenchmark {
+  @Param({"0", "1", "64"})
+  public int syncBatchMoves;
+
+  private Path file;
+  private GameLog log;
+  private GameModeHumanvsComputer game;
+  private IListener player;
+
+  @Setup(Level.Trial)
+  public void openLog() throws IOException {
+    if (syncBatchMoves > 0) {
+      file = Files.createTempFile("game-log", ".bin");
+      Files.delete(file);
+      log = GameLog.open(file, syncBatchMoves, 10);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void closeLog() throws IOException {
+    if (log != null) {
+      log.close();
+      Files.delete(file);
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void newGame() {
+    game = new GameModeHumanvsComputer(GameFactory.newStrategy(Difficulty.RANDOM, 0));
+    if (log != null) {
+      game.setGameLog(log, "benchmark");
+    }
+    player = new GameTurnBenchmark.QuietListener();
+    game.registerListener(player, true);
+  }
+
+  @Benchmark
+  public boolean selectColumnForMove() {
+    return game.selectColumnForMove(player, BitBoard.COLS / 2);
+  }
+}
@@ -0,0 +1,107 @@
+package model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import views.IListener;
+
+/**
+ * One full turn of GameModeHumanvsComputer.selectColumnForMove: the
+ * human's move, its notification and win checks, then the computer's
+ * search, move and notification. Each invocation starts from a new game
+ * set up at the first position of the phase, with the transposition
+ * table cleared. The game's setup is not timed, but its allocations do
+ * show up in the GC profiler's figures.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class GameTurnBenchmark {
+  @Param({"opening", "midgame", "endgame"})
+  public String phase;
+
+  private final TranspositionTable table = new TranspositionTable(4);
+  private GameModeHumanvsComputer game;
+  private IListener player;
+  private int column;
+
+  /** Listener that ignores every event */
+  static class QuietListener implements IListener {
+    @Override
+    public void gameStartSignal(IListener firstPlayerToGo) {
+    }
+
+    @Override
+    public void invalidTurnNotify() {
+    }
+
+    @Override
+    public void invalidMoveNotify() {
+    }
+
+    @Override
+    public void gameNotInProgressNotify() {
+    }
+
+    @Override
+    public void correctMoveNotify() {
+    }
+
+    @Override
+    public void gameWinNotify(char winnerPiece) {
+    }
+
+    @Override
+    public void gameTied() {
+    }
+
+    @Override
+    public char getPiece() {
+      return Positions.FIRST;
+    }
+
+    @Override
+    public String getId() {
+      return "Player1";
+    }
+
+    @Override
+    public void shutFrame() {
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void newGame() {
+    String moves = Positions.forPhase(phase)[0];
+    table.clear();
+    game = new GameModeHumanvsComputer(table);
+    player = new QuietListener();
+    game.registerListener(player, true);
+    Positions.play(game.board, moves);
+    BitBoard board = (BitBoard) game.board;
+    column = 0;
+    while (!board.canPlay(column)) {
+      column ++;
+    }
+  }
+
+  @Benchmark
+  public boolean selectColumnForMove() {
+    return game.selectColumnForMove(player, column);
+  }
+}
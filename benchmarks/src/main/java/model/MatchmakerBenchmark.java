@@ -0,0 +1,80 @@
+package model;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A burst of players arriving on many threads at once, with ratings
+ * spread over the given number of bands, and a scheduled pass pairing
+ * whoever is left waiting. Each operation is one arrival; every game
+ * is ended as soon as it is made, so the session manager stays small.
+ * The queue length and wait percentiles are printed after each iteration.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class MatchmakerBenchmark {
+  private static final int BAND_WIDTH = 100;
+
+  @Param({"1", "30"})
+  public int bands;
+
+  private GameSessionManager games;
+  private Matchmaker matchmaker;
+  private ScheduledExecutorService executor;
+  private final IMatchListener endAtOnce = new IMatchListener() {
+    @Override
+    public void matchFound(IGameMode game, String gameId) {
+      games.endGame(gameId);
+    }
+  };
+
+  @Setup
+  public void setUp() {
+    games = new GameSessionManager(60000, 1);
+    matchmaker = new Matchmaker(games, "match-", BAND_WIDTH, bands * BAND_WIDTH - 1, 100);
+    executor = Executors.newSingleThreadScheduledExecutor();
+    matchmaker.scheduleMatching(executor, 1);
+  }
+
+  @Benchmark
+  public Matchmaker.Ticket enqueue() {
+    int rating = ThreadLocalRandom.current().nextInt(bands * BAND_WIDTH);
+    return matchmaker.enqueue(new GameTurnBenchmark.QuietListener(), rating, endAtOnce);
+  }
+
+  @TearDown(Level.Iteration)
+  public void printQueue() {
+    System.out.println("  queue " + matchmaker.getQueueLength()
+        + ", matches " + matchmaker.getMatchesMade()
+        + ", wait us p50 " + matchmaker.getWaitPercentileMicros(0.5)
+        + " p99 " + matchmaker.getWaitPercentileMicros(0.99)
+        + " p99.9 " + matchmaker.getWaitPercentileMicros(0.999));
+  }
+
+  @TearDown
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,56 @@
+package model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Monte Carlo tree search from the position sets, scored in playouts
+ * per second. The tree is cleared before every invocation so each
+ * search grows its own.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MctsBenchmark {
+  private static final int PLAYOUTS = 10000;
+
+  @Param({"opening", "midgame", "endgame"})
+  public String phase;
+
+  private BitBoard board;
+  private MonteCarloSearch search;
+
+  @Setup
+  public void setUp() {
+    board = BitBoard.fromMoves(Positions.forPhase(phase)[0], Positions.FIRST, Positions.SECOND);
+    search = new MonteCarloSearch(1 << 18, PLAYOUTS);
+    search.setSeed(1);
+  }
+
+  @Setup(Level.Invocation)
+  public void clearTree() {
+    search.clear();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(PLAYOUTS)
+  public int playouts() {
+    return search.findBestMove(board, 0);
+  }
+}
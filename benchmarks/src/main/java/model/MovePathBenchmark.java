@@ -0,0 +1,71 @@
+package model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import views.IListener;
+
+/**
+ * The move-process-notify path in steady state: one game played over
+ * and over, each finished game rewound with replayToPly(0) rather than
+ * replaced, so nothing is set up between moves. Each operation is one
+ * selectColumnForMove, with the computer's reply in the computer mode;
+ * run with -prof gc to check the path allocates nothing (0 B/op).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MovePathBenchmark {
+  @Param({"human", "computer"})
+  public String mode;
+
+  private GameModeBase game;
+  private BitBoard board;
+  private final IListener[] players = {
+    new GameTurnBenchmark.QuietListener(), new GameTurnBenchmark.QuietListener()
+  };
+
+  @Setup
+  public void setUp() {
+    if (mode.equals("human")) {
+      game = new GameModeHumanvsHuman();
+      game.registerListener(players[0], true);
+      game.registerListener(players[1], true);
+    } else {
+      GameModeHumanvsComputer computerGame = new GameModeHumanvsComputer(new TranspositionTable(4));
+      computerGame.setSearchDepth(4);
+      computerGame.setEndgameSolverCells(0);
+      game = computerGame;
+      game.registerListener(players[0], true);
+    }
+    board = (BitBoard) game.board;
+  }
+
+  @Benchmark
+  public boolean selectColumnForMove() {
+    if (!game.gameInProgress) {
+      game.replayToPly(players[0], 0);
+    }
+    int ply = game.getPly();
+    // Spread the moves over the board, the same ones every game
+    int column = (ply * 3) % BitBoard.COLS;
+    while (!board.canPlay(column)) {
+      column = (column + 1) % BitBoard.COLS;
+    }
+    return game.selectColumnForMove(players[ply % 2], column);
+  }
+}
@@ -0,0 +1,65 @@
+package model;
+
+/**
+ * Standard position sets for the benchmarks, as zero-based column
+ * sequences with the first player ('Y') moving first. Every position
+ * has an even number of moves, so 'Y' is to move, and nobody has won.
+ */
+final class Positions {
+  static final char FIRST = 'Y';
+  static final char SECOND = 'R';
+
+  static final String[] OPENING = {
+    "3324",
+    "541363",
+    "02511202",
+  };
+
+  static final String[] MIDGAME = {
+    "03455623345506",
+    "3054212646531401",
+    "531122611446250401",
+  };
+
+  static final String[] ENDGAME = {
+    "1404126532553461215344231543",
+    "234046135056531500356354232002",
+    "44415364224010050602522112656410",
+  };
+
+  private Positions() {
+  }
+
+  /**
+   * @param phase "opening", "midgame" or "endgame"
+   */
+  static String[] forPhase(String phase) {
+    if (phase.equals("opening")) {
+      return OPENING;
+    } else if (phase.equals("midgame")) {
+      return MIDGAME;
+    } else if (phase.equals("endgame")) {
+      return ENDGAME;
+    }
+    throw new IllegalArgumentException("Unknown phase " + phase);
+  }
+
+  /**
+   * @param implementation "bitboard" or "array"
+   */
+  static IGameBoard newBoard(String implementation) {
+    if (implementation.equals("bitboard")) {
+      return new BitBoard(FIRST, SECOND);
+    } else if (implementation.equals("array")) {
+      return new GameBoard();
+    }
+    throw new IllegalArgumentException("Unknown board " + implementation);
+  }
+
+  static IGameBoard play(IGameBoard board, String moves) {
+    for (int i = 0; i < moves.length(); i ++) {
+      board.updateBoardForMove(moves.charAt(i) - '0', (i % 2 == 0) ? FIRST : SECOND);
+    }
+    return board;
+  }
+}
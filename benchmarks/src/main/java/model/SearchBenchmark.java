@@ -0,0 +1,68 @@
+package model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The computer's move search on its own, from the position sets.
+ * The transposition table is cleared before every invocation so no
+ * search profits from the one before.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SearchBenchmark {
+  private static final int SET_SIZE = 3;
+
+  @Param({"opening", "midgame", "endgame"})
+  public String phase;
+
+  @Param({"6", "8"})
+  public int depth;
+
+  private BitBoard[] boards;
+  private TranspositionTable table;
+  private AlphaBetaSearch search;
+
+  @Setup
+  public void setUp() {
+    String[] moves = Positions.forPhase(phase);
+    boards = new BitBoard[SET_SIZE];
+    for (int i = 0; i < SET_SIZE; i ++) {
+      boards[i] = BitBoard.fromMoves(moves[i], Positions.FIRST, Positions.SECOND);
+    }
+    table = new TranspositionTable(4);
+    search = new AlphaBetaSearch(depth, table);
+  }
+
+  @Setup(Level.Invocation)
+  public void clearTable() {
+    table.clear();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(SET_SIZE)
+  public int findBestMove() {
+    int moves = 0;
+    for (int i = 0; i < SET_SIZE; i ++) {
+      moves += search.findBestMove(boards[i], 0);
+    }
+    return moves;
+  }
+}
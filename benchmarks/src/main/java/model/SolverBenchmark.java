@@ -0,0 +1,63 @@
+package model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time for EndgameSolver to prove the SolvedPositions corpus, from a
+ * cleared table every invocation. That the scores are right is
+ * EndgameSolverTest's job; the corpus comes from the game's test jar.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SolverBenchmark {
+  private static final int SET_SIZE = 4;
+
+  @Param({"12", "18", "24"})
+  public int emptyCells;
+
+  private BitBoard[] boards;
+  private EndgameSolver solver;
+
+  @Setup
+  public void setUp() {
+    String[][] positions = SolvedPositions.withEmptyCells(emptyCells);
+    boards = new BitBoard[SET_SIZE];
+    solver = new EndgameSolver(BitBoard.CELLS, 4);
+    for (int i = 0; i < SET_SIZE; i ++) {
+      boards[i] = BitBoard.fromMoves(positions[i][0], Positions.FIRST, Positions.SECOND);
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void clearTable() {
+    solver.clear();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(SET_SIZE)
+  public int solve() {
+    int scores = 0;
+    for (int i = 0; i < SET_SIZE; i ++) {
+      scores += solver.solve(boards[i]);
+    }
+    return scores;
+  }
+}
@@ -0,0 +1,52 @@
+package connectfourapp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import model.GameMetrics;
+import model.GameSessionManager;
+import network.GameServer;
+
+/**
+ * Serves games to remote players over the binary protocol in
+ * network.Protocol, printing the number of connections and the game
+ * metrics every 10 seconds. The metrics are also exported over JMX as
+ * connectfour:type=GameMetrics,name=server.
+ * 
+ * Arguments (all optional): port, number of threads playing the
+ * games (0 to play them on the network thread), idle timeout in
+ * seconds, transposition table megabytes.
+ * Defaults: port 7474, one thread per core, 60 seconds, 64 MB.
+ */
+public class GameServerApp {
+  public static void main(String[] args) throws IOException {
+    int port = (args.length > 0) ? Integer.parseInt(args[0]) : 7474;
+    int threads = (args.length > 1) ? Integer.parseInt(args[1])
+        : Runtime.getRuntime().availableProcessors();
+    long idleSeconds = (args.length > 2) ? Long.parseLong(args[2]) : 60;
+    int tableMegabytes = (args.length > 3) ? Integer.parseInt(args[3]) : 64;
+
+    GameSessionManager games = new GameSessionManager(idleSeconds * 1000, tableMegabytes);
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    games.scheduleEviction(scheduler, 1000);
+    final GameMetrics metrics = new GameMetrics();
+    metrics.register("server");
+    games.setMetrics(metrics);
+    ExecutorService gameExecutor = (threads > 0) ? Executors.newFixedThreadPool(threads) : null;
+    final GameServer server = new GameServer(games, new InetSocketAddress(port), gameExecutor);
+    server.start();
+    System.out.println("Listening on port " + server.getPort());
+    scheduler.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        System.out.println(server.getConnectionCount() + " connections, "
+            + server.getAcceptedCount() + " accepted");
+        System.out.print(metrics.dump());
+      }
+    }, 10, 10, TimeUnit.SECONDS);
+  }
+}
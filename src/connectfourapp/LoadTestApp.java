@@ -0,0 +1,31 @@
+package connectfourapp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+import network.LoadTestClient;
+
+/**
+ * Plays random games against a running GameServerApp from many
+ * simulated connections on one thread, and prints the throughput and
+ * move latency.
+ * 
+ * Arguments (all optional): host, port, number of connections,
+ * seconds to play once all are connected, number of spectators
+ * watching the first pair's games.
+ * Defaults: localhost, port 7474, 10000 connections, 30 seconds,
+ * no spectators.
+ */
+public class LoadTestApp {
+  public static void main(String[] args) throws IOException {
+    String host = (args.length > 0) ? args[0] : "localhost";
+    int port = (args.length > 1) ? Integer.parseInt(args[1]) : 7474;
+    int connections = (args.length > 2) ? Integer.parseInt(args[2]) : 10000;
+    long seconds = (args.length > 3) ? Long.parseLong(args[3]) : 30;
+    int spectators = (args.length > 4) ? Integer.parseInt(args[4]) : 0;
+
+    LoadTestClient client = new LoadTestClient(new InetSocketAddress(host, port),
+        connections, spectators, System.nanoTime());
+    System.out.print(client.run(seconds * 1000));
+  }
+}
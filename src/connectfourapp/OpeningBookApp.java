@@ -0,0 +1,32 @@
+package connectfourapp;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import model.OpeningBookGenerator;
+
+/**
+ * Generates the opening book read by OpeningBook.open(..).
+ * 
+ * Arguments (all optional): output file, number of moves covered,
+ * search depth for each position or "solved" to prove every move
+ * (slow: hours even for a few moves), transposition table megabytes.
+ * Defaults: openingbook.bin, 8 moves, depth 12, 64 MB.
+ */
+public class OpeningBookApp {
+  public static void main(String[] args) throws IOException {
+    Path file = Paths.get((args.length > 0) ? args[0] : "openingbook.bin");
+    int maxPly = (args.length > 1) ? Integer.parseInt(args[1]) : 8;
+    String depth = (args.length > 2) ? args[2] : "12";
+    int tableMegabytes = (args.length > 3) ? Integer.parseInt(args[3]) : 64;
+
+    OpeningBookGenerator generator = depth.equals("solved")
+        ? OpeningBookGenerator.solved(maxPly, tableMegabytes)
+        : new OpeningBookGenerator(maxPly, Integer.parseInt(depth), tableMegabytes);
+    long start = System.nanoTime();
+    int positions = generator.generate(file);
+    System.out.println(positions + " positions written to " + file + " in "
+        + (System.nanoTime() - start) / 1000000 + " ms");
+  }
+}
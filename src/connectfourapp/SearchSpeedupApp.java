@@ -0,0 +1,24 @@
+package connectfourapp;
+
+import model.ParallelSearch;
+
+/**
+ * Times the computer's search of one position with 1, 2, 4, ... threads
+ * and prints the speedup of each thread count over one thread.
+ *
+ * Arguments (all optional): moves to the position (zero-based columns,
+ * "-" for the empty board), search depth, most threads, transposition
+ * table megabytes.
+ * Defaults: the empty board, depth 18, every core, 64 MB.
+ */
+public class SearchSpeedupApp {
+  public static void main(String[] args) {
+    String moves = (args.length > 0 && !args[0].equals("-")) ? args[0] : "";
+    int depth = (args.length > 1) ? Integer.parseInt(args[1]) : 18;
+    int maxThreads = (args.length > 2) ? Integer.parseInt(args[2])
+        : Runtime.getRuntime().availableProcessors();
+    int tableMegabytes = (args.length > 3) ? Integer.parseInt(args[3]) : 64;
+
+    System.out.print(ParallelSearch.reportSpeedup(moves, depth, maxThreads, tableMegabytes));
+  }
+}
@@ -0,0 +1,26 @@
+package connectfourapp;
+
+import model.SelfPlayReport;
+import model.SelfPlayRunner;
+
+/**
+ * Headless computer-vs-computer games for evaluating the AI and
+ * load-testing the model.
+ * 
+ * Arguments (all optional): number of games, number of threads,
+ * first player's search depth, computer's search depth.
+ * Defaults: 100000 games on every core, both sides at depth 2.
+ */
+public class SelfPlayApp {
+  public static void main(String[] args) throws InterruptedException {
+    long games = (args.length > 0) ? Long.parseLong(args[0]) : 100000;
+    int threads = (args.length > 1) ? Integer.parseInt(args[1])
+        : Runtime.getRuntime().availableProcessors();
+    int firstPlayerDepth = (args.length > 2) ? Integer.parseInt(args[2]) : 2;
+    int computerDepth = (args.length > 3) ? Integer.parseInt(args[3]) : 2;
+
+    SelfPlayReport report = new SelfPlayRunner(firstPlayerDepth, computerDepth)
+        .run(games, threads);
+    System.out.print(report);
+  }
+}
@@ -0,0 +1,401 @@
+package model;
+
+/**
+ * Iteratively deepened negamax search with alpha-beta pruning over
+ * a BitBoard.
+ *
+ * Every node first scans the immediate threats: a win ends the
+ * search, a forced block is the only move tried, moves that let the
+ * opponent win next are never tried and a node with nothing else
+ * left is scored as lost without searching further.
+ *
+ * Moves are tried center column first, as central pieces take part
+ * in more lines of four, except that the previous iteration's
+ * principal variation, or else a best move remembered in the
+ * transposition table, is always tried before the rest. The table is
+ * keyed by canonical key, so mirrored positions share their entries.
+ * Positions at the depth limit are scored by counting the empty cells
+ * that would complete a line for each side. The board is searched in
+ * place with play/undo, nothing is copied.
+ */
+public class AlphaBetaSearch {
+  /** Score of a win on the next move; faster wins score higher. */
+  static final int WIN_SCORE = 1000000;
+  private static final int INFINITY = Integer.MAX_VALUE;
+  static final int[] COLUMN_ORDER = centerFirstOrder();
+
+  private int maxDepth;
+  private TranspositionTable table;
+  private long timeBudgetNanos;
+  private long deadline;
+  private boolean aborted;
+  // Set by another thread to end the search early
+  private volatile boolean stopRequested;
+  private int firstDepth = 1;
+  private long nodesSearched;
+  // Table probes of the current search, added to the table's counts at its end
+  private long tableHits;
+  private long tableMisses;
+  private long tableCollisions;
+  private long elapsedNanos;
+  private int depthReached;
+  private int scoreReached;
+
+  // Principal variation below each ply of the current iteration
+  private final int[][] pv = new int[BitBoard.CELLS + 1][BitBoard.CELLS + 1];
+  private final int[] pvLength = new int[BitBoard.CELLS + 1];
+  // Principal variation of the last completed iteration
+  private final int[] previousPv = new int[BitBoard.CELLS + 1];
+  private int previousPvLength;
+  private boolean followPv;
+  private final Threats threats = new Threats();
+
+  /**
+   * @param table cache shared between searches, null to search without one
+   */
+  public AlphaBetaSearch(int maxDepth, TranspositionTable table) {
+    setMaxDepth(maxDepth);
+    this.table = table;
+  }
+
+  public AlphaBetaSearch(int maxDepth) {
+    this(maxDepth, null);
+  }
+
+  private static int[] centerFirstOrder() {
+    int[] order = new int[BitBoard.COLS];
+    for (int i = 0; i < BitBoard.COLS; i ++) {
+      // 3, 2, 4, 1, 5, 0, 6 for seven columns
+      order[i] = BitBoard.COLS / 2 + (1 - 2 * (i % 2)) * (i + 1) / 2;
+    }
+    return order;
+  }
+
+  /**
+   * Plies searched below the current position.
+   */
+  public void setMaxDepth(int maxDepth) {
+    if (maxDepth < 1) {
+      throw new IllegalArgumentException("Search depth must be at least 1");
+    }
+    this.maxDepth = maxDepth;
+  }
+
+  public int getMaxDepth() {
+    return maxDepth;
+  }
+
+  /**
+   * Wall-clock limit for one call to findBestMove, 0 for none.
+   * The deadline is checked every 1024 nodes.
+   */
+  public void setTimeBudgetMillis(long millis) {
+    if (millis < 0) {
+      throw new IllegalArgumentException("Time budget cannot be negative");
+    }
+    timeBudgetNanos = millis * 1000000L;
+  }
+
+  public long getTimeBudgetMillis() {
+    return timeBudgetNanos / 1000000L;
+  }
+
+  public void setTranspositionTable(TranspositionTable table) {
+    this.table = table;
+  }
+
+  public TranspositionTable getTranspositionTable() {
+    return table;
+  }
+
+  /**
+   * Nodes visited by the last call to findBestMove
+   */
+  public long getNodesSearched() {
+    return nodesSearched;
+  }
+
+  /**
+   * Wall-clock time of the last call to findBestMove
+   */
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  /**
+   * Deepest iteration the last call to findBestMove completed
+   */
+  public int getDepthReached() {
+    return depthReached;
+  }
+
+  /**
+   * Score of the deepest iteration the last call to findBestMove
+   * completed, for the side to move
+   */
+  public int getScore() {
+    return scoreReached;
+  }
+
+  public long getNodesPerSecond() {
+    if (elapsedNanos == 0) {
+      return 0;
+    }
+    return nodesSearched * 1000000000L / elapsedNanos;
+  }
+
+  /**
+   * Returns the best column for side. The board is left as it was found.
+   *
+   * Searches depth 1, 2, ... up to the maximum depth, each iteration
+   * trying the previous one's principal variation first. If the time
+   * budget runs out the unfinished iteration is thrown away and the
+   * move from the deepest completed one is returned.
+   * @return -1 if the board is full
+   */
+  int findBestMove(BitBoard board, int side) {
+    if (table != null) {
+      table.newSearch();
+    }
+    return search(board, side);
+  }
+
+  /**
+   * findBestMove without starting a new table generation, for searches
+   * that share the table with others running on the same position.
+   */
+  int search(BitBoard board, int side) {
+    long start = System.nanoTime();
+    deadline = start + timeBudgetNanos;
+    aborted = false;
+    nodesSearched = 0;
+    tableHits = 0;
+    tableMisses = 0;
+    tableCollisions = 0;
+    depthReached = 0;
+    scoreReached = 0;
+    previousPvLength = 0;
+    int bestColumn = -1;
+    int depthLimit = Math.min(maxDepth, BitBoard.CELLS - board.getMoveCount());
+    int startDepth = Math.max(1, Math.min(firstDepth, depthLimit));
+    for (int depth = startDepth; depth <= depthLimit; depth ++) {
+      followPv = true;
+      int score = negamax(board, side, depth, 0, -INFINITY, INFINITY);
+      if (aborted) {
+        break;
+      }
+      bestColumn = pv[0][0];
+      depthReached = depth;
+      scoreReached = score;
+      previousPvLength = pvLength[0];
+      System.arraycopy(pv[0], 0, previousPv, 0, previousPvLength);
+      // Win or loss proven, deeper search will not change the move
+      if (isProven(score)) {
+        break;
+      }
+    }
+    if (bestColumn == -1) {
+      bestColumn = firstPlayableColumn(board);
+    }
+    if (table != null) {
+      table.addProbes(tableHits, tableMisses, tableCollisions);
+    }
+    elapsedNanos = System.nanoTime() - start;
+    return bestColumn;
+  }
+
+  /**
+   * Whether a score is a win or loss found by the search rather than an
+   * evaluation, and so holds at any depth.
+   */
+  static boolean isProven(int score) {
+    return Math.abs(score) > WIN_SCORE - BitBoard.CELLS - 1;
+  }
+
+  private static int firstPlayableColumn(BitBoard board) {
+    for (int col : COLUMN_ORDER) {
+      if (board.canPlay(col)) {
+        return col;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Move ordering: index -1 is the remembered best move, then the
+   * center-first order with that move skipped.
+   */
+  private static int moveAt(int i, int firstMove) {
+    if (i == -1) {
+      return firstMove;
+    }
+    int col = COLUMN_ORDER[i];
+    return (col == firstMove) ? -1 : col;
+  }
+
+  private boolean outOfTime() {
+    if (!aborted && (nodesSearched & 1023) == 0) {
+      aborted = stopRequested
+          || (timeBudgetNanos > 0 && System.nanoTime() - deadline > 0);
+    }
+    return aborted;
+  }
+
+  /**
+   * Depth of the first iteration, so that helper searches sharing a
+   * table can work ahead of each other.
+   */
+  void setFirstDepth(int depth) {
+    firstDepth = depth;
+  }
+
+  /**
+   * Asks a search running on another thread to finish. It still
+   * returns the move of its deepest completed iteration.
+   */
+  void requestStop() {
+    stopRequested = true;
+  }
+
+  void clearStop() {
+    stopRequested = false;
+  }
+
+  /**
+   * @param ply distance from the root, where the principal variation
+   * found below this node is recorded
+   */
+  private int negamax(BitBoard board, int side, int depth, int ply, int alpha, int beta) {
+    nodesSearched ++;
+    pvLength[ply] = 0;
+    if (outOfTime()) {
+      return 0;
+    }
+    if (board.getMoveCount() == BitBoard.CELLS) {
+      return 0;
+    }
+    threats.scan(board, side);
+    long wins = threats.getWins();
+    if (wins != 0) {
+      pv[ply][0] = BitBoard.columnOf(wins);
+      pvLength[ply] = 1;
+      return WIN_SCORE - board.getMoveCount();
+    }
+    long moves = threats.getSafeMoves();
+    if (moves == 0) {
+      // Whatever is played, the opponent wins next move
+      long forced = threats.getForcedBlocks();
+      pv[ply][0] = BitBoard.columnOf((forced != 0) ? forced : threats.getPlayable());
+      pvLength[ply] = 1;
+      return -(WIN_SCORE - board.getMoveCount() - 1);
+    }
+    if (depth == 0) {
+      return evaluate(board, side);
+    }
+
+    long key = 0;
+    boolean mirrored = false;
+    int firstMove = -1;
+    if (followPv && ply < previousPvLength) {
+      firstMove = previousPv[ply];
+    } else {
+      followPv = false;
+    }
+    if (table != null) {
+      // A position and its reflection share one entry, whose move
+      // is stored as played on the board with the smaller key
+      key = board.getKey();
+      long mirrorKey = BitBoard.mirror(key);
+      if (mirrorKey < key) {
+        key = mirrorKey;
+        mirrored = true;
+      }
+      long entry = table.probe(key);
+      if (entry == 0) {
+        tableMisses ++;
+        if (table.isCollision(key)) {
+          tableCollisions ++;
+        }
+      } else {
+        tableHits ++;
+        if (firstMove == -1) {
+          firstMove = TranspositionTable.move(entry);
+          if (mirrored) {
+            firstMove = BitBoard.mirrorColumn(firstMove);
+          }
+        }
+        // The root always searches, so that it has a move to return
+        if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+          int score = TranspositionTable.score(entry);
+          int bound = TranspositionTable.bound(entry);
+          if (bound == TranspositionTable.BOUND_EXACT) {
+            return score;
+          } else if (bound == TranspositionTable.BOUND_LOWER) {
+            alpha = Math.max(alpha, score);
+          } else {
+            beta = Math.min(beta, score);
+          }
+          if (alpha >= beta) {
+            return score;
+          }
+        }
+      }
+    }
+
+    int originalAlpha = alpha;
+    int best = -INFINITY;
+    int bestMove = -1;
+    for (int i = -1; i < BitBoard.COLS; i ++) {
+      int col = moveAt(i, firstMove);
+      if (col == -1 || (moves & BitBoard.columnMask(col)) == 0) {
+        continue;
+      }
+      board.play(col, side);
+      int score = -negamax(board, 1 - side, depth - 1, ply + 1, -beta, -alpha);
+      board.undo(col);
+      followPv = false;
+      if (aborted) {
+        return 0;
+      }
+      if (score > best) {
+        best = score;
+        bestMove = col;
+      }
+      if (score > alpha) {
+        alpha = score;
+        pv[ply][0] = col;
+        System.arraycopy(pv[ply + 1], 0, pv[ply], 1, pvLength[ply + 1]);
+        pvLength[ply] = pvLength[ply + 1] + 1;
+      }
+      if (alpha >= beta) {
+        break;
+      }
+    }
+
+    if (table != null) {
+      int bound = TranspositionTable.BOUND_EXACT;
+      if (best <= originalAlpha) {
+        bound = TranspositionTable.BOUND_UPPER;
+      } else if (best >= beta) {
+        bound = TranspositionTable.BOUND_LOWER;
+      }
+      table.store(key, depth, bound, best,
+          mirrored ? BitBoard.mirrorColumn(bestMove) : bestMove);
+    }
+    return best;
+  }
+
+  /**
+   * Static score of the position from side's point of view.
+   */
+  static int evaluate(BitBoard board, int side) {
+    long mask = board.getMask();
+    long mine = board.getPieces(side);
+    long theirs = board.getPieces(1 - side);
+    int threats = Long.bitCount(BitBoard.winningCells(mine, mask))
+        - Long.bitCount(BitBoard.winningCells(theirs, mask));
+    long center = BitBoard.columnMask(BitBoard.COLS / 2);
+    int centerPieces = Long.bitCount(mine & center) - Long.bitCount(theirs & center);
+    return 4 * threats + centerPieces;
+  }
+}
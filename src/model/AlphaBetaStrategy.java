@@ -0,0 +1,155 @@
+package model;
+
+/**
+ * The computer's search-based player: a move from the opening book if
+ * it has one, an exact solve once few enough cells are empty, and
+ * an AlphaBetaSearch, on one thread or several, for everything in
+ * between, or for an endgame the solver cannot finish in time.
+ */
+class AlphaBetaStrategy extends ComputerStrategy {
+  private static final int DEFAULT_SOLVER_EMPTY_CELLS = 24;
+  private static final int SOLVER_TABLE_MEGABYTES = 1;
+
+  private final AlphaBetaSearch search;
+  private boolean tableShared;
+  // Endgame table shared with other games, null for one of the solver's own
+  private final TranspositionTable solverTable;
+  private ParallelSearch parallelSearch = null;
+  private OpeningBook openingBook = null;
+  private int solverEmptyCells = DEFAULT_SOLVER_EMPTY_CELLS;
+  // Created on the first endgame, so games that never get there do
+  // not pay for its table
+  private EndgameSolver solver = null;
+  private long lastNodes;
+
+  /**
+   * @param tableShared true if table is also used by other games, so
+   * that it does not count towards this strategy's memory
+   */
+  AlphaBetaStrategy(int depth, TranspositionTable table, boolean tableShared) {
+    this(depth, table, tableShared, null);
+  }
+
+  /**
+   * @param solverTable table for the endgame solver, shared with the
+   * solvers of other games; null for one of its own
+   */
+  AlphaBetaStrategy(int depth, TranspositionTable table, boolean tableShared,
+      TranspositionTable solverTable) {
+    super("alpha-beta");
+    search = new AlphaBetaSearch(depth, table);
+    this.tableShared = tableShared;
+    this.solverTable = solverTable;
+  }
+
+  AlphaBetaSearch getSearch() {
+    return search;
+  }
+
+  /**
+   * Replaces the transposition table with one of the strategy's own.
+   */
+  void setTranspositionTableSize(int megabytes) {
+    search.setTranspositionTable(new TranspositionTable(megabytes));
+    tableShared = false;
+  }
+
+  void setSearchThreads(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Need at least 1 search thread");
+    }
+    if (parallelSearch != null) {
+      parallelSearch.shutdown();
+      parallelSearch = null;
+    }
+    if (threads > 1) {
+      parallelSearch = new ParallelSearch(search, threads);
+    }
+  }
+
+  ParallelSearch getParallelSearch() {
+    return parallelSearch;
+  }
+
+  void setOpeningBook(OpeningBook book) {
+    openingBook = book;
+  }
+
+  void setEndgameSolverCells(int emptyCells) {
+    if (solver != null) {
+      solver.setMaxEmptyCells(emptyCells);
+    } else if (emptyCells < 0 || emptyCells > BitBoard.CELLS) {
+      throw new IllegalArgumentException("Empty cells must be between 0 and "
+          + BitBoard.CELLS);
+    }
+    solverEmptyCells = emptyCells;
+  }
+
+  EndgameSolver getEndgameSolver() {
+    return solver;
+  }
+
+  @Override
+  int selectColumn(BitBoard board, int side) {
+    lastNodes = 0;
+    if (openingBook != null) {
+      int bookColumn = openingBook.lookup(board);
+      if (bookColumn != -1) {
+        return bookColumn;
+      }
+    }
+    if (BitBoard.CELLS - board.getMoveCount() <= solverEmptyCells
+        && side == (board.getMoveCount() & 1)) {
+      if (solver == null) {
+        solver = (solverTable != null) ? new EndgameSolver(solverEmptyCells, solverTable)
+            : new EndgameSolver(solverEmptyCells, SOLVER_TABLE_MEGABYTES);
+      }
+      // The solver gets half of the move's time budget. If that is not
+      // enough to prove the result, the search gets what is left.
+      long budgetMillis = search.getTimeBudgetMillis();
+      solver.setTimeBudgetMillis((budgetMillis + 1) / 2);
+      int column = solver.findBestMove(board);
+      lastNodes = solver.getNodesSearched();
+      if (!solver.ranOutOfTime()) {
+        return column;
+      }
+      long spentMillis = solver.getElapsedNanos() / 1000000L;
+      search.setTimeBudgetMillis(Math.max(1, budgetMillis - spentMillis));
+      try {
+        return searchColumn(board, side);
+      } finally {
+        search.setTimeBudgetMillis(budgetMillis);
+      }
+    }
+    return searchColumn(board, side);
+  }
+
+  private int searchColumn(BitBoard board, int side) {
+    if (parallelSearch != null) {
+      int column = parallelSearch.findBestMove(board, side);
+      lastNodes += parallelSearch.getNodesSearched();
+      return column;
+    }
+    int column = search.findBestMove(board, side);
+    lastNodes += search.getNodesSearched();
+    return column;
+  }
+
+  @Override
+  long nodesOfLastMove() {
+    return lastNodes;
+  }
+
+  @Override
+  public long getMemoryBytes() {
+    long bytes = 0;
+    TranspositionTable table = search.getTranspositionTable();
+    if (table != null && !tableShared) {
+      bytes += table.getSizeInBytes();
+    }
+    if (solver != null) {
+      bytes += solver.getMemoryBytes();
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,376 @@
+package model;
+
+import java.util.concurrent.Executor;
+
+import utilities.MoveEvent;
+import utilities.SlowConsumerPolicy;
+import views.IListener;
+
+/**
+ * Delivers game events to a listener on an Executor instead of the
+ * mover's thread, so that a slow listener does not hold up the game.
+ *
+ * Events wait in a bounded ring buffer of primitive arrays and are
+ * delivered in order, one at a time, by a single drain task that is
+ * only scheduled when the queue goes from empty to non-empty. What
+ * happens when the queue is full is set by the SlowConsumerPolicy.
+ * Move events are queued as retain()ed copies, as the game reuses its
+ * own; the game hands every AsyncListener the same copy.
+ *
+ * Only the events the game broadcasts go through the queue. Replies to
+ * a player's own call (invalidMoveNotify, invalidTurnNotify,
+ * gameNotInProgressNotify) and the getters are passed straight through.
+ */
+public class AsyncListener implements IListener, Runnable {
+  private static final int START = 0;
+  private static final int MOVE = 1;
+  private static final int WIN = 2;
+  private static final int TIED = 3;
+  private static final int UNDO = 4;
+  private static final int NO_RESULT = -1;
+
+  private final IListener target;
+  private final Executor executor;
+  private final SlowConsumerPolicy policy;
+  private final int capacity;
+  private final int[] types;
+  // WIN or TIED folded into a board change, delivered right after it
+  private final int[] results;
+  private final char[] winnerPieces;
+  private final IListener[] firstPlayers;
+  private final MoveEvent[] moves;
+  private final long[] enqueuedAt;
+  private int head;
+  private int size;
+  private boolean scheduled;
+  private boolean disconnected;
+
+  private long dispatched;
+  private long dropped;
+  private long coalesced;
+  private long failed;
+  private int maxQueueDepth;
+  private long maxLagNanos;
+  private long totalLagNanos;
+
+  AsyncListener(IListener target, Executor executor, int capacity,
+      SlowConsumerPolicy policy) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Queue capacity must be at least 1");
+    }
+    this.target = target;
+    this.executor = executor;
+    this.policy = policy;
+    this.capacity = capacity;
+    types = new int[capacity];
+    results = new int[capacity];
+    winnerPieces = new char[capacity];
+    firstPlayers = new IListener[capacity];
+    moves = new MoveEvent[capacity];
+    enqueuedAt = new long[capacity];
+  }
+
+  public IListener getTarget() {
+    return target;
+  }
+
+  /**
+   * @param move null for a move notification without an event
+   */
+  private void enqueue(int type, char winnerPiece, IListener firstPlayer, MoveEvent move) {
+    synchronized (this) {
+      if (disconnected) {
+        return;
+      }
+      if (size == capacity && !makeRoom(type, winnerPiece, move)) {
+        return;
+      }
+      int i = slot(size);
+      types[i] = type;
+      results[i] = NO_RESULT;
+      winnerPieces[i] = winnerPiece;
+      firstPlayers[i] = firstPlayer;
+      moves[i] = move;
+      enqueuedAt[i] = System.nanoTime();
+      size ++;
+      if (size > maxQueueDepth) {
+        maxQueueDepth = size;
+      }
+      if (scheduled) {
+        return;
+      }
+      scheduled = true;
+    }
+    executor.execute(this);
+  }
+
+  /**
+   * Moves and takebacks, of which only the latest board matters
+   * when the queue is full
+   */
+  private static boolean isBoardChange(int type) {
+    return type == MOVE || type == UNDO;
+  }
+
+  private static boolean isResult(int type) {
+    return type == WIN || type == TIED;
+  }
+
+  private int slot(int offset) {
+    return (head + offset) % capacity;
+  }
+
+  /**
+   * Applies the policy to a full queue, for a new event of type.
+   * @return true if the event is still to be queued, false if it was
+   * folded into the queue or dropped
+   */
+  private boolean makeRoom(int type, char winnerPiece, MoveEvent move) {
+    if (policy == SlowConsumerPolicy.DISCONNECT) {
+      disconnected = true;
+      dropped += size + 1;
+      for (int i = 0; i < size; i ++) {
+        firstPlayers[slot(i)] = null;
+        moves[slot(i)] = null;
+      }
+      size = 0;
+      return false;
+    }
+    if (policy == SlowConsumerPolicy.DROP) {
+      dropped ++;
+      return false;
+    }
+    int tail = slot(size - 1);
+    if (isBoardChange(type) && isBoardChange(types[tail])) {
+      // The new board replaces the last one queued; a result folded into
+      // it no longer holds, as the game has moved on from it
+      types[tail] = type;
+      moves[tail] = move;
+      results[tail] = NO_RESULT;
+      coalesced ++;
+      return false;
+    }
+    if (isResult(type) && isBoardChange(types[tail]) && results[tail] == NO_RESULT) {
+      // Delivered right after the board that ended the game
+      results[tail] = type;
+      winnerPieces[tail] = winnerPiece;
+      return false;
+    }
+    removeStale(isBoardChange(type));
+    return true;
+  }
+
+  /**
+   * Takes one event out of a full queue to make room for a newer one:
+   * the oldest board change or result that a later board change makes
+   * stale, else the oldest start signal, else the oldest event.
+   * @param boardChange true if the new event is a board change
+   */
+  private void removeStale(boolean boardChange) {
+    int lastBoardChange = boardChange ? size : -1;
+    for (int i = size - 1; i >= 0 && lastBoardChange == -1; i --) {
+      if (isBoardChange(types[slot(i)])) {
+        lastBoardChange = i;
+      }
+    }
+    int removed = -1;
+    for (int i = 0; i < lastBoardChange && removed == -1; i ++) {
+      if (types[slot(i)] != START) {
+        removed = i;
+      }
+    }
+    if (removed != -1) {
+      coalesced ++;
+    } else {
+      for (int i = 0; i < size && removed == -1; i ++) {
+        if (!isResult(types[slot(i)])) {
+          removed = i;
+        }
+      }
+      removed = Math.max(removed, 0);
+      dropped ++;
+    }
+    for (int i = removed; i + 1 < size; i ++) {
+      int to = slot(i);
+      int from = slot(i + 1);
+      types[to] = types[from];
+      results[to] = results[from];
+      winnerPieces[to] = winnerPieces[from];
+      firstPlayers[to] = firstPlayers[from];
+      moves[to] = moves[from];
+      enqueuedAt[to] = enqueuedAt[from];
+    }
+    size --;
+    firstPlayers[slot(size)] = null;
+    moves[slot(size)] = null;
+  }
+
+  /**
+   * Drains the queue on the executor.
+   */
+  @Override
+  public void run() {
+    while (true) {
+      int type;
+      int result;
+      char winnerPiece;
+      IListener firstPlayer;
+      MoveEvent move;
+      synchronized (this) {
+        if (size == 0 || disconnected) {
+          scheduled = false;
+          return;
+        }
+        type = types[head];
+        result = results[head];
+        winnerPiece = winnerPieces[head];
+        firstPlayer = firstPlayers[head];
+        firstPlayers[head] = null;
+        move = moves[head];
+        moves[head] = null;
+        long lag = System.nanoTime() - enqueuedAt[head];
+        head = (head + 1) % capacity;
+        size --;
+        dispatched ++;
+        totalLagNanos += lag;
+        if (lag > maxLagNanos) {
+          maxLagNanos = lag;
+        }
+      }
+      try {
+        deliver(type, winnerPiece, firstPlayer, move);
+        if (result != NO_RESULT) {
+          deliver(result, winnerPiece, null, null);
+        }
+      } catch (RuntimeException e) {
+        synchronized (this) {
+          failed ++;
+        }
+      }
+    }
+  }
+
+  private void deliver(int type, char winnerPiece, IListener firstPlayer, MoveEvent move) {
+    if (type == START) {
+      target.gameStartSignal(firstPlayer);
+    } else if (type == MOVE && move != null) {
+      target.moveMadeNotify(move);
+    } else if (type == MOVE) {
+      target.correctMoveNotify();
+    } else if (type == UNDO) {
+      target.moveUndoneNotify(move);
+    } else if (type == WIN) {
+      target.gameWinNotify(winnerPiece);
+    } else {
+      target.gameTied();
+    }
+  }
+
+  @Override
+  public void gameStartSignal(IListener firstPlayerToGo) {
+    enqueue(START, ' ', firstPlayerToGo, null);
+  }
+
+  @Override
+  public void correctMoveNotify() {
+    enqueue(MOVE, ' ', null, null);
+  }
+
+  @Override
+  public void moveMadeNotify(MoveEvent move) {
+    enqueue(MOVE, ' ', null, move.retain());
+  }
+
+  @Override
+  public void moveUndoneNotify(MoveEvent undone) {
+    enqueue(UNDO, ' ', null, undone.retain());
+  }
+
+  @Override
+  public void gameWinNotify(char winnerPiece) {
+    enqueue(WIN, winnerPiece, null, null);
+  }
+
+  @Override
+  public void gameTied() {
+    enqueue(TIED, ' ', null, null);
+  }
+
+  @Override
+  public void invalidTurnNotify() {
+    target.invalidTurnNotify();
+  }
+
+  @Override
+  public void invalidMoveNotify() {
+    target.invalidMoveNotify();
+  }
+
+  @Override
+  public void gameNotInProgressNotify() {
+    target.gameNotInProgressNotify();
+  }
+
+  @Override
+  public char getPiece() {
+    return target.getPiece();
+  }
+
+  @Override
+  public String getId() {
+    return target.getId();
+  }
+
+  @Override
+  public void shutFrame() {
+    target.shutFrame();
+  }
+
+  /**
+   * True once the DISCONNECT policy has cut the listener off
+   */
+  public synchronized boolean isDisconnected() {
+    return disconnected;
+  }
+
+  public synchronized int getQueueDepth() {
+    return size;
+  }
+
+  public synchronized int getMaxQueueDepth() {
+    return maxQueueDepth;
+  }
+
+  public synchronized long getDispatchedCount() {
+    return dispatched;
+  }
+
+  public synchronized long getDroppedCount() {
+    return dropped;
+  }
+
+  public synchronized long getCoalescedCount() {
+    return coalesced;
+  }
+
+  /**
+   * Events whose delivery threw an exception
+   */
+  public synchronized long getFailedCount() {
+    return failed;
+  }
+
+  /**
+   * Longest time an event waited in the queue
+   */
+  public synchronized long getMaxLagNanos() {
+    return maxLagNanos;
+  }
+
+  public synchronized long getAverageLagNanos() {
+    if (dispatched == 0) {
+      return 0;
+    }
+    return totalLagNanos / dispatched;
+  }
+}
@@ -0,0 +1,516 @@
+package model;
+
+import java.util.Random;
+
+import utilities.IBoardSnapshot;
+
+/**
+ * Bitboard implementation of the board. The pieces of each player are
+ * kept in one long, a bit per cell, laid out column by column from the
+ * bottom with a spare bit on top of every column:
+ *
+ *   6 13 20 27 34 41 48
+ *   5 12 19 26 33 40 47
+ *   4 11 18 25 32 39 46
+ *   3 10 17 24 31 38 45
+ *   2  9 16 23 30 37 44
+ *   1  8 15 22 29 36 43
+ *   0  7 14 21 28 35 42
+ *
+ * The spare row stops shifted runs from wrapping into the next column,
+ * so making a move, undoing it and checking for a win are a handful of
+ * shifts and masks with no loops or allocation.
+ *
+ * Side 0 plays firstPiece, side 1 plays secondPiece.
+ * Not public, for the same reason as GameBoard.
+ */
+class BitBoard implements IGameBoard {
+  static final int ROWS = 6;
+  static final int COLS = 7;
+  static final int CELLS = ROWS * COLS;
+  static final int H1 = ROWS + 1;
+  static final long BOTTOM_MASK = bottomMask();
+  static final long BOARD_MASK = BOTTOM_MASK * ((1L << ROWS) - 1);
+  // By bit index: cells up to three away from it along the four lines through it
+  private static final long[] LINES_THROUGH = linesThrough();
+
+  private final long[] pieces = new long[2];
+  //Number of pieces in each column
+  private final int[] height = new int[COLS];
+  private int moveCount;
+  private final char[] pieceColors;
+  private Random rand = new Random();
+
+  public BitBoard(char firstPiece, char secondPiece) {
+    pieceColors = new char[] {firstPiece, secondPiece};
+  }
+
+  /**
+   * Copy of other, for searches that need a board of their own.
+   */
+  BitBoard(BitBoard other) {
+    pieceColors = other.pieceColors;
+    pieces[0] = other.pieces[0];
+    pieces[1] = other.pieces[1];
+    System.arraycopy(other.height, 0, height, 0, COLS);
+    moveCount = other.moveCount;
+  }
+
+  /**
+   * Board after playing the given columns (digits, zero-based) in turn,
+   * firstPiece moving first.
+   * @throws IllegalArgumentException on an invalid or full column
+   */
+  static BitBoard fromMoves(String moves, char firstPiece, char secondPiece) {
+    BitBoard board = new BitBoard(firstPiece, secondPiece);
+    for (int i = 0; i < moves.length(); i ++) {
+      int col = moves.charAt(i) - '0';
+      if (col < 0 || col >= COLS || !board.canPlay(col)) {
+        throw new IllegalArgumentException("Invalid move " + moves.charAt(i) + " in " + moves);
+      }
+      board.play(col, i % 2);
+    }
+    return board;
+  }
+
+  /**
+   * Board holding the pieces of snapshot, with whichever of the two
+   * players has played fewer pieces (piece if they are level) to move.
+   * @throws IllegalArgumentException if the snapshot is for another
+   * board size
+   */
+  static BitBoard fromSnapshot(IBoardSnapshot snapshot, char piece, char opponentPiece) {
+    if (snapshot.getNumberOfRows() != ROWS || snapshot.getNumberOfCols() != COLS) {
+      throw new IllegalArgumentException("Board must be " + ROWS + "x" + COLS);
+    }
+    long mine = 0;
+    long theirs = 0;
+    for (int col = 0; col < COLS; col ++) {
+      for (int row = 0; row < ROWS; row ++) {
+        char cellPiece = snapshot.getPiece(row, col);
+        long cell = 1L << (col * H1 + (ROWS - 1) - row);
+        if (cellPiece == piece) {
+          mine |= cell;
+        } else if (cellPiece == opponentPiece) {
+          theirs |= cell;
+        }
+      }
+    }
+    BitBoard board;
+    if (Long.bitCount(mine) == Long.bitCount(theirs)) {
+      board = new BitBoard(piece, opponentPiece);
+      board.setPieces(mine, theirs);
+    } else {
+      board = new BitBoard(opponentPiece, piece);
+      board.setPieces(theirs, mine);
+    }
+    return board;
+  }
+
+  private void setPieces(long firstPieces, long secondPieces) {
+    pieces[0] = firstPieces;
+    pieces[1] = secondPieces;
+    long mask = firstPieces | secondPieces;
+    for (int col = 0; col < COLS; col ++) {
+      height[col] = Long.bitCount(mask & columnMask(col));
+    }
+    moveCount = Long.bitCount(mask);
+  }
+
+  private static long bottomMask() {
+    long mask = 0;
+    for (int col = 0; col < COLS; col ++) {
+      mask |= 1L << (col * H1);
+    }
+    return mask;
+  }
+
+  private static long[] linesThrough() {
+    long[] lines = new long[COLS * H1];
+    int[][] directions = {{1, 0}, {0, 1}, {1, 1}, {1, -1}};
+    for (int col = 0; col < COLS; col ++) {
+      for (int row = 0; row < ROWS; row ++) {
+        long mask = 0;
+        for (int[] direction : directions) {
+          for (int step = -3; step <= 3; step ++) {
+            int c = col + step * direction[0];
+            int r = row + step * direction[1];
+            if (c >= 0 && c < COLS && r >= 0 && r < ROWS) {
+              mask |= 1L << (c * H1 + r);
+            }
+          }
+        }
+        lines[col * H1 + row] = mask;
+      }
+    }
+    return lines;
+  }
+
+  /**
+   * True if the pieces in pos hold four in a row through cell. Only the
+   * lines through cell are kept: no four in a row can be made of the
+   * rest of them.
+   */
+  static boolean alignmentThrough(long pos, long cell) {
+    return alignment(pos & LINES_THROUGH[Long.numberOfTrailingZeros(cell)]);
+  }
+
+  /**
+   * Bit of the lowest empty cell of column
+   */
+  private long nextCell(int col) {
+    return 1L << (col * H1 + height[col]);
+  }
+
+  /**
+   * True if the bitboard holds four in a row in any direction.
+   */
+  static boolean alignment(long pos) {
+    // horizontal
+    long m = pos & (pos >> H1);
+    if ((m & (m >> (2 * H1))) != 0) {
+      return true;
+    }
+    // diagonal going left from bottom to top
+    m = pos & (pos >> ROWS);
+    if ((m & (m >> (2 * ROWS))) != 0) {
+      return true;
+    }
+    // diagonal going right from bottom to top
+    m = pos & (pos >> (H1 + 1));
+    if ((m & (m >> (2 * (H1 + 1)))) != 0) {
+      return true;
+    }
+    // vertical
+    m = pos & (pos >> 1);
+    return (m & (m >> 2)) != 0;
+  }
+
+  /**
+   * Empty cells that would complete four in a row for the pieces in pos,
+   * whether or not they can be played right now.
+   */
+  static long winningCells(long pos, long mask) {
+    // vertical
+    long r = (pos << 1) & (pos << 2) & (pos << 3);
+    // horizontal
+    long p = (pos << H1) & (pos << (2 * H1));
+    r |= p & (pos << (3 * H1));
+    r |= p & (pos >> H1);
+    p = (pos >> H1) & (pos >> (2 * H1));
+    r |= p & (pos << H1);
+    r |= p & (pos >> (3 * H1));
+    // diagonal going left from bottom to top
+    p = (pos << ROWS) & (pos << (2 * ROWS));
+    r |= p & (pos << (3 * ROWS));
+    r |= p & (pos >> ROWS);
+    p = (pos >> ROWS) & (pos >> (2 * ROWS));
+    r |= p & (pos << ROWS);
+    r |= p & (pos >> (3 * ROWS));
+    // diagonal going right from bottom to top
+    p = (pos << (H1 + 1)) & (pos << (2 * (H1 + 1)));
+    r |= p & (pos << (3 * (H1 + 1)));
+    r |= p & (pos >> (H1 + 1));
+    p = (pos >> (H1 + 1)) & (pos >> (2 * (H1 + 1)));
+    r |= p & (pos << (H1 + 1));
+    r |= p & (pos >> (3 * (H1 + 1)));
+    return r & (BOARD_MASK ^ mask);
+  }
+
+  static long columnMask(int col) {
+    return ((1L << ROWS) - 1) << (col * H1);
+  }
+
+  /**
+   * One bit for the lowest empty cell of every column that is not full.
+   */
+  long possibleMoves() {
+    return (getMask() + BOTTOM_MASK) & BOARD_MASK;
+  }
+
+  /**
+   * Column of a single cell bit.
+   */
+  static int columnOf(long cell) {
+    return Long.numberOfTrailingZeros(cell) / H1;
+  }
+
+  boolean canPlay(int col) {
+    return height[col] < ROWS;
+  }
+
+  /**
+   * Drops a piece for side in col. Caller checks canPlay(col).
+   */
+  void play(int col, int side) {
+    pieces[side] |= nextCell(col);
+    height[col] ++;
+    moveCount ++;
+  }
+
+  /**
+   * Takes back the topmost piece of col, whichever side played it.
+   */
+  void undo(int col) {
+    height[col] --;
+    long cell = ~nextCell(col);
+    pieces[0] &= cell;
+    pieces[1] &= cell;
+    moveCount --;
+  }
+
+  /**
+   * True if side wins by playing col. Caller checks canPlay(col).
+   */
+  boolean isWinningMove(int col, int side) {
+    return alignment(pieces[side] | nextCell(col));
+  }
+
+  boolean hasWon(int side) {
+    return alignment(pieces[side]);
+  }
+
+  long getPieces(int side) {
+    return pieces[side];
+  }
+
+  long getMask() {
+    return pieces[0] | pieces[1];
+  }
+
+  /**
+   * Key that identifies the position exactly: the first player's pieces
+   * plus a marker bit above the top piece of every column.
+   * Never 0, and computed from the two bitboards as they stand, so it
+   * is always in step with play and undo.
+   */
+  long getKey() {
+    return pieces[0] + getMask() + BOTTOM_MASK;
+  }
+
+  /**
+   * The key of the position reflected across the center column.
+   * Every column of a key stands alone (its marker bit never carries
+   * into the next column), so reflecting it is just moving columns.
+   */
+  static long mirror(long key) {
+    long columnBits = (1L << H1) - 1;
+    long mirrored = 0;
+    for (int col = 0; col < COLS; col ++) {
+      long column = (key >>> (col * H1)) & columnBits;
+      mirrored |= column << ((COLS - 1 - col) * H1);
+    }
+    return mirrored;
+  }
+
+  /**
+   * Column col on the mirrored board, -1 stays -1.
+   */
+  static int mirrorColumn(int col) {
+    return (col == -1) ? -1 : COLS - 1 - col;
+  }
+
+  /**
+   * The smaller of getKey() and mirror(getKey()), so a position and its
+   * reflection share one key. Columns stored under a canonical key must
+   * be translated with mirrorColumn when isMirrored(key) is true.
+   */
+  long getCanonicalKey() {
+    long key = getKey();
+    return Math.min(key, mirror(key));
+  }
+
+  /**
+   * True if key is bigger than its reflection, that is if it is stored
+   * under the key of the mirrored board.
+   */
+  static boolean isMirrored(long key) {
+    return mirror(key) < key;
+  }
+
+  int getMoveCount() {
+    return moveCount;
+  }
+
+  int getHeight(int col) {
+    return height[col];
+  }
+
+  /**
+   * @return 0 or 1 for the two players' pieces, -1 for anything else
+   */
+  int sideOf(char piece) {
+    if (piece == pieceColors[0]) {
+      return 0;
+    }
+    if (piece == pieceColors[1]) {
+      return 1;
+    }
+    return -1;
+  }
+
+  char pieceOf(int side) {
+    return pieceColors[side];
+  }
+
+  @Override
+  public char[][] returnBoardCurrentState() {
+    char[][] copyOfBoard = new char[ROWS][COLS];
+    for (int row = 0; row < ROWS; row ++) {
+      long cell = 1L << (ROWS - 1 - row);
+      for (int col = 0; col < COLS; col ++) {
+        if ((pieces[0] & cell) != 0) {
+          copyOfBoard[row][col] = pieceColors[0];
+        } else if ((pieces[1] & cell) != 0) {
+          copyOfBoard[row][col] = pieceColors[1];
+        } else {
+          copyOfBoard[row][col] = ' ';
+        }
+        cell <<= H1;
+      }
+    }
+    return copyOfBoard;
+  }
+
+  /**
+   * Snapshot backed by a copy of the two bitboards - no per-cell copy.
+   */
+  @Override
+  public IBoardSnapshot snapshot() {
+    return new Snapshot(pieces[0], pieces[1], pieceColors, moveCount);
+  }
+
+  private static class Snapshot implements IBoardSnapshot {
+    private final long firstPieces;
+    private final long secondPieces;
+    private final char[] pieceColors;
+    private final int moveNumber;
+
+    Snapshot(long firstPieces, long secondPieces, char[] pieceColors, int moveNumber) {
+      this.firstPieces = firstPieces;
+      this.secondPieces = secondPieces;
+      this.pieceColors = pieceColors;
+      this.moveNumber = moveNumber;
+    }
+
+    @Override
+    public char getPiece(int row, int col) {
+      long cell = 1L << (col * H1 + (ROWS - 1) - row);
+      if ((firstPieces & cell) != 0) {
+        return pieceColors[0];
+      }
+      if ((secondPieces & cell) != 0) {
+        return pieceColors[1];
+      }
+      return ' ';
+    }
+
+    @Override
+    public int getMoveNumber() {
+      return moveNumber;
+    }
+
+    @Override
+    public int getNumberOfRows() {
+      return ROWS;
+    }
+
+    @Override
+    public int getNumberOfCols() {
+      return COLS;
+    }
+  }
+
+  /**
+   * Returns false if the column is out of bounds or full,
+   * or if playerChar is neither player's piece.
+   */
+  @Override
+  public boolean updateBoardForMove(int column, char playerChar) {
+    int side = sideOf(playerChar);
+    if ((column < 0) || (column > (COLS - 1)) || (side == -1)) {
+      return false;
+    }
+    if (!canPlay(column)) {
+      return false;
+    }
+    play(column, side);
+    return true;
+  }
+
+  @Override
+  public boolean undoMove(int column) {
+    if ((column < 0) || (column > (COLS - 1)) || (height[column] == 0)) {
+      return false;
+    }
+    undo(column);
+    return true;
+  }
+
+  @Override
+  public int computerFindNextWinMove(char playerColor) {
+    int side = sideOf(playerColor);
+    if (side == -1) {
+      return -1;
+    }
+    long wins = possibleMoves() & winningCells(pieces[side], getMask());
+    return (wins == 0) ? -1 : columnOf(wins);
+  }
+
+  @Override
+  public int computerFindNextRegularMove() {
+    int colGeneratedAtRandom = rand.nextInt(COLS);
+    while (!canPlay(colGeneratedAtRandom)) {
+      colGeneratedAtRandom = rand.nextInt(COLS);
+    }
+    return colGeneratedAtRandom;
+  }
+
+  @Override
+  public int getFirstEmptyRowFromBottom(int col) {
+    if (!canPlay(col)) {
+      return -1;
+    }
+    return (ROWS - 1) - height[col];
+  }
+
+  @Override
+  public char findWinner(int newPieceRow, int newPieceCol,
+      char player1PieceColor, char player2PieceColor, char noWinner) {
+    long cell = 1L << (newPieceCol * H1 + (ROWS - 1) - newPieceRow);
+    if (wonWithCell(cell, player1PieceColor)) {
+      return player1PieceColor;
+    } else if (wonWithCell(cell, player2PieceColor)) {
+      return player2PieceColor;
+    }
+    return noWinner;
+  }
+
+  private boolean wonWithCell(long cell, char piece) {
+    int side = sideOf(piece);
+    return (side != -1) && ((pieces[side] & cell) != 0) && alignmentThrough(pieces[side], cell);
+  }
+
+  @Override
+  public boolean isGameOver() {
+    return moveCount == CELLS;
+  }
+
+  @Override
+  public int getMostRecentRowFilled(int column) {
+    if (height[column] == 0) {
+      return -1;
+    }
+    return ROWS - height[column];
+  }
+
+  @Override
+  public int getNumberOfRows() {
+    return ROWS;
+  }
+
+  @Override
+  public int getNumberOfCols() {
+    return COLS;
+  }
+}
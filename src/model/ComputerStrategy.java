@@ -0,0 +1,96 @@
+package model;
+
+import utilities.IBoardSnapshot;
+
+/**
+ * Base of the built-in strategies, which all play on a BitBoard.
+ * Keeps the counters; subclasses only choose the move and say how
+ * many nodes it took.
+ */
+abstract class ComputerStrategy implements IComputerStrategy {
+  private final String name;
+  private long lastThinkNanos;
+  private long lastNodes;
+  private long movesPlayed;
+  private long totalThinkNanos;
+  private long totalNodes;
+
+  ComputerStrategy(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Chooses a column for side, which is to move on board. The board is
+   * left as it was found.
+   */
+  abstract int selectColumn(BitBoard board, int side);
+
+  /**
+   * Nodes visited by the last call to selectColumn
+   */
+  abstract long nodesOfLastMove();
+
+  /**
+   * Same as chooseColumn, for a board the model already holds as a
+   * BitBoard.
+   */
+  final int chooseColumn(BitBoard board, int side) {
+    long start = System.nanoTime();
+    int column = selectColumn(board, side);
+    lastThinkNanos = System.nanoTime() - start;
+    lastNodes = nodesOfLastMove();
+    movesPlayed ++;
+    totalThinkNanos += lastThinkNanos;
+    totalNodes += lastNodes;
+    return column;
+  }
+
+  @Override
+  public int chooseColumn(IBoardSnapshot board, char piece, char opponentPiece) {
+    BitBoard bitBoard = BitBoard.fromSnapshot(board, piece, opponentPiece);
+    return chooseColumn(bitBoard, bitBoard.sideOf(piece));
+  }
+
+  @Override
+  public void newGame() {
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public long getLastThinkNanos() {
+    return lastThinkNanos;
+  }
+
+  @Override
+  public long getLastNodes() {
+    return lastNodes;
+  }
+
+  @Override
+  public long getMovesPlayed() {
+    return movesPlayed;
+  }
+
+  @Override
+  public long getTotalThinkNanos() {
+    return totalThinkNanos;
+  }
+
+  @Override
+  public long getTotalNodes() {
+    return totalNodes;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s: %d moves, %.3f ms and %.0f nodes per move, %d KB",
+        name, movesPlayed,
+        (movesPlayed == 0) ? 0.0 : totalThinkNanos / 1e6 / movesPlayed,
+        (movesPlayed == 0) ? 0.0 : (double) totalNodes / movesPlayed,
+        getMemoryBytes() / 1024);
+  }
+}
@@ -0,0 +1,388 @@
+package model;
+
+/**
+ * Exact solver for positions close to the end of the game, where the
+ * rest of the tree is small enough to search to the last move.
+ *
+ * Scores follow the number of moves left: a win for the side to move
+ * scores (CELLS + 1 - moves played before the winning move) / 2, so
+ * faster wins score higher, a loss scores the negation of the
+ * opponent's win and a draw scores 0. The root score is pinned down
+ * by a series of null-window searches that halve the range of
+ * possible scores each time (a binary-search form of MTD(f)), each of
+ * them cheap because a null window cuts off almost everywhere.
+ *
+ * Before branching, every node scans the threats on the board with
+ * Threats: a position where the opponent has two cells
+ * to win on is lost, a single one must be blocked, and moves directly
+ * below an opponent's winning cell are never played. Results are kept
+ * as bounds in a transposition table that is never shared with an
+ * AlphaBetaSearch, as its scores are on a different scale; solvers
+ * may share one among themselves, from any number of threads.
+ *
+ * The side to move is the one with fewer pieces, which holds for
+ * every board the model plays on.
+ *
+ * A time budget turns the solver into one that may give up: a solve
+ * that runs out of time returns no move, and stores nothing it had
+ * not finished in the table.
+ */
+public class EndgameSolver {
+  private static final int[] COLUMN_ORDER = AlphaBetaSearch.COLUMN_ORDER;
+
+  private final TranspositionTable table;
+  private final boolean tableShared;
+  private final Threats threats = new Threats();
+  // Move lists by number of moves played, so sorting allocates nothing
+  private final int[][] sortedColumns = new int[BitBoard.CELLS][BitBoard.COLS];
+  private final int[][] sortedThreats = new int[BitBoard.CELLS][BitBoard.COLS];
+  private int maxEmptyCells;
+  private long nodesSearched;
+  // Table probes of the current solve, added to the table's counts at its end
+  private long tableHits;
+  private long tableMisses;
+  private long tableCollisions;
+  private long elapsedNanos;
+  private long timeBudgetNanos;
+  private long deadline;
+  private boolean aborted;
+  private int score;
+
+  /**
+   * @param maxEmptyCells most empty cells a position may have for
+   * the solver to take it on
+   * @param tableMegabytes memory for the solver's transposition table
+   */
+  public EndgameSolver(int maxEmptyCells, int tableMegabytes) {
+    setMaxEmptyCells(maxEmptyCells);
+    table = new TranspositionTable(tableMegabytes);
+    tableShared = false;
+  }
+
+  /**
+   * Solver keeping its results in sharedTable, which other solvers
+   * use too and which does not count towards this one's memory.
+   */
+  public EndgameSolver(int maxEmptyCells, TranspositionTable sharedTable) {
+    setMaxEmptyCells(maxEmptyCells);
+    table = sharedTable;
+    tableShared = true;
+  }
+
+  /**
+   * Forgets everything solved so far, by every solver sharing the table.
+   */
+  public void clear() {
+    table.clear();
+  }
+
+  public void setMaxEmptyCells(int maxEmptyCells) {
+    if (maxEmptyCells < 0 || maxEmptyCells > BitBoard.CELLS) {
+      throw new IllegalArgumentException("Empty cells must be between 0 and "
+          + BitBoard.CELLS);
+    }
+    this.maxEmptyCells = maxEmptyCells;
+  }
+
+  public int getMaxEmptyCells() {
+    return maxEmptyCells;
+  }
+
+  /**
+   * Wall-clock limit for one call to findBestMove or solve, 0 for none.
+   * The deadline is checked every 1024 nodes.
+   */
+  public void setTimeBudgetMillis(long millis) {
+    if (millis < 0) {
+      throw new IllegalArgumentException("Time budget cannot be negative");
+    }
+    timeBudgetNanos = millis * 1000000L;
+  }
+
+  public long getTimeBudgetMillis() {
+    return timeBudgetNanos / 1000000L;
+  }
+
+  /**
+   * True if the last call to findBestMove or solve ran out of time,
+   * leaving its move and score unknown
+   */
+  public boolean ranOutOfTime() {
+    return aborted;
+  }
+
+  /**
+   * True if board has few enough empty cells for the solver.
+   */
+  boolean canSolve(BitBoard board) {
+    return BitBoard.CELLS - board.getMoveCount() <= maxEmptyCells;
+  }
+
+  /**
+   * Nodes visited by the last call to findBestMove or solve
+   */
+  public long getNodesSearched() {
+    return nodesSearched;
+  }
+
+  /**
+   * Heap held by the solver's move lists, and its table unless shared
+   */
+  public long getMemoryBytes() {
+    long bytes = 2L * BitBoard.CELLS * BitBoard.COLS * 4;
+    return tableShared ? bytes : bytes + table.getSizeInBytes();
+  }
+
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  /**
+   * Proven score of the position given to the last call to findBestMove
+   * or solve, for the side that was to move. Positive is a win, 0 a
+   * draw and negative a loss. Meaningless if it ran out of time.
+   */
+  public int getScore() {
+    return score;
+  }
+
+  /**
+   * Solves board and returns the column that achieves its score,
+   * trying columns center first. The board is left as it was found.
+   * @return -1 if the board is full or time ran out
+   */
+  int findBestMove(BitBoard board) {
+    long start = System.nanoTime();
+    deadline = start + timeBudgetNanos;
+    aborted = false;
+    nodesSearched = 0;
+    tableHits = 0;
+    tableMisses = 0;
+    tableCollisions = 0;
+    int side = board.getMoveCount() & 1;
+    int bestColumn = -1;
+    for (int col : COLUMN_ORDER) {
+      if (board.canPlay(col) && board.isWinningMove(col, side)) {
+        score = winScore(board);
+        elapsedNanos = System.nanoTime() - start;
+        return col;
+      }
+    }
+    if (board.getMoveCount() < BitBoard.CELLS) {
+      score = solveRoot(board);
+      long moves = nonLosingMoves(board);
+      for (int col : COLUMN_ORDER) {
+        if (aborted) {
+          bestColumn = -1;
+          break;
+        }
+        if (!board.canPlay(col)) {
+          continue;
+        }
+        if (bestColumn == -1) {
+          // Every move loses if none is found below
+          bestColumn = col;
+        }
+        if ((moves & BitBoard.columnMask(col)) == 0) {
+          continue;
+        }
+        // The move keeps the score if the opponent cannot do better
+        // than -score after it
+        board.play(col, side);
+        int childScore = -negamax(board, -score, -score + 1);
+        board.undo(col);
+        if (aborted) {
+          bestColumn = -1;
+          break;
+        }
+        if (childScore >= score) {
+          bestColumn = col;
+          break;
+        }
+      }
+    } else {
+      score = 0;
+    }
+    table.addProbes(tableHits, tableMisses, tableCollisions);
+    elapsedNanos = System.nanoTime() - start;
+    return bestColumn;
+  }
+
+  /**
+   * Proven score of board for the side to move, see getScore().
+   * The board is left as it was found.
+   */
+  int solve(BitBoard board) {
+    long start = System.nanoTime();
+    deadline = start + timeBudgetNanos;
+    aborted = false;
+    nodesSearched = 0;
+    tableHits = 0;
+    tableMisses = 0;
+    tableCollisions = 0;
+    score = 0;
+    if (board.getMoveCount() < BitBoard.CELLS) {
+      score = solveRoot(board);
+    }
+    table.addProbes(tableHits, tableMisses, tableCollisions);
+    elapsedNanos = System.nanoTime() - start;
+    return score;
+  }
+
+  private static int winScore(BitBoard board) {
+    return (BitBoard.CELLS + 1 - board.getMoveCount()) / 2;
+  }
+
+  private int solveRoot(BitBoard board) {
+    if (canWinNow(board)) {
+      return winScore(board);
+    }
+    int min = -(BitBoard.CELLS - board.getMoveCount()) / 2;
+    int max = (BitBoard.CELLS + 1 - board.getMoveCount()) / 2;
+    while (min < max) {
+      int middle = min + (max - min) / 2;
+      // Probe nearer 0 first, where most scores are
+      if (middle <= 0 && min / 2 < middle) {
+        middle = min / 2;
+      } else if (middle >= 0 && max / 2 > middle) {
+        middle = max / 2;
+      }
+      int result = negamax(board, middle, middle + 1);
+      if (aborted) {
+        return 0;
+      }
+      if (result <= middle) {
+        max = result;
+      } else {
+        min = result;
+      }
+    }
+    return min;
+  }
+
+  private boolean outOfTime() {
+    if (!aborted && (nodesSearched & 1023) == 0) {
+      aborted = timeBudgetNanos > 0 && System.nanoTime() - deadline > 0;
+    }
+    return aborted;
+  }
+
+  private boolean canWinNow(BitBoard board) {
+    threats.scan(board, board.getMoveCount() & 1);
+    return threats.getWins() != 0;
+  }
+
+  private long nonLosingMoves(BitBoard board) {
+    threats.scan(board, board.getMoveCount() & 1);
+    return threats.getSafeMoves();
+  }
+
+  /**
+   * Score of a position in which the side to move cannot win at once.
+   * Fails soft: below alpha the result is an upper bound, above beta
+   * a lower bound.
+   */
+  private int negamax(BitBoard board, int alpha, int beta) {
+    nodesSearched ++;
+    if (outOfTime()) {
+      return 0;
+    }
+    long moves = nonLosingMoves(board);
+    int moveCount = board.getMoveCount();
+    if (moves == 0) {
+      return -(BitBoard.CELLS - moveCount) / 2;
+    }
+    if (moveCount >= BitBoard.CELLS - 2) {
+      return 0;
+    }
+    // The opponent cannot win on their next move
+    int min = -(BitBoard.CELLS - 2 - moveCount) / 2;
+    if (alpha < min) {
+      alpha = min;
+      if (alpha >= beta) {
+        return alpha;
+      }
+    }
+    // Nor can we win on this one
+    int max = (BitBoard.CELLS - 1 - moveCount) / 2;
+    long key = board.getCanonicalKey();
+    long entry = table.probe(key);
+    if (entry == 0) {
+      tableMisses ++;
+      if (table.isCollision(key)) {
+        tableCollisions ++;
+      }
+    } else {
+      tableHits ++;
+      int stored = TranspositionTable.score(entry);
+      if (TranspositionTable.bound(entry) == TranspositionTable.BOUND_LOWER) {
+        if (alpha < stored) {
+          alpha = stored;
+          if (alpha >= beta) {
+            return alpha;
+          }
+        }
+      } else if (stored < max) {
+        max = stored;
+      }
+    }
+    if (beta > max) {
+      beta = max;
+      if (alpha >= beta) {
+        return beta;
+      }
+    }
+
+    int side = moveCount & 1;
+    int[] columns = sortedColumns[moveCount];
+    int count = sortMoves(board, side, moves, columns, sortedThreats[moveCount]);
+    for (int i = 0; i < count; i ++) {
+      int col = columns[i];
+      board.play(col, side);
+      int result = -negamax(board, -beta, -alpha);
+      board.undo(col);
+      if (aborted) {
+        return 0;
+      }
+      if (result >= beta) {
+        table.store(key, BitBoard.CELLS - moveCount, TranspositionTable.BOUND_LOWER,
+            result, -1);
+        return result;
+      }
+      if (result > alpha) {
+        alpha = result;
+      }
+    }
+    table.store(key, BitBoard.CELLS - moveCount, TranspositionTable.BOUND_UPPER, alpha, -1);
+    return alpha;
+  }
+
+  /**
+   * Fills columns with the columns of moves, those that leave the most
+   * winning cells for side first, center first among equals.
+   * @return number of columns
+   */
+  private static int sortMoves(BitBoard board, int side, long moves,
+      int[] columns, int[] threats) {
+    int count = 0;
+    long mine = board.getPieces(side);
+    long mask = board.getMask();
+    for (int col : COLUMN_ORDER) {
+      long cell = moves & BitBoard.columnMask(col);
+      if (cell == 0) {
+        continue;
+      }
+      int cellThreats = Long.bitCount(BitBoard.winningCells(mine | cell, mask | cell));
+      // Insertion sort, stable so the center-first order breaks ties
+      int i = count ++;
+      while (i > 0 && threats[i - 1] < cellThreats) {
+        columns[i] = columns[i - 1];
+        threats[i] = threats[i - 1];
+        i --;
+      }
+      columns[i] = col;
+      threats[i] = cellThreats;
+    }
+    return count;
+  }
+}
@@ -3,6 +3,9 @@ package model;
 import java.util.Arrays;
 import java.util.Random;
 
+import utilities.IBoardSnapshot;
+import utilities.Variant;
+
 /**
  * Intentionally not made public so
  * that no malicious moves can be made
@@ -11,14 +14,30 @@ import java.util.Random;
  * in the model.
  */
 
-class GameBoard {
+class GameBoard implements IGameBoard {
   private char[][] board;
-  private final int MAXROWNUM = 6;
-  private final int MAXCOLNUM = 7;
+  //Pieces in each column, so that moves are made and taken back in O(1)
+  private int[] columnHeights;
+  private final int MAXROWNUM;
+  private final int MAXCOLNUM;
+  //Pieces in a row needed to win
+  private final int CONNECT;
   private Random rand = new Random();
   
   public GameBoard() {
+    this(Variant.STANDARD);
+  }
+  
+  /**
+   * Board of any size, won by any length of line. Used for variants
+   * too big for a bitboard.
+   */
+  public GameBoard(Variant variant) {
+    MAXROWNUM = variant.getNumberOfRows();
+    MAXCOLNUM = variant.getNumberOfCols();
+    CONNECT = variant.getConnectLength();
     board = new char[MAXROWNUM][MAXCOLNUM];
+    columnHeights = new int[MAXCOLNUM];
     initializeBoard();
   }
   
@@ -42,6 +61,43 @@ class GameBoard {
     return copyOfBoard;
   }
   
+  /**
+   * Snapshot over a deep copy of the board: O(Rows * Columns) operation.
+   */
+  public IBoardSnapshot snapshot() {
+    final char[][] copyOfBoard = returnBoardCurrentState();
+    int pieces = 0;
+    for (int row = 0; row < MAXROWNUM; row ++) {
+      for (int col = 0; col < MAXCOLNUM; col ++) {
+        if (copyOfBoard[row][col] != ' ') {
+          pieces ++;
+        }
+      }
+    }
+    final int moveNumber = pieces;
+    return new IBoardSnapshot() {
+      @Override
+      public char getPiece(int row, int col) {
+        return copyOfBoard[row][col];
+      }
+
+      @Override
+      public int getMoveNumber() {
+        return moveNumber;
+      }
+
+      @Override
+      public int getNumberOfRows() {
+        return MAXROWNUM;
+      }
+
+      @Override
+      public int getNumberOfCols() {
+        return MAXCOLNUM;
+      }
+    };
+  }
+  
   /** 
    * Validates the move. Then determines the 
    * first empty row from bottom 
@@ -55,10 +111,24 @@ class GameBoard {
     
     int placeInRow = getFirstEmptyRowFromBottom(column);
     board[placeInRow][column] = playerChar;
+    columnHeights[column] ++;
     return true;
     
   }
   
+  /**
+   * Removes the topmost piece of column.
+   * Returns false if column was empty.
+   */
+  public boolean undoMove(int column) {
+    if ((column < 0) || (column > (MAXCOLNUM - 1)) || (columnHeights[column] == 0)) {
+      return false;
+    }
+    columnHeights[column] --;
+    board[MAXROWNUM - 1 - columnHeights[column]][column] = ' ';
+    return true;
+  }
+  
   /**
    * Determine if the next move leads to a win for computer
    * Followed by updateBoardForMove(...) to make the move.
@@ -73,18 +143,13 @@ class GameBoard {
       }
       
        /*
-        Landed on a candidate column. Scan rows bottom-top to find
-        the first available row for column. If this row leads to a
-        win for the computer, place disk there. Else, go on to next
-        column and repeat process.
+        Landed on a candidate column. Only the first available row
+        from the bottom can be played, so only that row is checked:
+        if it leads to a win for the computer, place disk there.
+        Else, go on to next column and repeat process.
        */
-      for (int row = (MAXROWNUM - 1); row >= 0; row --) {
-        if (board[row][col] != ' ') {
-          continue;
-        }
-        if (winPlayer(row, col, playerColor)) {
-          return col;
-        }
+      if (winPlayer(getFirstEmptyRowFromBottom(col), col, playerColor)) {
+        return col;
       }
     }
     return -1;
@@ -116,12 +181,10 @@ class GameBoard {
    * @return -1 if column is full
    */
   public int getFirstEmptyRowFromBottom(int col) {
-    for (int i = (MAXROWNUM - 1); i >= 0; i --) {
-      if (board[i][col] == ' ') {
-        return i;
-      }
+    if (columnHeights[col] == MAXROWNUM) {
+      return -1;
     }
-    return -1;
+    return (MAXROWNUM - 1) - columnHeights[col];
   }
   
   /**
@@ -159,7 +222,7 @@ class GameBoard {
   /*
    * @param row, col : Player places piece at row, col
    * @paran playerPieceColor : color of the player's piece
-   * Checks if the next three pieces (below) 
+   * Checks if the next CONNECT - 1 pieces (below) 
    * current piece belong to the same player.
    * It does not also count the current piece
    * because the same function is used to
@@ -174,11 +237,11 @@ class GameBoard {
    */
   
   private boolean verticalWin(int row, int col, char playerPieceColor) {
-    // Less than 4 of player's pieces in this column
-    if (row >= ((MAXROWNUM - 1) - 2)) {
+    // Not enough rows below for CONNECT of player's pieces in this column
+    if (row >= (MAXROWNUM - (CONNECT - 1))) {
       return false;
     }
-    for (int i = (row + 1); i < (row + 4); i ++) {
+    for (int i = (row + 1); i < (row + CONNECT); i ++) {
       // Either the cell is empty or it is occupied by the opponent
       if (board[i][col] != playerPieceColor) {
         return false;
@@ -207,9 +270,9 @@ class GameBoard {
     
     /* 
      * excluding the current piece (if present), there should be a total of
-     * three or more (neighboring) pieces on the same row for a horizontal win
+     * CONNECT - 1 or more (neighboring) pieces on the same row for a horizontal win
      */
-    if ((leftPlayerPieceCount + rightPlayerPieceCount) >= 3) {
+    if ((leftPlayerPieceCount + rightPlayerPieceCount) >= (CONNECT - 1)) {
       return true;
     }
     return false;
@@ -221,7 +284,7 @@ class GameBoard {
   private boolean rightDiagonalWin(int row, int col, char playerPieceColor) {
     int playerPiecesBottomLeft = countPiecesBottomLeft(row, col, playerPieceColor); 
     int playerPiecesTopRight = countPiecesTopRight(row, col, playerPieceColor);
-    if ((playerPiecesBottomLeft + playerPiecesTopRight) >= 3) {
+    if ((playerPiecesBottomLeft + playerPiecesTopRight) >= (CONNECT - 1)) {
       return true;
     }
     return false;
@@ -233,7 +296,7 @@ class GameBoard {
   private boolean leftDiagonalWin(int row, int col, char playerPieceColor) {
     int playerPiecesTopLeft = countPiecesTopLeft(row, col, playerPieceColor);
     int playerPiecesBottomRight = countPiecesBottomRight(row, col, playerPieceColor);
-    if ((playerPiecesTopLeft + playerPiecesBottomRight) >= 3) {
+    if ((playerPiecesTopLeft + playerPiecesBottomRight) >= (CONNECT - 1)) {
       return true;
     }
     return false;
@@ -317,16 +380,10 @@ class GameBoard {
    * Returns -1 if column is empty/was not touched even once
    */
   public int getMostRecentRowFilled(int column) {
-    //If last row for column is empty, the column was never filled
-    if (board[MAXROWNUM - 1][column] == ' ') {
+    if (columnHeights[column] == 0) {
       return -1;
     }
-    for (int row = (MAXROWNUM - 1); row >= 0; row --) {
-      if (board[row][column] == ' ') {
-        return (row + 1);
-      }
-    }
-    return 0;
+    return MAXROWNUM - columnHeights[column];
   }
   
   public int getNumberOfRows() {
@@ -1,11 +1,21 @@
 package model;
+import utilities.Difficulty;
 import utilities.Mode;
+import utilities.Variant;
 /**
  * Factory class to get the appropriate type of object for mode.
  */
 
 public class GameFactory {
+  private static final int STRATEGY_TABLE_MEGABYTES = 4;
+  private static final int PERFECT_TABLE_MEGABYTES = 16;
+  private static final int MCTS_TREE_NODES = 1 << 18;
+  // Tree nodes per playout of a move, leaving room for the subtree kept
+  private static final int MCTS_NODES_PER_PLAYOUT = 4;
   
+  /**
+   * Returns the single model instance for mode, as used by Connect4app.
+   */
   public static IGameMode getGameModel(Mode mode) {
     IGameMode model = null;
     if (mode == Mode.HUMAN) {
@@ -17,4 +27,130 @@ public class GameFactory {
     }
     return model;
   }
+  
+  /**
+   * Returns a new model for mode with a board of its own, for hosting
+   * several games in one process.
+   */
+  public static IGameMode newGameModel(Mode mode) {
+    return createGameModel(mode, null, null);
+  }
+  
+  /**
+   * Returns a new model for mode playing variant. The computer's own
+   * search only knows the standard board; on other boards it takes
+   * wins and blocks and otherwise plays at random, unless it is given
+   * a strategy of its own that reads the board snapshot.
+   */
+  public static IGameMode newGameModel(Mode mode, Variant variant) {
+    GameModeBase model = createGameModel(mode, null, null);
+    model.setVariant(variant);
+    return model;
+  }
+  
+  /**
+   * The standard board gets the BitBoard the search engines run on,
+   * other variants that fit in 128 bits a WideBitBoard, anything
+   * bigger the char[][] GameBoard.
+   */
+  static IGameBoard newBoard(Variant variant, char firstPiece, char secondPiece) {
+    if (variant.isStandard()) {
+      return new BitBoard(firstPiece, secondPiece);
+    } else if (WideBitBoard.fits(variant)) {
+      return new WideBitBoard(variant, firstPiece, secondPiece);
+    }
+    return new GameBoard(variant);
+  }
+  
+  /**
+   * @param sharedTable transposition table for the computer player,
+   * shared with other games; null for a table of its own
+   * @param sharedSolverTable table for the computer's endgame solver,
+   * shared with other games; null for one of its own
+   */
+  static GameModeBase createGameModel(Mode mode, TranspositionTable sharedTable,
+      TranspositionTable sharedSolverTable) {
+    GameModeBase model = null;
+    if (mode == Mode.HUMAN) {
+      model = new GameModeHumanvsHuman();
+    } else if (mode == Mode.COMPUTER) {
+      if (sharedTable == null) {
+        model = new GameModeHumanvsComputer();
+      } else {
+        model = new GameModeHumanvsComputer(sharedTable, sharedSolverTable);
+      }
+    } else {
+      throw new NullPointerException();
+    }
+    return model;
+  }
+  
+  /**
+   * Returns a new human vs computer model whose computer player uses
+   * strategy, see newStrategy(..).
+   */
+  public static IGameMode newGameModel(IComputerStrategy strategy) {
+    return new GameModeHumanvsComputer(strategy);
+  }
+  
+  /**
+   * Returns a new built-in computer player.
+   * @param strength search depth for ALPHA_BETA, thousands of playouts
+   * per move for MCTS, ignored by the others
+   */
+  public static IComputerStrategy newStrategy(Difficulty difficulty, int strength) {
+    return newStrategy(difficulty, strength, null, null, null);
+  }
+  
+  /**
+   * As newStrategy(difficulty, strength), with ALPHA_BETA's endgames
+   * and PERFECT's solves kept in sharedSolverTable, and ALPHA_BETA's
+   * searches and PERFECT's searches before its first solve in
+   * sharedTable, both shared with other games; null for tables of
+   * their own. PERFECT plays its first moves from book, if the book is
+   * solved.
+   */
+  static IComputerStrategy newStrategy(Difficulty difficulty, int strength,
+      TranspositionTable sharedTable, TranspositionTable sharedSolverTable,
+      OpeningBook book) {
+    IComputerStrategy strategy = null;
+    if (difficulty == Difficulty.RANDOM) {
+      strategy = new RandomStrategy();
+    } else if (difficulty == Difficulty.GREEDY) {
+      strategy = new GreedyStrategy();
+    } else if (difficulty == Difficulty.ALPHA_BETA) {
+      strategy = (sharedTable != null)
+          ? new AlphaBetaStrategy(strength, sharedTable, true, sharedSolverTable)
+          : new AlphaBetaStrategy(strength, new TranspositionTable(STRATEGY_TABLE_MEGABYTES),
+              false, sharedSolverTable);
+    } else if (difficulty == Difficulty.MCTS) {
+      long playouts = strength * 1000L;
+      strategy = new MctsStrategy((int) Math.max(2, Math.min(MCTS_TREE_NODES,
+          playouts * MCTS_NODES_PER_PLAYOUT)), playouts);
+    } else if (difficulty == Difficulty.PERFECT) {
+      PerfectStrategy perfect = (sharedSolverTable != null)
+          ? new PerfectStrategy(sharedSolverTable, sharedTable)
+          : new PerfectStrategy(PERFECT_TABLE_MEGABYTES);
+      perfect.setOpeningBook(book);
+      strategy = perfect;
+    } else {
+      throw new NullPointerException();
+    }
+    return strategy;
+  }
+  
+  /**
+   * Returns a Monte Carlo tree search player tuned by hand.
+   * @param treeNodes most tree nodes kept, about 37 bytes each
+   * @param playouts playouts per move, 0 to go by time only
+   * @param timeBudgetMillis time per move, 0 to go by playouts only
+   * @param exploration UCT exploration constant, sqrt(2) by default
+   */
+  public static IComputerStrategy newMctsStrategy(int treeNodes, long playouts,
+      long timeBudgetMillis, double exploration) {
+    MctsStrategy strategy = new MctsStrategy(treeNodes, playouts);
+    strategy.getSearch().setTimeBudgetMillis(timeBudgetMillis);
+    strategy.getSearch().setExplorationConstant(exploration);
+    return strategy;
+  }
 }
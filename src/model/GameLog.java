@@ -0,0 +1,646 @@
+package model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+import utilities.Mode;
+import utilities.Variant;
+
+/**
+ * Append-only binary log of the moves of any number of games, from
+ * which the games still in progress can be rebuilt after a crash.
+ *
+ * File layout: an 8-byte header (magic 'C4LG', int version), then
+ * blocks, each an int length, the CRC-32 of its records and that many
+ * bytes of records. A record is a type byte and its fields:
+ *   0-127  a move in that column, for the current game
+ *   START  int game number, short id length, id (UTF-8), byte mode,
+ *          bytes rows, columns and line length; becomes current
+ *   SELECT int game number; becomes current
+ *   END    int game number; the game is over or was closed
+ *   UNDO   the current game's last move was taken back
+ * A move costs one byte; each block adds eight, and a 5-byte SELECT
+ * for each game with moves in it. Reading stops at the first block
+ * that is cut off, fails its check or holds a record that does not make
+ * sense, such as the zeros a crash can leave at the end of the file, so
+ * a torn block is dropped as a whole; opening the log for appending
+ * truncates the file there.
+ *
+ * Each game appends to a GameRecord of its own, under that record's
+ * lock, so games never wait on each other or on a shared buffer. A
+ * writer thread collects what the records hold into one block, checks
+ * it, writes it out and forces it to disk once syncBatchMoves moves are
+ * waiting or syncIntervalMillis has passed, whichever comes first, so a
+ * crash loses at most that much; flush() writes and forces everything
+ * straight away. Appends never wait for the disk: a record holds on to
+ * its moves, however many, until the writer collects them. Appends
+ * never throw once a game is under way: after close() they are ignored,
+ * and a failed write is reported by getWriteFailure() and flush().
+ */
+public class GameLog implements Closeable {
+  static final int MAGIC = 0x43344C47;
+  static final int VERSION = 3;
+  private static final int HEADER_BYTES = 8;
+  // Length and CRC before each block
+  private static final int BLOCK_HEADER_BYTES = 8;
+  private static final int BLOCK_BYTES = 1 << 16;
+  private static final int RECORD_BYTES = 16;
+  private static final byte START = (byte) 0x80;
+  private static final byte SELECT = (byte) 0x81;
+  private static final byte END = (byte) 0x82;
+  private static final byte UNDO = (byte) 0x83;
+  private static final int MAX_COLUMNS = 128;
+
+  private final FileChannel channel;
+  private final int syncBatchMoves;
+  private final long syncIntervalNanos;
+  private final Thread writer;
+  private final AtomicInteger nextGameNumber;
+  // Records with bytes the writer has yet to collect, each queued once
+  private final ConcurrentLinkedQueue<GameRecord> dirty = new ConcurrentLinkedQueue<GameRecord>();
+  // Moves appended and not yet collected
+  private final AtomicInteger pendingMoves = new AtomicInteger();
+  private final LongAdder movesLogged = new LongAdder();
+  private volatile boolean closed;
+  private volatile long flushRequests;
+  // Guarded by this object's lock
+  private long flushed;
+  private IOException writeFailure;
+  // Used by the writer thread only; the block's header is filled in last
+  private ByteBuffer block = (ByteBuffer) ByteBuffer.allocate(BLOCK_BYTES)
+      .position(BLOCK_HEADER_BYTES);
+  private final CRC32 crc = new CRC32();
+  private int blockGame = -1;
+  private volatile long bytesWritten;
+  private volatile long syncCount;
+
+  /**
+   * A game the log holds no END for.
+   */
+  public static final class RecoveredGame {
+    private final int gameNumber;
+    private final String gameId;
+    private final Mode mode;
+    private final Variant variant;
+    private byte[] moves = new byte[16];
+    private int moveCount;
+
+    RecoveredGame(int gameNumber, String gameId, Mode mode, Variant variant) {
+      this.gameNumber = gameNumber;
+      this.gameId = gameId;
+      this.mode = mode;
+      this.variant = variant;
+    }
+
+    private void addMove(byte column) {
+      if (moveCount == moves.length) {
+        moves = Arrays.copyOf(moves, moveCount * 2);
+      }
+      moves[moveCount ++] = column;
+    }
+
+    private void removeMove() {
+      if (moveCount > 0) {
+        moveCount --;
+      }
+    }
+
+    int getGameNumber() {
+      return gameNumber;
+    }
+
+    public String getGameId() {
+      return gameId;
+    }
+
+    public Mode getMode() {
+      return mode;
+    }
+
+    public Variant getVariant() {
+      return variant;
+    }
+
+    /**
+     * Columns played, first player first
+     */
+    public byte[] getMoves() {
+      return Arrays.copyOf(moves, moveCount);
+    }
+  }
+
+  /**
+   * One game's place in the log. The game appends its records here,
+   * under this object's lock, and the writer thread collects them.
+   */
+  final class GameRecord {
+    private final int gameNumber;
+    private byte[] staged;
+    private int stagedBytes;
+    private int stagedMoves;
+    // True while in the dirty queue
+    private boolean queued;
+    private boolean ended;
+
+    private GameRecord(int gameNumber, int firstRecordBytes) {
+      this.gameNumber = gameNumber;
+      staged = new byte[Math.max(RECORD_BYTES, firstRecordBytes)];
+    }
+
+    void logMove(int column) {
+      synchronized (this) {
+        if (!stage(1)) {
+          return;
+        }
+        staged[stagedBytes ++] = (byte) column;
+        stagedMoves ++;
+      }
+      movesLogged.increment();
+      if (pendingMoves.incrementAndGet() == syncBatchMoves) {
+        LockSupport.unpark(writer);
+      }
+    }
+
+    /**
+     * Logs the taking back of the game's last move.
+     */
+    synchronized void logUndo() {
+      if (stage(1)) {
+        staged[stagedBytes ++] = UNDO;
+      }
+    }
+
+    /**
+     * Logs the end of the game; later records are ignored.
+     */
+    synchronized void end() {
+      if (stage(5)) {
+        staged[stagedBytes ++] = END;
+        putInt(gameNumber);
+        ended = true;
+      }
+    }
+
+    /**
+     * Makes room for bytes more and queues the record for the writer.
+     * @return false if the game has ended or the log is closed
+     */
+    private boolean stage(int bytes) {
+      if (ended || closed) {
+        return false;
+      }
+      if (stagedBytes + bytes > staged.length) {
+        staged = Arrays.copyOf(staged, Math.max(staged.length * 2, stagedBytes + bytes));
+      }
+      if (!queued) {
+        queued = true;
+        dirty.offer(this);
+      }
+      return true;
+    }
+
+    private void putInt(int value) {
+      staged[stagedBytes ++] = (byte) (value >>> 24);
+      staged[stagedBytes ++] = (byte) (value >>> 16);
+      staged[stagedBytes ++] = (byte) (value >>> 8);
+      staged[stagedBytes ++] = (byte) value;
+    }
+
+    /**
+     * Moves what the game has appended into the writer's block, behind
+     * a SELECT unless the block is already on this game or starts it.
+     */
+    private synchronized void collect() {
+      queued = false;
+      if (stagedBytes == 0) {
+        return;
+      }
+      ByteBuffer buffer = blockRoom(5 + stagedBytes);
+      if (blockGame != gameNumber && staged[0] != START) {
+        buffer.put(SELECT).putInt(gameNumber);
+      }
+      buffer.put(staged, 0, stagedBytes);
+      blockGame = ended ? -1 : gameNumber;
+      pendingMoves.addAndGet(-stagedMoves);
+      stagedBytes = 0;
+      stagedMoves = 0;
+      if (ended) {
+        staged = null;
+      } else if (staged.length > RECORD_BYTES * 4) {
+        staged = new byte[RECORD_BYTES];
+      }
+    }
+  }
+
+  private GameLog(FileChannel channel, int syncBatchMoves, long syncIntervalMillis,
+      int nextGameNumber) {
+    this.channel = channel;
+    this.syncBatchMoves = syncBatchMoves;
+    this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis);
+    this.nextGameNumber = new AtomicInteger(nextGameNumber);
+    writer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        writeLoop();
+      }
+    }, "game-log-writer");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Opens file for appending, creating it if needed. The file is first
+   * cut back to its last good block, dropping what a crash left behind.
+   * @param syncBatchMoves moves after which the log is forced to disk
+   * @param syncIntervalMillis time after which waiting moves are forced
+   * to disk, 0 to go by syncBatchMoves only
+   * @throws IOException if the file cannot be opened or is not a game log
+   */
+  public static GameLog open(Path file, int syncBatchMoves, long syncIntervalMillis)
+      throws IOException {
+    if (syncBatchMoves < 1) {
+      throw new IllegalArgumentException("Sync batch must be at least 1 move");
+    }
+    if (syncIntervalMillis < 0) {
+      throw new IllegalArgumentException("Sync interval cannot be negative");
+    }
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      int nextGameNumber = 0;
+      if (channel.size() == 0) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        while (header.hasRemaining()) {
+          channel.write(header);
+        }
+        channel.force(false);
+      } else {
+        Replay replay = replay(channel, file);
+        nextGameNumber = replay.nextGameNumber;
+        channel.truncate(replay.validBytes);
+      }
+      channel.position(channel.size());
+      return new GameLog(channel, syncBatchMoves, syncIntervalMillis, nextGameNumber);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Games in file that were started and never ended, in the order they
+   * were started, with their moves up to the first bad block.
+   * @throws IOException if the file cannot be read or is not a game log
+   */
+  public static List<RecoveredGame> recover(Path file) throws IOException {
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      return new ArrayList<RecoveredGame>(replay(channel, file).games.values());
+    } finally {
+      channel.close();
+    }
+  }
+
+  private static class Replay {
+    final Map<Integer, RecoveredGame> games = new LinkedHashMap<Integer, RecoveredGame>();
+    RecoveredGame current;
+    int nextGameNumber;
+    long validBytes;
+  }
+
+  /**
+   * Reads the blocks of the log in channel up to the first bad one.
+   */
+  private static Replay replay(FileChannel channel, Path file) throws IOException {
+    long size = channel.size();
+    if (size < HEADER_BYTES) {
+      throw new IOException(file + " is not a game log");
+    }
+    ByteBuffer log = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    if (log.getInt() != MAGIC) {
+      throw new IOException(file + " is not a game log");
+    }
+    int version = log.getInt();
+    if (version != VERSION) {
+      throw new IOException(file + " is a version " + version + " game log, not " + VERSION);
+    }
+    Replay replay = new Replay();
+    CRC32 crc = new CRC32();
+    replay.validBytes = log.position();
+    while (log.remaining() >= BLOCK_HEADER_BYTES) {
+      int length = log.getInt();
+      int check = log.getInt();
+      if (length <= 0 || length > log.remaining()) {
+        break;
+      }
+      ByteBuffer records = log.slice();
+      records.limit(length);
+      crc.reset();
+      crc.update(records.duplicate());
+      if ((int) crc.getValue() != check || !wellFormed(records.duplicate())
+          || !applyBlock(records, replay)) {
+        break;
+      }
+      log.position(log.position() + length);
+      replay.validBytes = log.position();
+    }
+    return replay;
+  }
+
+  /**
+   * True if records holds whole records of known types, and nothing else.
+   */
+  private static boolean wellFormed(ByteBuffer records) {
+    while (records.hasRemaining()) {
+      int fieldBytes = fieldBytes(records);
+      if (fieldBytes < 0 || records.remaining() < 1 + fieldBytes) {
+        return false;
+      }
+      records.position(records.position() + 1 + fieldBytes);
+    }
+    return true;
+  }
+
+  /**
+   * Length of the fields of the record at records' position, which is
+   * left unchanged.
+   * @return -1 if the record is cut off or of no known type
+   */
+  private static int fieldBytes(ByteBuffer records) {
+    int start = records.position();
+    byte type = records.get(start);
+    if (type >= 0 || type == UNDO) {
+      return 0;
+    }
+    if (type == SELECT || type == END) {
+      return 4;
+    }
+    if (type == START && records.remaining() >= 7) {
+      return 6 + (records.getShort(start + 5) & 0xFFFF) + 4;
+    }
+    return -1;
+  }
+
+  /**
+   * Replays the well-formed records of one block.
+   * @return false if a game was started with a mode or board that does
+   * not exist, which leaves the block partly applied
+   */
+  private static boolean applyBlock(ByteBuffer records, Replay replay) {
+    while (records.hasRemaining()) {
+      byte type = records.get();
+      if (type >= 0) {
+        if (replay.current != null) {
+          replay.current.addMove(type);
+        }
+      } else if (type == START) {
+        int gameNumber = records.getInt();
+        byte[] id = new byte[records.getShort() & 0xFFFF];
+        records.get(id);
+        int mode = records.get();
+        if (mode < 0 || mode >= Mode.values().length) {
+          return false;
+        }
+        Variant variant;
+        try {
+          variant = new Variant(records.get() & 0xFF, records.get() & 0xFF, records.get() & 0xFF);
+        } catch (IllegalArgumentException e) {
+          return false;
+        }
+        replay.current = new RecoveredGame(gameNumber, new String(id, StandardCharsets.UTF_8),
+            Mode.values()[mode], variant);
+        replay.games.put(gameNumber, replay.current);
+        replay.nextGameNumber = Math.max(replay.nextGameNumber, gameNumber + 1);
+      } else if (type == UNDO) {
+        if (replay.current != null) {
+          replay.current.removeMove();
+        }
+      } else {
+        int gameNumber = records.getInt();
+        replay.current = (type == SELECT) ? replay.games.get(gameNumber) : null;
+        if (type == END) {
+          replay.games.remove(gameNumber);
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Logs the start of a game.
+   * @return the game's record, to log its moves to; null if the log is
+   * closed
+   * @throws IllegalArgumentException if the board is too large to log
+   */
+  GameRecord startGame(String gameId, Mode mode, Variant variant) {
+    if (variant.getNumberOfCols() > MAX_COLUMNS || variant.getNumberOfRows() > 255) {
+      throw new IllegalArgumentException("Cannot log games on a " + variant + " board");
+    }
+    if (closed) {
+      return null;
+    }
+    byte[] id = gameId.getBytes(StandardCharsets.UTF_8);
+    GameRecord record = new GameRecord(nextGameNumber.getAndIncrement(), 11 + id.length);
+    synchronized (record) {
+      if (!record.stage(11 + id.length)) {
+        return null;
+      }
+      record.staged[record.stagedBytes ++] = START;
+      record.putInt(record.gameNumber);
+      record.staged[record.stagedBytes ++] = (byte) (id.length >>> 8);
+      record.staged[record.stagedBytes ++] = (byte) id.length;
+      System.arraycopy(id, 0, record.staged, record.stagedBytes, id.length);
+      record.stagedBytes += id.length;
+      record.staged[record.stagedBytes ++] = (byte) mode.ordinal();
+      record.staged[record.stagedBytes ++] = (byte) variant.getNumberOfRows();
+      record.staged[record.stagedBytes ++] = (byte) variant.getNumberOfCols();
+      record.staged[record.stagedBytes ++] = (byte) variant.getConnectLength();
+    }
+    return record;
+  }
+
+  /**
+   * The record of a game the log already holds, as recovered, to carry
+   * on logging its moves.
+   */
+  GameRecord resumeGame(int gameNumber) {
+    return new GameRecord(gameNumber, 0);
+  }
+
+  /**
+   * The writer's block, once it has room for bytes more.
+   */
+  private ByteBuffer blockRoom(int bytes) {
+    if (block.remaining() < bytes) {
+      ByteBuffer larger = ByteBuffer.allocate(Math.max(block.capacity() * 2,
+          block.position() + bytes));
+      block.flip();
+      larger.put(block);
+      block = larger;
+    }
+    return block;
+  }
+
+  /**
+   * Writes out everything appended so far and forces it to disk.
+   * @throws IOException if a write has failed since the log was opened
+   */
+  public void flush() throws IOException {
+    synchronized (this) {
+      long target = ++ flushRequests;
+      LockSupport.unpark(writer);
+      while (flushed < target && writeFailure == null && writer.isAlive()) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted flushing the game log");
+        }
+      }
+      if (writeFailure != null) {
+        throw writeFailure;
+      }
+    }
+  }
+
+  /**
+   * Writes out everything appended so far and closes the file. Games
+   * still in progress stay in progress in the log.
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+    }
+    LockSupport.unpark(writer);
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    channel.close();
+    synchronized (this) {
+      if (writeFailure != null) {
+        throw writeFailure;
+      }
+    }
+  }
+
+  private void writeLoop() {
+    while (true) {
+      long flushTarget = flushRequests;
+      boolean closing = closed;
+      if (!closing && flushTarget == flushedByWriter() && pendingMoves.get() < syncBatchMoves) {
+        if (syncIntervalNanos == 0) {
+          LockSupport.park(this);
+          continue;
+        }
+        LockSupport.parkNanos(this, syncIntervalNanos);
+        if (dirty.isEmpty()) {
+          continue;
+        }
+        flushTarget = flushRequests;
+        closing = closed;
+      }
+      GameRecord record;
+      while ((record = dirty.poll()) != null) {
+        record.collect();
+      }
+      IOException failure = writeOut();
+      synchronized (this) {
+        if (failure != null && writeFailure == null) {
+          writeFailure = failure;
+        }
+        flushed = flushTarget;
+        notifyAll();
+      }
+      if (closing && dirty.isEmpty()) {
+        return;
+      }
+    }
+  }
+
+  private synchronized long flushedByWriter() {
+    return flushed;
+  }
+
+  /**
+   * Checks the block collected from the records, then writes and forces
+   * it, while games go on appending to their records.
+   * @return the exception if the write failed
+   */
+  private IOException writeOut() {
+    int length = block.position() - BLOCK_HEADER_BYTES;
+    if (length == 0) {
+      return null;
+    }
+    crc.reset();
+    crc.update(block.array(), BLOCK_HEADER_BYTES, length);
+    block.putInt(0, length).putInt(4, (int) crc.getValue()).flip();
+    try {
+      while (block.hasRemaining()) {
+        channel.write(block);
+      }
+      channel.force(false);
+      bytesWritten += BLOCK_HEADER_BYTES + length;
+      syncCount ++;
+      return null;
+    } catch (IOException e) {
+      return e;
+    } finally {
+      if (block.capacity() > BLOCK_BYTES * 4) {
+        block = ByteBuffer.allocate(BLOCK_BYTES);
+      }
+      block.clear().position(BLOCK_HEADER_BYTES);
+    }
+  }
+
+  /**
+   * Moves appended since the log was opened
+   */
+  public long getMovesLogged() {
+    return movesLogged.sum();
+  }
+
+  /**
+   * Bytes written to the file since it was opened
+   */
+  public long getBytesWritten() {
+    return bytesWritten;
+  }
+
+  /**
+   * Number of times the file was forced to disk
+   */
+  public long getSyncCount() {
+    return syncCount;
+  }
+
+  /**
+   * The first write that failed, null if none has. Moves appended
+   * after a failure are lost.
+   */
+  public synchronized IOException getWriteFailure() {
+    return writeFailure;
+  }
+}
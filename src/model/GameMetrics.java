@@ -0,0 +1,321 @@
+package model;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import utilities.LatencyHistogram;
+
+/**
+ * Counters and latency histograms for any number of games, given to
+ * each with GameModeBase.setMetrics(..) or to every game of a
+ * GameSessionManager with its setMetrics(..). Without one a game
+ * records nothing.
+ *
+ * Each game counts into a Recorder of its own, in plain fields guarded
+ * by the game's lock, and adds its counts to the shared LongAdders on
+ * every sampled call and when a game ends, so the counts read here may
+ * trail the games by a few calls each. The latency of
+ * selectColumnForMove and the time spent notifying listeners are
+ * measured on one call in every sampleInterval per game, as reading the
+ * clock twice costs more than the rest of the bookkeeping put together.
+ * Each game starts counting calls at random, so games shorter than the
+ * interval are sampled too. The computer's think time is measured on
+ * every move, as a search dwarfs the clock.
+ *
+ * Read through the getters, dump(), or over JMX after register(..).
+ */
+public class GameMetrics implements GameMetricsMXBean {
+  private final int sampleMask;
+  private final LongAdder moves = new LongAdder();
+  private final LongAdder movesUndone = new LongAdder();
+  private final LongAdder invalidMoves = new LongAdder();
+  private final LongAdder invalidTurns = new LongAdder();
+  private final LongAdder notInProgress = new LongAdder();
+  private final LongAdder wins = new LongAdder();
+  private final LongAdder ties = new LongAdder();
+  private final LatencyHistogram moveLatency = new LatencyHistogram();
+  private final LatencyHistogram computerThink = new LatencyHistogram();
+  private final LatencyHistogram dispatch = new LatencyHistogram();
+  private ObjectName registeredName;
+
+  /**
+   * @param sampleInterval calls per game between timed ones, a power of two
+   */
+  public GameMetrics(int sampleInterval) {
+    if (sampleInterval < 1 || Integer.bitCount(sampleInterval) != 1) {
+      throw new IllegalArgumentException("Sample interval must be a power of two");
+    }
+    sampleMask = sampleInterval - 1;
+  }
+
+  /**
+   * Times one call in 64.
+   */
+  public GameMetrics() {
+    this(64);
+  }
+
+  /**
+   * One game's share of the metrics. Used under the game's lock only.
+   */
+  static final class Recorder {
+    final GameMetrics metrics;
+    private int moveTick;
+    private int dispatchTick;
+    long moves;
+    long movesUndone;
+    long invalidMoves;
+    long invalidTurns;
+    long notInProgress;
+    long wins;
+    long ties;
+
+    Recorder(GameMetrics metrics) {
+      this.metrics = metrics;
+      // Start anywhere, so games shorter than the interval get sampled too
+      moveTick = ThreadLocalRandom.current().nextInt();
+      dispatchTick = moveTick;
+    }
+
+    /**
+     * @return true if this call of selectColumnForMove is to be timed
+     */
+    boolean sampleMove() {
+      return (++ moveTick & metrics.sampleMask) == 0;
+    }
+
+    /**
+     * @return true if this fan-out is to be timed
+     */
+    boolean sampleDispatch() {
+      return (++ dispatchTick & metrics.sampleMask) == 0;
+    }
+
+    /**
+     * Adds the counts so far to the shared ones.
+     */
+    void flush() {
+      if (moves != 0) {
+        metrics.moves.add(moves);
+        moves = 0;
+      }
+      if (movesUndone != 0) {
+        metrics.movesUndone.add(movesUndone);
+        movesUndone = 0;
+      }
+      if (invalidMoves != 0) {
+        metrics.invalidMoves.add(invalidMoves);
+        invalidMoves = 0;
+      }
+      if (invalidTurns != 0) {
+        metrics.invalidTurns.add(invalidTurns);
+        invalidTurns = 0;
+      }
+      if (notInProgress != 0) {
+        metrics.notInProgress.add(notInProgress);
+        notInProgress = 0;
+      }
+      if (wins != 0) {
+        metrics.wins.add(wins);
+        wins = 0;
+      }
+      if (ties != 0) {
+        metrics.ties.add(ties);
+        ties = 0;
+      }
+    }
+
+    void moveTimed(long nanos) {
+      metrics.moveLatency.record(nanos);
+    }
+
+    void computerThought(long nanos) {
+      metrics.computerThink.record(nanos);
+    }
+
+    void dispatchTimed(long nanos) {
+      metrics.dispatch.record(nanos);
+    }
+  }
+
+  /**
+   * Exports the metrics to the platform MBean server as
+   * connectfour:type=GameMetrics,name=name.
+   * @throws IllegalArgumentException if the name is invalid or taken
+   */
+  public synchronized void register(String name) {
+    try {
+      ObjectName objectName = new ObjectName("connectfour:type=GameMetrics,name="
+          + ObjectName.quote(name));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+      registeredName = objectName;
+    } catch (JMException e) {
+      throw new IllegalArgumentException("Cannot register metrics as " + name, e);
+    }
+  }
+
+  /**
+   * Removes the metrics from the MBean server, if registered.
+   */
+  public synchronized void unregister() {
+    if (registeredName == null) {
+      return;
+    }
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      server.unregisterMBean(registeredName);
+    } catch (JMException e) {
+      // Already gone
+    }
+    registeredName = null;
+  }
+
+  @Override
+  public long getMoves() {
+    return moves.sum();
+  }
+
+  @Override
+  public long getMovesUndone() {
+    return movesUndone.sum();
+  }
+
+  @Override
+  public long getInvalidMoves() {
+    return invalidMoves.sum();
+  }
+
+  @Override
+  public long getInvalidTurns() {
+    return invalidTurns.sum();
+  }
+
+  /**
+   * Moves and history walks turned away as no game was in progress
+   */
+  @Override
+  public long getNotInProgress() {
+    return notInProgress.sum();
+  }
+
+  @Override
+  public long getWins() {
+    return wins.sum();
+  }
+
+  @Override
+  public long getTies() {
+    return ties.sum();
+  }
+
+  public LatencyHistogram getMoveLatency() {
+    return moveLatency;
+  }
+
+  public LatencyHistogram getComputerThink() {
+    return computerThink;
+  }
+
+  /**
+   * Time to notify every listener of one event, or to queue it for
+   * them under async dispatch
+   */
+  public LatencyHistogram getDispatch() {
+    return dispatch;
+  }
+
+  @Override
+  public long getMoveLatencyP50() {
+    return moveLatency.percentile(0.5);
+  }
+
+  @Override
+  public long getMoveLatencyP99() {
+    return moveLatency.percentile(0.99);
+  }
+
+  @Override
+  public long getMoveLatencyP999() {
+    return moveLatency.percentile(0.999);
+  }
+
+  @Override
+  public long getMoveLatencyMax() {
+    return moveLatency.getMax();
+  }
+
+  @Override
+  public long getComputerThinkP50() {
+    return computerThink.percentile(0.5);
+  }
+
+  @Override
+  public long getComputerThinkP99() {
+    return computerThink.percentile(0.99);
+  }
+
+  @Override
+  public long getComputerThinkMax() {
+    return computerThink.getMax();
+  }
+
+  @Override
+  public long getDispatchP50() {
+    return dispatch.percentile(0.5);
+  }
+
+  @Override
+  public long getDispatchP99() {
+    return dispatch.percentile(0.99);
+  }
+
+  @Override
+  public long getDispatchMax() {
+    return dispatch.getMax();
+  }
+
+  @Override
+  public String dump() {
+    StringBuilder dump = new StringBuilder();
+    dump.append("moves ").append(getMoves()).append('\n');
+    dump.append("moves_undone ").append(getMovesUndone()).append('\n');
+    dump.append("invalid_moves ").append(getInvalidMoves()).append('\n');
+    dump.append("invalid_turns ").append(getInvalidTurns()).append('\n');
+    dump.append("not_in_progress ").append(getNotInProgress()).append('\n');
+    dump.append("wins ").append(getWins()).append('\n');
+    dump.append("ties ").append(getTies()).append('\n');
+    appendHistogram(dump, "move_latency_ns", moveLatency);
+    appendHistogram(dump, "computer_think_ns", computerThink);
+    appendHistogram(dump, "dispatch_ns", dispatch);
+    return dump.toString();
+  }
+
+  private static void appendHistogram(StringBuilder dump, String name,
+      LatencyHistogram histogram) {
+    dump.append(name).append(" count ").append(histogram.getCount())
+        .append(" mean ").append(histogram.getMean())
+        .append(" p50 ").append(histogram.percentile(0.5))
+        .append(" p99 ").append(histogram.percentile(0.99))
+        .append(" p99.9 ").append(histogram.percentile(0.999))
+        .append(" max ").append(histogram.getMax()).append('\n');
+  }
+
+  @Override
+  public void reset() {
+    moves.reset();
+    movesUndone.reset();
+    invalidMoves.reset();
+    invalidTurns.reset();
+    notInProgress.reset();
+    wins.reset();
+    ties.reset();
+    moveLatency.reset();
+    computerThink.reset();
+    dispatch.reset();
+  }
+}
@@ -0,0 +1,51 @@
+package model;
+
+/**
+ * Management interface GameMetrics is exported through. Latencies are
+ * in nanoseconds, percentiles to within 1/8.
+ */
+public interface GameMetricsMXBean {
+  long getMoves();
+
+  long getMovesUndone();
+
+  long getInvalidMoves();
+
+  long getInvalidTurns();
+
+  long getNotInProgress();
+
+  long getWins();
+
+  long getTies();
+
+  long getMoveLatencyP50();
+
+  long getMoveLatencyP99();
+
+  long getMoveLatencyP999();
+
+  long getMoveLatencyMax();
+
+  long getComputerThinkP50();
+
+  long getComputerThinkP99();
+
+  long getComputerThinkMax();
+
+  long getDispatchP50();
+
+  long getDispatchP99();
+
+  long getDispatchMax();
+
+  /**
+   * Plain-text dump of every figure, one per line
+   */
+  String dump();
+
+  /**
+   * Sets every counter and histogram back to zero.
+   */
+  void reset();
+}
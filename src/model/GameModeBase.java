@@ -1,9 +1,18 @@
 package model;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
+import utilities.IBoardSnapshot;
 import utilities.ListenerInformation;
+import utilities.Mode;
+import utilities.MoveEvent;
+import utilities.SlowConsumerPolicy;
+import utilities.Variant;
 import views.IListener;
 
 /**
@@ -17,15 +26,52 @@ import views.IListener;
  * 
  * The rest of the methods (ie., almost duplicate code)
  * are implemented here, in the parent.
+ * 
+ * Each game is guarded by its own monitor: selectColumnForMove is
+ * synchronized here and subclasses declare registerListener
+ * synchronized, so moves on one game are applied one at a time, in
+ * full, while separate games never wait on each other. Listeners are
+ * notified while the lock is held, and can call back into the game (the
+ * lock is reentrant).
+ * 
+ * A move allocates nothing: listeners are sent one reused MoveEvent,
+ * valid only during the callback, and the board is copied only when
+ * one asks for it.
  */
 public abstract class GameModeBase implements IGameMode {
-  protected static GameBoard board;
+  protected IGameBoard board;
+  protected Variant variant = Variant.STANDARD;
+  //Board as of the latest move, shared with every listener; null until asked for
+  private volatile IBoardSnapshot currentSnapshot;
+  private final ReusedMoveEvent reusedEvent = new ReusedMoveEvent();
+  //Event being sent to listeners, null between events
+  private ReusedMoveEvent dispatching;
   protected Set<IListener> listeners;
+  //Listeners as events are sent to them - wrapped in AsyncListener when async
+  protected List<IListener> dispatchTargets;
+  private Executor dispatchExecutor;
+  private int dispatchQueueCapacity;
+  private SlowConsumerPolicy slowConsumerPolicy;
   protected IListener player1;
   protected IListener player2;
   protected int playerCount;
   protected int allowedNumberOfPlayers;
   protected boolean gameInProgress;
+  //Set when a seated player has left the game; no one takes the seat
+  private boolean abandoned;
+  //Moves made on the current board, by both players
+  protected int movesPlayed;
+  //Columns played in order; from movesPlayed on, moves that can be redone
+  private int[] moveHistory;
+  private int historyLength;
+  private GameLog gameLog;
+  private String gameLogId;
+  //The game's open record in gameLog, null if none
+  private GameLog.GameRecord gameRecord;
+  //This game's share of the metrics, null if none
+  private GameMetrics.Recorder metrics;
+  //Counts moves and history walks, for GameSessionManager to tell idle games
+  private volatile int activity;
   //Unique ID for every non-player listener
   protected int listenerID;
   protected final char noWinner = 'N';
@@ -36,15 +82,99 @@ public abstract class GameModeBase implements IGameMode {
     playerCount = 0;
     allowedNumberOfPlayers = maxNumberOfPlayers;
     gameInProgress = false;
+    abandoned = false;
     listeners = new HashSet<IListener>();
+    dispatchTargets = new ArrayList<IListener>();
     player1 = null;
     player2 = null;
     listenerID = 0;
-    board = new GameBoard();
+    movesPlayed = 0;
+    pinEventBoard();
+    board = GameFactory.newBoard(variant, player1color, player2color);
+    currentSnapshot = null;
+    moveHistory = new int[board.getNumberOfRows() * board.getNumberOfCols()];
+    historyLength = 0;
   }
  
-  protected ListenerInformation nonPlayerListener(IListener newListener) {
+  protected void addListener(IListener newListener) {
     listeners.add(newListener);
+    dispatchTargets.add(dispatchTargetFor(newListener));
+  }
+  
+  private IListener dispatchTargetFor(IListener listener) {
+    if (dispatchExecutor == null) {
+      return listener;
+    }
+    return new AsyncListener(listener, dispatchExecutor, dispatchQueueCapacity,
+        slowConsumerPolicy);
+  }
+  
+  /**
+   * Switches broadcast events, for listeners registered so far and from
+   * now on, to delivery on executor through a bounded queue of
+   * queueCapacity events per listener.
+   */
+  public synchronized void setAsyncDispatch(Executor executor, int queueCapacity,
+      SlowConsumerPolicy policy) {
+    if (executor == null || policy == null) {
+      throw new NullPointerException();
+    }
+    if (queueCapacity < 1) {
+      throw new IllegalArgumentException("Queue capacity must be at least 1");
+    }
+    dispatchExecutor = executor;
+    dispatchQueueCapacity = queueCapacity;
+    slowConsumerPolicy = policy;
+    for (int i = 0; i < dispatchTargets.size(); i ++) {
+      IListener target = dispatchTargets.get(i);
+      if (target instanceof AsyncListener) {
+        target = ((AsyncListener) target).getTarget();
+      }
+      dispatchTargets.set(i, dispatchTargetFor(target));
+    }
+  }
+  
+  /**
+   * Queues of the asynchronously notified listeners, for their metrics
+   */
+  public synchronized List<AsyncListener> getAsyncListeners() {
+    List<AsyncListener> asyncListeners = new ArrayList<AsyncListener>();
+    for (IListener target : dispatchTargets) {
+      if (target instanceof AsyncListener) {
+        asyncListeners.add((AsyncListener) target);
+      }
+    }
+    return asyncListeners;
+  }
+  
+  /**
+   * Forgets listeners the DISCONNECT policy has cut off, so they are
+   * neither notified nor kept reachable by the game.
+   */
+  private void removeDisconnectedListeners() {
+    if (slowConsumerPolicy != SlowConsumerPolicy.DISCONNECT) {
+      return;
+    }
+    for (int i = dispatchTargets.size() - 1; i >= 0; i --) {
+      IListener target = dispatchTargets.get(i);
+      if ((target instanceof AsyncListener) && ((AsyncListener) target).isDisconnected()) {
+        dispatchTargets.remove(i);
+        listeners.remove(((AsyncListener) target).getTarget());
+      }
+    }
+  }
+  
+  /**
+   * Starts over with an empty board and no listeners. Settings such as
+   * async dispatch, and the computer's search, are kept.
+   */
+  protected synchronized void resetGame() {
+    initializeGame(allowedNumberOfPlayers);
+    restartLoggedGame();
+  }
+  
+  protected ListenerInformation nonPlayerListener(IListener newListener) {
+    addListener(newListener);
     String listenerNumber = String.valueOf(listenerID);
     String id = "Listener" + listenerNumber;
     ListenerInformation newListenerInformation = new ListenerInformation('G', id); 
@@ -54,41 +184,440 @@ public abstract class GameModeBase implements IGameMode {
   
   public abstract ListenerInformation registerListener(IListener newListener, boolean isPlayer);
   
-  public abstract boolean selectColumnForMove(IListener player, int column);
+  @Override
+  public synchronized void unregisterListener(IListener listener) {
+    if (!listeners.remove(listener)) {
+      return;
+    }
+    for (int i = dispatchTargets.size() - 1; i >= 0; i --) {
+      IListener target = dispatchTargets.get(i);
+      if (target == listener || ((target instanceof AsyncListener)
+          && ((AsyncListener) target).getTarget() == listener)) {
+        dispatchTargets.remove(i);
+      }
+    }
+    if (listener != player1 && listener != player2) {
+      return;
+    }
+    char opponentPiece = (listener == player1) ? player2color : player1color;
+    if (listener == player1) {
+      player1 = null;
+    } else {
+      player2 = null;
+    }
+    if (playerCount < allowedNumberOfPlayers) {
+      //Not started yet: someone else can sit down
+      playerCount --;
+      return;
+    }
+    abandoned = true;
+    plyChanged();
+    if (gameInProgress) {
+      endLoggedGame();
+      fireGameWonEvent(opponentPiece);
+      gameInProgress = false;
+    }
+  }
+  
+  /**
+   * Plays column for player, under the game's lock, timed when the
+   * metrics sample this move.
+   */
+  @Override
+  public synchronized boolean selectColumnForMove(IListener player, int column) {
+    pinEventBoard();
+    activity ++;
+    if (metrics == null || !metrics.sampleMove()) {
+      return playColumn(player, column);
+    }
+    long start = System.nanoTime();
+    boolean played = playColumn(player, column);
+    long nanos = System.nanoTime() - start;
+    if (metrics != null) {
+      metrics.moveTimed(nanos);
+      metrics.flush();
+    }
+    return played;
+  }
+  
+  /**
+   * The mode's move: validates it, makes it and any reply, and notifies
+   * listeners. Called with the game's lock held.
+   */
+  protected abstract boolean playColumn(IListener player, int column);
+  
+  /**
+   * Changes with every move tried and every walk through the history.
+   */
+  int getActivity() {
+    return activity;
+  }
+  
+  /**
+   * Metrics every move is recorded in from now on, null for none.
+   */
+  public synchronized void setMetrics(GameMetrics metrics) {
+    if (this.metrics != null) {
+      this.metrics.flush();
+    }
+    this.metrics = (metrics == null) ? null : new GameMetrics.Recorder(metrics);
+  }
+  
+  public synchronized GameMetrics getMetrics() {
+    return (metrics == null) ? null : metrics.metrics;
+  }
+  
+  /**
+   * Recorder of the computer's think time, null if none.
+   */
+  GameMetrics.Recorder getMetricsRecorder() {
+    return metrics;
+  }
+  
+  protected void notifyInvalidMove(IListener player) {
+    if (metrics != null) {
+      metrics.invalidMoves ++;
+    }
+    player.invalidMoveNotify();
+  }
+  
+  protected void notifyInvalidTurn(IListener player) {
+    if (metrics != null) {
+      metrics.invalidTurns ++;
+    }
+    player.invalidTurnNotify();
+  }
+  
+  protected void notifyNotInProgress(IListener player) {
+    if (metrics != null) {
+      metrics.notInProgress ++;
+    }
+    player.gameNotInProgressNotify();
+  }
+  
+  /**
+   * @return start time if this fan-out is to be timed, else 0
+   */
+  private long startDispatch() {
+    if (metrics == null || !metrics.sampleDispatch()) {
+      return 0;
+    }
+    return System.nanoTime();
+  }
+  
+  private void endDispatch(long start) {
+    if (start != 0) {
+      metrics.dispatchTimed(System.nanoTime() - start);
+    }
+  }
   
   protected ListenerInformation getPlayerInformation(char playerPieceColor, String playerID) {
     return new ListenerInformation(playerPieceColor, playerID);
   }
   
-  public void fireMoveMadeEvent() {
-    for (IListener view : listeners) {
-      view.correctMoveNotify();
+  /**
+   * Records the move just made in column in the history and the game
+   * log. Called by the modes after the board is updated and before
+   * fireMoveMadeEvent, so listeners only hear of recorded moves.
+   */
+  protected void moveMade(int column) {
+    recordMove(column);
+    if (gameRecord != null) {
+      gameRecord.logMove(column);
+    }
+  }
+  
+  /**
+   * Notifies listeners of the move just made in column, which
+   * moveMade(..) has recorded. One event and one board snapshot are
+   * built, whatever the number of listeners.
+   */
+  public void fireMoveMadeEvent(int column) {
+    currentSnapshot = null;
+    int row = board.getMostRecentRowFilled(column);
+    //Players alternate, the first player's pieces going in on odd move numbers
+    char piece = (movesPlayed % 2 == 1) ? player1color : player2color;
+    if (metrics != null) {
+      metrics.moves ++;
+    }
+    ReusedMoveEvent outer = dispatching;
+    ReusedMoveEvent move = startEvent(outer, column, row, piece);
+    long start = startDispatch();
+    try {
+      for (int i = 0; i < dispatchTargets.size(); i ++) {
+        dispatchTargets.get(i).moveMadeNotify(move);
+      }
+    } finally {
+      dispatching = outer;
+    }
+    endDispatch(start);
+    removeDisconnectedListeners();
+  }
+  
+  /**
+   * @return the reused event, or a new one if outer is still being sent
+   */
+  private ReusedMoveEvent startEvent(ReusedMoveEvent outer, int column, int row, char piece) {
+    ReusedMoveEvent event = (outer == null) ? reusedEvent : new ReusedMoveEvent();
+    event.set(column, row, piece, movesPlayed);
+    dispatching = event;
+    return event;
+  }
+  
+  /**
+   * Called before the board changes: takes the snapshot of the event
+   * being sent, if any, while the board is still as of that event.
+   */
+  protected void pinEventBoard() {
+    if (dispatching != null) {
+      dispatching.getBoard();
+    }
+  }
+  
+  /**
+   * Snapshot of the board as it stands, taken once per move at most.
+   */
+  private synchronized IBoardSnapshot snapshotBoard() {
+    IBoardSnapshot snapshot = currentSnapshot;
+    if (snapshot == null) {
+      snapshot = board.snapshot();
+      currentSnapshot = snapshot;
+    }
+    return snapshot;
+  }
+  
+  /**
+   * The game's event, snapshotting the board the first time it is asked
+   * for, which is while the board is still as of the event.
+   */
+  private class ReusedMoveEvent extends MoveEvent {
+    private IBoardSnapshot snapshot;
+    //Copy handed out by retain(), one per event whoever asks for it
+    private MoveEvent retained;
+    
+    @Override
+    protected void set(int column, int row, char piece, int moveNumber) {
+      super.set(column, row, piece, moveNumber);
+      snapshot = null;
+      retained = null;
+    }
+    
+    @Override
+    public IBoardSnapshot getBoard() {
+      if (snapshot == null) {
+        snapshot = snapshotBoard();
+      }
+      return snapshot;
+    }
+    
+    /**
+     * The same immutable copy for every caller, so N asynchronous
+     * listeners cost one copy per event, not N.
+     */
+    @Override
+    public MoveEvent retain() {
+      if (retained == null) {
+        retained = new MoveEvent(getColumn(), getRow(), getPiece(), getBoard());
+      }
+      return retained;
+    }
+  }
+  
+  private void recordMove(int column) {
+    if (movesPlayed == historyLength || moveHistory[movesPlayed] != column) {
+      historyLength = movesPlayed + 1;
+    }
+    moveHistory[movesPlayed ++] = column;
+  }
+  
+  /**
+   * Notifies listeners that the move in column was taken back.
+   */
+  public void fireMoveUndoneEvent(int column, int row, char piece) {
+    currentSnapshot = null;
+    if (metrics != null) {
+      metrics.movesUndone ++;
+    }
+    ReusedMoveEvent outer = dispatching;
+    ReusedMoveEvent undone = startEvent(outer, column, row, piece);
+    long start = startDispatch();
+    try {
+      for (int i = 0; i < dispatchTargets.size(); i ++) {
+        dispatchTargets.get(i).moveUndoneNotify(undone);
+      }
+    } finally {
+      dispatching = outer;
     }
+    endDispatch(start);
+    removeDisconnectedListeners();
   }
   
   public void fireGameWonEvent(char winnerPiece) {
-    for (IListener view : listeners) {
-      view.gameWinNotify(winnerPiece);
+    long start = startDispatch();
+    for (int i = 0; i < dispatchTargets.size(); i ++) {
+      dispatchTargets.get(i).gameWinNotify(winnerPiece);
     }
+    endDispatch(start);
+    if (metrics != null) {
+      metrics.wins ++;
+      metrics.flush();
+    }
+    removeDisconnectedListeners();
   }
   
   public void fireGameTied() {
-    for (IListener view : listeners) {
-      view.gameTied();
+    long start = startDispatch();
+    for (int i = 0; i < dispatchTargets.size(); i ++) {
+      dispatchTargets.get(i).gameTied();
+    }
+    endDispatch(start);
+    if (metrics != null) {
+      metrics.ties ++;
+      metrics.flush();
     }
+    removeDisconnectedListeners();
   }
   
   public void startGameNotify(IListener firstPlayerToGo) {
-    for (IListener view : listeners) {
-      view.gameStartSignal(firstPlayerToGo);
+    long start = startDispatch();
+    for (int i = 0; i < dispatchTargets.size(); i ++) {
+      dispatchTargets.get(i).gameStartSignal(firstPlayerToGo);
+    }
+    endDispatch(start);
+    removeDisconnectedListeners();
+  }
+  
+  @Override
+  public synchronized boolean undoMove(IListener player) {
+    if (!canWalkHistory(player)) {
+      return false;
+    }
+    int ply = movesPlayed - 1;
+    while (ply >= 0 && !isStoppingPly(ply)) {
+      ply --;
+    }
+    return walkTo(player, ply);
+  }
+  
+  @Override
+  public synchronized boolean redoMove(IListener player) {
+    if (!canWalkHistory(player)) {
+      return false;
+    }
+    int ply = movesPlayed + 1;
+    while (ply < historyLength && !isStoppingPly(ply)) {
+      ply ++;
+    }
+    return walkTo(player, ply);
+  }
+  
+  @Override
+  public synchronized boolean replayToPly(IListener player, int ply) {
+    if (!canWalkHistory(player)) {
+      return false;
+    }
+    if (ply >= 0 && ply <= historyLength && !isStoppingPly(ply)) {
+      notifyInvalidMove(player);
+      return false;
+    }
+    return walkTo(player, ply);
+  }
+  
+  @Override
+  public synchronized int getPly() {
+    return movesPlayed;
+  }
+  
+  @Override
+  public synchronized int[] getMoveHistory() {
+    return Arrays.copyOf(moveHistory, historyLength);
+  }
+  
+  /**
+   * True if the history may be left at ply: subclasses stop where
+   * a player is to move. The end of the history is always allowed.
+   */
+  protected boolean canStopAtPly(int ply) {
+    return true;
+  }
+  
+  /**
+   * Called after the history was walked, for subclasses to work out
+   * whose turn it is from movesPlayed.
+   */
+  protected void plyChanged() {
+  }
+  
+  private boolean isStoppingPly(int ply) {
+    return ply == historyLength || canStopAtPly(ply);
+  }
+  
+  private boolean canWalkHistory(IListener player) {
+    if (playerCount < allowedNumberOfPlayers || abandoned) {
+      notifyNotInProgress(player);
+      return false;
+    }
+    if (player != player1 && player != player2) {
+      notifyInvalidTurn(player);
+      return false;
+    }
+    return true;
+  }
+  
+  /**
+   * Takes back or replays moves until ply moves are on the board, then
+   * checks whether the last of them ended the game.
+   */
+  private boolean walkTo(IListener player, int ply) {
+    if (ply < 0 || ply > historyLength) {
+      notifyInvalidMove(player);
+      return false;
+    }
+    if (ply == movesPlayed) {
+      return true;
+    }
+    pinEventBoard();
+    activity ++;
+    gameInProgress = true;
+    while (movesPlayed > ply) {
+      int column = moveHistory[-- movesPlayed];
+      int row = board.getMostRecentRowFilled(column);
+      board.undoMove(column);
+      if (gameRecord != null) {
+        gameRecord.logUndo();
+      }
+      fireMoveUndoneEvent(column, row, (movesPlayed % 2 == 0) ? player1color : player2color);
+    }
+    reopenLoggedGame();
+    while (movesPlayed < ply) {
+      int column = moveHistory[movesPlayed];
+      board.updateBoardForMove(column, (movesPlayed % 2 == 0) ? player1color : player2color);
+      moveMade(column);
+      fireMoveMadeEvent(column);
+    }
+    plyChanged();
+    if (movesPlayed > 0) {
+      int column = moveHistory[movesPlayed - 1];
+      int row = board.getMostRecentRowFilled(column);
+      char winner = board.findWinner(row, column, player1color, player2color, noWinner);
+      if (!winnerCheckRoutine(winner, winner)) {
+        gameOverCheckRoutine();
+      }
     }
+    return true;
   }
   
   @Override
-  public char[][] getCopyOfGameBoard() {
+  public synchronized char[][] getCopyOfGameBoard() {
     return board.returnBoardCurrentState();
   }
   
+  @Override
+  public IBoardSnapshot getBoardSnapshot() {
+    IBoardSnapshot snapshot = currentSnapshot;
+    return (snapshot != null) ? snapshot : snapshotBoard();
+  }
+  
   @Override
   public int getNumberOfCols() {
     return board.getNumberOfCols();
@@ -99,8 +628,115 @@ public abstract class GameModeBase implements IGameMode {
     return board.getNumberOfRows();
   }
   
+  @Override
+  public Variant getVariant() {
+    return variant;
+  }
+  
+  /**
+   * Switches to a board for variant. Only for games that have not
+   * started: the board is replaced and the players are forgotten.
+   */
+  synchronized void setVariant(Variant variant) {
+    this.variant = variant;
+    initializeGame(allowedNumberOfPlayers);
+    restartLoggedGame();
+  }
+  
+  /**
+   * Which of the two modes this is, as recorded in the game log.
+   */
+  protected abstract Mode getMode();
+  
+  /**
+   * Records the game, from its next move on, in log under gameId;
+   * null to stop recording. The game is started afresh in the log,
+   * so this is meant for games no move has been made in yet. A move is
+   * logged before listeners hear of it.
+   */
+  synchronized void setGameLog(GameLog log, String gameId) {
+    endLoggedGame();
+    gameLog = log;
+    gameLogId = gameId;
+    if (log != null) {
+      gameRecord = log.startGame(gameId, getMode(), variant);
+    }
+  }
+  
+  /**
+   * Carries on recording a game rebuilt from log with replayMoves(..),
+   * under the number the log already knows it by.
+   */
+  synchronized void resumeGameLog(GameLog log, String gameId, int gameNumber) {
+    endLoggedGame();
+    gameLog = log;
+    gameLogId = gameId;
+    gameRecord = (log == null) ? null : log.resumeGame(gameNumber);
+  }
+  
+  private void restartLoggedGame() {
+    if (gameLog != null) {
+      setGameLog(gameLog, gameLogId);
+    }
+  }
+  
+  /**
+   * Starts a new record for a game taken back from its end, with the
+   * moves still on the board.
+   */
+  private void reopenLoggedGame() {
+    if (gameLog != null && gameRecord == null) {
+      gameRecord = gameLog.startGame(gameLogId, getMode(), variant);
+      for (int i = 0; gameRecord != null && i < movesPlayed; i ++) {
+        gameRecord.logMove(moveHistory[i]);
+      }
+    }
+  }
+  
+  private void endLoggedGame() {
+    if (gameRecord != null) {
+      gameRecord.end();
+      gameRecord = null;
+    }
+  }
+  
+  /**
+   * Plays moves, columns alternately for the first and second player,
+   * on the board of a game that has not started, without notifying
+   * anyone. The players then register as usual and carry on from there.
+   * @return false if a move was invalid or ended the game
+   */
+  synchronized boolean replayMoves(byte[] moves) {
+    for (int i = 0; i < moves.length; i ++) {
+      int column = moves[i];
+      char piece = (i % 2 == 0) ? player1color : player2color;
+      if (!board.updateBoardForMove(column, piece)) {
+        return false;
+      }
+      recordMove(column);
+      int row = board.getMostRecentRowFilled(column);
+      if (board.findWinner(row, column, player1color, player2color, noWinner) != noWinner
+          || board.isGameOver()) {
+        return false;
+      }
+    }
+    currentSnapshot = null;
+    return true;
+  }
+  
+  /**
+   * Called when the game is discarded, to stop anything it started.
+   */
+  protected synchronized void releaseResources() {
+    endLoggedGame();
+    if (metrics != null) {
+      metrics.flush();
+    }
+  }
+  
   protected boolean gameOverCheckRoutine() {
     if (board.isGameOver()) {
+      endLoggedGame();
       fireGameTied();
       gameInProgress = false;
       return true;
@@ -110,6 +746,7 @@ public abstract class GameModeBase implements IGameMode {
   
   protected boolean winnerCheckRoutine(char winner, char playerPiece) {
     if (winner != noWinner) {
+      endLoggedGame();
       fireGameWonEvent(playerPiece);
       gameInProgress = false;
       return true;
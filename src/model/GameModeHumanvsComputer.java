@@ -1,5 +1,6 @@
 package model;
 import utilities.ListenerInformation;
+import utilities.Mode;
 import views.IListener;
 
 /**
@@ -8,8 +9,46 @@ import views.IListener;
 public class GameModeHumanvsComputer extends GameModeBase {
   private static GameModeHumanvsComputer singleInstance = null;
   private char computerPiece = player2color;
+  private static final int DEFAULT_SEARCH_DEPTH = 8;
+  private static final int DEFAULT_TABLE_MEGABYTES = 4;
+  // The default player, whose search settings the setters below change
+  private final AlphaBetaStrategy searchStrategy;
+  private IComputerStrategy strategy;
   
-  private GameModeHumanvsComputer() {
+  GameModeHumanvsComputer() {
+    this(new TranspositionTable(DEFAULT_TABLE_MEGABYTES), false, null);
+  }
+  
+  /**
+   * Game whose computer player searches with table, which may be
+   * shared with other games.
+   */
+  GameModeHumanvsComputer(TranspositionTable table) {
+    this(table, true, null);
+  }
+  
+  /**
+   * Game whose computer player searches with table and solves endgames
+   * with solverTable, either of which may be shared with other games.
+   */
+  GameModeHumanvsComputer(TranspositionTable table, TranspositionTable solverTable) {
+    this(table, true, solverTable);
+  }
+  
+  /**
+   * Game whose computer player uses strategy. The default search is
+   * kept, without a table, for setStrategy(null).
+   */
+  GameModeHumanvsComputer(IComputerStrategy strategy) {
+    this(null, false, null);
+    setStrategy(strategy);
+  }
+  
+  private GameModeHumanvsComputer(TranspositionTable table, boolean tableShared,
+      TranspositionTable solverTable) {
+    searchStrategy = new AlphaBetaStrategy(DEFAULT_SEARCH_DEPTH, table, tableShared,
+        solverTable);
+    strategy = searchStrategy;
     initializeGame(1);
   }
   
@@ -26,7 +65,7 @@ public class GameModeHumanvsComputer extends GameModeBase {
   }
   
   @Override
-  public ListenerInformation registerListener(IListener newListener, boolean isPlayer) {
+  public synchronized ListenerInformation registerListener(IListener newListener, boolean isPlayer) {
     if (newListener == null) {
       return null;
     }
@@ -43,26 +82,32 @@ public class GameModeHumanvsComputer extends GameModeBase {
     player1 = newListener;
     //Set gameInProgress once we have the player
     gameInProgress = true;
+    strategy.newGame();
     
-    listeners.add(newListener);
+    addListener(newListener);
     startGameNotify(player1);
     playerCount ++;
+    //A game replayed from the log may be resumed on the computer's turn
+    if (movesPlayed % 2 == 1) {
+      computerTurn();
+    }
     return newInformation;
   }
   
   @Override
-  public boolean selectColumnForMove(IListener player, int column) {
+  protected boolean playColumn(IListener player, int column) {
     if (!gameInProgress) {
-      player.gameNotInProgressNotify();
+      notifyNotInProgress(player);
       return false;
     }
     char humanPieceColor = player1color;
     boolean result = board.updateBoardForMove(column, humanPieceColor);
     if (!result) {
-      player.invalidMoveNotify();
+      notifyInvalidMove(player);
       return false;
     } else {
-      fireMoveMadeEvent();
+      moveMade(column);
+      fireMoveMadeEvent(column);
     }
     int row = board.getMostRecentRowFilled(column);
     char winner = board.findWinner(row, column, player1color, player2color, noWinner);
@@ -72,26 +117,156 @@ public class GameModeHumanvsComputer extends GameModeBase {
     if (gameOverCheckRoutine()) {
       return true;
     }
+    computerTurn();
+    return true;
+  }
+  
+  private void computerTurn() {
     //Computer makes a move: check if win move exists. if not, make regular move.
+    pinEventBoard();
+    GameMetrics.Recorder metrics = getMetricsRecorder();
+    long start = (metrics != null) ? System.nanoTime() : 0;
     int computerSelectedColumn = computerMove(computerPiece);
-    board.updateBoardForMove(computerSelectedColumn, computerPiece);
-    fireMoveMadeEvent();
+    if (metrics != null) {
+      metrics.computerThought(System.nanoTime() - start);
+    }
+    if (!board.updateBoardForMove(computerSelectedColumn, computerPiece)) {
+      //The strategy chose a full or missing column - play any legal one instead
+      computerSelectedColumn = board.computerFindNextRegularMove();
+      board.updateBoardForMove(computerSelectedColumn, computerPiece);
+    }
+    moveMade(computerSelectedColumn);
+    fireMoveMadeEvent(computerSelectedColumn);
     
     int rowFilled = board.getMostRecentRowFilled(computerSelectedColumn);
-    winner = board.findWinner(rowFilled, computerSelectedColumn, 
+    char winner = board.findWinner(rowFilled, computerSelectedColumn, 
         player1color, player2color, noWinner);
     if (winnerCheckRoutine(winner, computerPiece)) {
-      return true;
+      return;
     }
-    if (gameOverCheckRoutine()) {
-      return true;
-    }
-    return true;
+    gameOverCheckRoutine();
+  }
+  
+  /**
+   * Strategy the computer picks its moves with, null for the default
+   * alpha-beta search configured by the setters below.
+   */
+  public synchronized void setStrategy(IComputerStrategy strategy) {
+    this.strategy = (strategy == null) ? searchStrategy : strategy;
+  }
+  
+  /**
+   * Strategy behind the computer's moves, for its think time, nodes and memory.
+   */
+  public synchronized IComputerStrategy getStrategy() {
+    return strategy;
+  }
+  
+  /**
+   * Number of moves (plies) the computer looks ahead.
+   */
+  public synchronized void setSearchDepth(int depth) {
+    searchStrategy.getSearch().setMaxDepth(depth);
+  }
+  
+  /**
+   * Longest the computer may think about one move, 0 for no limit.
+   * When time runs out it plays the best move of the deepest search
+   * it finished. An endgame solve may take half of it; one that takes
+   * longer is given up for the search.
+   */
+  public synchronized void setSearchTimeBudget(long millis) {
+    searchStrategy.getSearch().setTimeBudgetMillis(millis);
+  }
+  
+  /**
+   * Memory given to the computer's transposition table.
+   * Replaces the table, so anything learned so far is dropped.
+   */
+  public synchronized void setTranspositionTableSize(int megabytes) {
+    searchStrategy.setTranspositionTableSize(megabytes);
+  }
+  
+  /**
+   * Number of threads the computer searches with. Above 1 the
+   * search runs Lazy SMP over the shared transposition table.
+   */
+  public synchronized void setSearchThreads(int threads) {
+    searchStrategy.setSearchThreads(threads);
+  }
+  
+  /**
+   * Book the computer plays from before searching, null for none.
+   * The book may be shared by any number of games.
+   */
+  public synchronized void setOpeningBook(OpeningBook book) {
+    searchStrategy.setOpeningBook(book);
+  }
+  
+  /**
+   * Number of empty cells from which the computer stops searching and
+   * solves the rest of the game exactly, 0 to never solve.
+   */
+  public synchronized void setEndgameSolverCells(int emptyCells) {
+    searchStrategy.setEndgameSolverCells(emptyCells);
+  }
+  
+  /**
+   * Solver behind the computer's endgame moves, null until the first
+   * endgame.
+   */
+  public synchronized EndgameSolver getEndgameSolver() {
+    return searchStrategy.getEndgameSolver();
+  }
+  
+  /**
+   * Parallel search behind the computer's moves, null when single-threaded.
+   */
+  public synchronized ParallelSearch getParallelSearch() {
+    return searchStrategy.getParallelSearch();
+  }
+  
+  /**
+   * Search engine behind the computer's moves, for its node counters.
+   */
+  public AlphaBetaSearch getSearchEngine() {
+    return searchStrategy.getSearch();
+  }
+  
+  /**
+   * The history only stops where the human is to move.
+   */
+  @Override
+  protected boolean canStopAtPly(int ply) {
+    return ply % 2 == 0;
+  }
+  
+  @Override
+  protected Mode getMode() {
+    return Mode.COMPUTER;
+  }
+  
+  @Override
+  protected synchronized void releaseResources() {
+    super.releaseResources();
+    setSearchThreads(1);
   }
   
   private int computerMove(char computerPiece) {
+    if (!(strategy instanceof ComputerStrategy)) {
+      return strategy.chooseColumn(board.snapshot(), computerPiece, player1color);
+    }
+    if (board instanceof BitBoard) {
+      BitBoard bitBoard = (BitBoard) board;
+      return ((ComputerStrategy) strategy).chooseColumn(bitBoard, bitBoard.sideOf(computerPiece));
+    }
+    //Variant board: the built-in strategies only know the standard one
     int computerSelectedColumn = board.computerFindNextWinMove(computerPiece);
-    //No win move exists for computer - choose regular move
+    //No win move exists for computer - block the human's win if there is one
+    if (computerSelectedColumn == -1) {
+      computerSelectedColumn = board.computerFindNextWinMove(player1color);
+    }
+    //Nothing to block either - choose regular move
     if (computerSelectedColumn == -1) {
       computerSelectedColumn = board.computerFindNextRegularMove();
     }
@@ -1,12 +1,13 @@
 package model;
 import utilities.ListenerInformation;
+import utilities.Mode;
 import views.IListener;
 
 public class GameModeHumanvsHuman extends GameModeBase {
   private static GameModeHumanvsHuman singleInstance = null;
   private IListener turnOfPlayer = null;
   
-  private GameModeHumanvsHuman() {
+  GameModeHumanvsHuman() {
     initializeGame(2);
   }
   
@@ -27,7 +28,7 @@ public class GameModeHumanvsHuman extends GameModeBase {
    * who are assigned Y -for first player- and R -for the second.
    */
   @Override
-  public ListenerInformation registerListener(IListener newListener, boolean isPlayer) {
+  public synchronized ListenerInformation registerListener(IListener newListener, boolean isPlayer) {
     if (newListener == null) {
       return null;
     }
@@ -51,32 +52,35 @@ public class GameModeHumanvsHuman extends GameModeBase {
       //Set gameInProgress once we have both players
       gameInProgress = true;
     }
-    listeners.add(newListener);
+    addListener(newListener);
     playerCount ++;
     
     if (playerCount == allowedNumberOfPlayers) {
-      startGameNotify(player1);
+      //A game replayed from the log may be resumed on player 2's turn
+      turnOfPlayer = (movesPlayed % 2 == 0) ? player1 : player2;
+      startGameNotify(turnOfPlayer);
     }
     return newInformation;
   }
 
   @Override
-  public boolean selectColumnForMove(IListener player, int column) {
+  protected boolean playColumn(IListener player, int column) {
     if (!gameInProgress) {
-      player.gameNotInProgressNotify();
+      notifyNotInProgress(player);
       return false;
     }
     if (turnOfPlayer != player) {
-      player.invalidTurnNotify();
+      notifyInvalidTurn(player);
       return false;
     }
     char pieceColor = ((player == player1) ? player1color: player2color);
     boolean result = board.updateBoardForMove(column, pieceColor);
     if (!result) {
-      player.invalidMoveNotify();
+      notifyInvalidMove(player);
       return false;
     } else {
-      fireMoveMadeEvent();
+      moveMade(column);
+      fireMoveMadeEvent(column);
       toggleTurnOfPlayer();
     }
     int row = board.getMostRecentRowFilled(column);
@@ -90,6 +94,16 @@ public class GameModeHumanvsHuman extends GameModeBase {
     return true;
   }
 
+  @Override
+  protected void plyChanged() {
+    turnOfPlayer = (movesPlayed % 2 == 0) ? player1 : player2;
+  }
+
+  @Override
+  protected Mode getMode() {
+    return Mode.HUMAN;
+  }
+
   void toggleTurnOfPlayer() {
     if (turnOfPlayer == player1) {
       turnOfPlayer = player2;
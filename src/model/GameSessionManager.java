@@ -0,0 +1,274 @@
+package model;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import utilities.Difficulty;
+import utilities.Mode;
+
+/**
+ * Hosts any number of independent games in one process, each under
+ * a caller-chosen game ID. Every game gets a model of its own from
+ * GameFactory, so no board state is shared between games; computer
+ * players do share one transposition table for their searches and one
+ * for their endgame solvers, which keeps the memory per game down to
+ * the model and its small bitboard. The shared table counts entries
+ * as old only once there have been about as many searches as games.
+ *
+ * Games that have been neither looked up nor played in for longer than
+ * the idle timeout are removed by evictIdleGames(), either called
+ * directly or on a schedule through scheduleEviction(..). Moves are
+ * noticed by the eviction pass after them, so clients holding on to a
+ * model keep their game alive just by playing.
+ *
+ * With a GameLog set, every game is recorded move by move, and after
+ * a crash restoreGames(GameLog.recover(..)) brings back the games that
+ * were in progress. With GameMetrics set, all games are counted and
+ * timed together.
+ */
+public class GameSessionManager {
+  private static final int DEFAULT_SOLVER_TABLE_MEGABYTES = 16;
+
+  private final ConcurrentHashMap<String, GameSession> sessions =
+      new ConcurrentHashMap<String, GameSession>();
+  private final long idleTimeoutNanos;
+  private final TranspositionTable sharedTable;
+  private final TranspositionTable sharedSolverTable;
+  private volatile OpeningBook openingBook;
+  private volatile GameLog gameLog;
+  private volatile GameMetrics metrics;
+
+  private static class GameSession {
+    final GameModeBase model;
+    volatile long lastAccessNanos;
+    // The model's activity as of the last eviction pass
+    volatile int lastActivity;
+
+    GameSession(GameModeBase model) {
+      this.model = model;
+      lastAccessNanos = System.nanoTime();
+      lastActivity = model.getActivity();
+    }
+  }
+
+  /**
+   * @param idleTimeoutMillis time after the last lookup or move at which a game is evicted
+   * @param tableMegabytes size of the transposition table shared by computer players
+   */
+  public GameSessionManager(long idleTimeoutMillis, int tableMegabytes) {
+    this(idleTimeoutMillis, tableMegabytes, DEFAULT_SOLVER_TABLE_MEGABYTES);
+  }
+
+  /**
+   * @param solverTableMegabytes size of the table shared by the
+   * computer players' endgame solvers
+   */
+  public GameSessionManager(long idleTimeoutMillis, int tableMegabytes,
+      int solverTableMegabytes) {
+    if (idleTimeoutMillis <= 0) {
+      throw new IllegalArgumentException("Idle timeout must be positive");
+    }
+    idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+    sharedTable = new TranspositionTable(tableMegabytes);
+    sharedSolverTable = new TranspositionTable(solverTableMegabytes);
+  }
+
+  /**
+   * Book given to the computer player of every game created from now
+   * on, null for none. All games read the same mapped file.
+   */
+  public void setOpeningBook(OpeningBook book) {
+    openingBook = book;
+  }
+
+  /**
+   * Log every game created from now on is recorded in, under its game
+   * ID, null for none.
+   */
+  public void setGameLog(GameLog log) {
+    gameLog = log;
+  }
+
+  /**
+   * Metrics every game created from now on is recorded in, null for none.
+   */
+  public void setMetrics(GameMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Starts a new game under gameId.
+   * @return the game's model, null if gameId is already in use
+   */
+  public IGameMode createGame(String gameId, Mode mode) {
+    GameSession session = new GameSession(GameFactory.createGameModel(mode, sharedTable, sharedSolverTable));
+    OpeningBook book = openingBook;
+    if (book != null && session.model instanceof GameModeHumanvsComputer) {
+      ((GameModeHumanvsComputer) session.model).setOpeningBook(book);
+    }
+    return addSession(gameId, session);
+  }
+
+  /**
+   * Publishes session under gameId, and only then starts its record in
+   * the game log, so a duplicate ID leaves nothing in the log. The
+   * model's lock is held throughout, so no one can move in the game
+   * before it is being recorded.
+   */
+  private IGameMode addSession(String gameId, GameSession session) {
+    session.model.setMetrics(metrics);
+    synchronized (session.model) {
+      if (sessions.putIfAbsent(gameId, session) != null) {
+        session.model.releaseResources();
+        return null;
+      }
+      GameLog log = gameLog;
+      if (log != null) {
+        session.model.setGameLog(log, gameId);
+      }
+    }
+    sessionsChanged();
+    return session.model;
+  }
+
+  /**
+   * Ages the shared table by the searches of all games rather than each
+   * game's own, so that a game's entries stay current while the other
+   * games take their turns.
+   */
+  private void sessionsChanged() {
+    sharedTable.setSearchesPerGeneration(Math.max(1, sessions.size()));
+  }
+
+  /**
+   * Re-creates games recovered from a log, each with the moves made so
+   * far, under their old game IDs. Their players register again as
+   * usual; whoever is to move then carries on. Games against the
+   * computer come back with the default search and the shared table,
+   * as the log does not record the difficulty. Recording carries on in
+   * the log set with setGameLog(..), which must be the one reopened on
+   * the file the games were recovered from.
+   * @return number of games restored; games whose ID is in use or whose
+   * moves no longer replay are left out, and ended in the log
+   */
+  public int restoreGames(List<GameLog.RecoveredGame> games) {
+    GameLog log = gameLog;
+    int restored = 0;
+    for (GameLog.RecoveredGame game : games) {
+      GameModeBase model = GameFactory.createGameModel(game.getMode(), sharedTable,
+          sharedSolverTable);
+      if (!game.getVariant().isStandard()) {
+        model.setVariant(game.getVariant());
+      }
+      if (model instanceof GameModeHumanvsComputer) {
+        ((GameModeHumanvsComputer) model).setOpeningBook(openingBook);
+      }
+      model.setMetrics(metrics);
+      if (log != null) {
+        model.resumeGameLog(log, game.getGameId(), game.getGameNumber());
+      }
+      if (!model.replayMoves(game.getMoves())
+          || sessions.putIfAbsent(game.getGameId(), new GameSession(model)) != null) {
+        model.releaseResources();
+        continue;
+      }
+      restored ++;
+    }
+    sessionsChanged();
+    return restored;
+  }
+
+  /**
+   * Starts a new game against the computer under gameId, playing at
+   * difficulty and strength, as in GameFactory.newStrategy(..).
+   * ALPHA_BETA and PERFECT players search with the shared table, solve
+   * with the shared solver table and play from the opening book, PERFECT
+   * only if the book is solved; RANDOM and GREEDY cost no table at all.
+   * @return the game's model, null if gameId is already in use
+   */
+  public IGameMode createGame(String gameId, Difficulty difficulty, int strength) {
+    GameModeHumanvsComputer model;
+    if (difficulty == Difficulty.ALPHA_BETA) {
+      model = new GameModeHumanvsComputer(sharedTable, sharedSolverTable);
+      model.setSearchDepth(strength);
+      model.setOpeningBook(openingBook);
+    } else {
+      model = new GameModeHumanvsComputer(GameFactory.newStrategy(difficulty, strength,
+          sharedTable, sharedSolverTable, openingBook));
+    }
+    return addSession(gameId, new GameSession(model));
+  }
+
+  /**
+   * Looks up a game and marks it as active.
+   * @return null if there is no such game
+   */
+  public IGameMode getGame(String gameId) {
+    GameSession session = sessions.get(gameId);
+    if (session == null) {
+      return null;
+    }
+    session.lastAccessNanos = System.nanoTime();
+    return session.model;
+  }
+
+  /**
+   * @return false if there was no such game
+   */
+  public boolean endGame(String gameId) {
+    GameSession session = sessions.remove(gameId);
+    if (session == null) {
+      return false;
+    }
+    session.model.releaseResources();
+    sessionsChanged();
+    return true;
+  }
+
+  public int getNumberOfGames() {
+    return sessions.size();
+  }
+
+  /**
+   * Removes every game idle for longer than the timeout. A game played
+   * in since the last pass counts as accessed now.
+   * @return number of games removed
+   */
+  public int evictIdleGames() {
+    long now = System.nanoTime();
+    int evicted = 0;
+    Iterator<GameSession> iterator = sessions.values().iterator();
+    while (iterator.hasNext()) {
+      GameSession session = iterator.next();
+      int activity = session.model.getActivity();
+      if (activity != session.lastActivity) {
+        session.lastActivity = activity;
+        session.lastAccessNanos = now;
+      } else if (now - session.lastAccessNanos > idleTimeoutNanos) {
+        iterator.remove();
+        session.model.releaseResources();
+        evicted ++;
+      }
+    }
+    sessionsChanged();
+    return evicted;
+  }
+
+  /**
+   * Runs evictIdleGames() on executor every periodMillis.
+   * Cancel the returned future to stop.
+   */
+  public ScheduledFuture<?> scheduleEviction(ScheduledExecutorService executor,
+      long periodMillis) {
+    return executor.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        evictIdleGames();
+      }
+    }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+  }
+}
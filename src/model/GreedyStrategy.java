@@ -0,0 +1,42 @@
+package model;
+
+import java.util.Random;
+
+/**
+ * Looks one move ahead: wins if it can, blocks the opponent's win if
+ * it must, and otherwise plays a random move that does not let the
+ * opponent win on the cell above.
+ */
+class GreedyStrategy extends ComputerStrategy {
+  private final Random rand = new Random();
+  private final Threats threats = new Threats();
+
+  GreedyStrategy() {
+    super("greedy");
+  }
+
+  @Override
+  int selectColumn(BitBoard board, int side) {
+    threats.scan(board, side);
+    if (threats.getWins() != 0) {
+      return BitBoard.columnOf(threats.getWins());
+    }
+    if (threats.getSafeMoves() != 0) {
+      return RandomStrategy.randomCell(rand, threats.getSafeMoves());
+    }
+    if (threats.getForcedBlocks() != 0) {
+      return BitBoard.columnOf(threats.getForcedBlocks());
+    }
+    return RandomStrategy.randomCell(rand, threats.getPlayable());
+  }
+
+  @Override
+  long nodesOfLastMove() {
+    return 1;
+  }
+
+  @Override
+  public long getMemoryBytes() {
+    return 0;
+  }
+}
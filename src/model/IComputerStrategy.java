@@ -0,0 +1,51 @@
+package model;
+
+import utilities.IBoardSnapshot;
+
+/**
+ * How a computer player picks its moves, with counters for what the
+ * moves cost. GameFactory.newStrategy(..) creates the built-in ones;
+ * any other implementation can be handed to a computer game as well.
+ *
+ * A strategy may keep state between moves, so one instance serves
+ * one game at a time.
+ */
+public interface IComputerStrategy {
+  /**
+   * @param board position with piece to move
+   * @param piece the computer's piece
+   * @param opponentPiece the other player's piece
+   * @return a column that is not full; for any other column the game
+   * plays a random legal move instead
+   */
+  int chooseColumn(IBoardSnapshot board, char piece, char opponentPiece);
+
+  /**
+   * Called before the first move of every game.
+   */
+  void newGame();
+
+  String getName();
+
+  /**
+   * Time taken to choose the last move
+   */
+  long getLastThinkNanos();
+
+  /**
+   * Positions examined to choose the last move
+   */
+  long getLastNodes();
+
+  long getMovesPlayed();
+
+  long getTotalThinkNanos();
+
+  long getTotalNodes();
+
+  /**
+   * Heap held by the strategy's tables and buffers, not counting
+   * memory shared with other strategies.
+   */
+  long getMemoryBytes();
+}
@@ -0,0 +1,72 @@
+package model;
+
+import utilities.IBoardSnapshot;
+
+/**
+ * Operations the game modes need from a board. Rows are numbered
+ * from the top (row 0) as in the char[][] handed to the views.
+ *
+ * Package-private for the same reason as GameBoard: moves must
+ * only be made through the model.
+ */
+interface IGameBoard {
+  /**
+   * Returns a deep copy of the current state of the board,
+   * ' ' for empty cells.
+   */
+  char[][] returnBoardCurrentState();
+
+  /**
+   * Returns an immutable snapshot of the current state of the board,
+   * which can be shared between any number of readers.
+   */
+  IBoardSnapshot snapshot();
+
+  /**
+   * Places the piece in the first empty row from the bottom of column.
+   * @return false if the move was invalid
+   */
+  boolean updateBoardForMove(int column, char playerChar);
+
+  /**
+   * Takes back the topmost piece of column, whoever played it, in O(1).
+   * @return false if column was empty or out of range
+   */
+  boolean undoMove(int column);
+
+  /**
+   * @return column that wins immediately for playerColor, -1 if none
+   */
+  int computerFindNextWinMove(char playerColor);
+
+  /**
+   * @return a random column that is not full
+   */
+  int computerFindNextRegularMove();
+
+  /**
+   * @return first empty row for column, -1 if column is full
+   */
+  int getFirstEmptyRowFromBottom(int col);
+
+  /**
+   * Determines if the piece at newPieceRow, newPieceCol completes a win.
+   * @return the winner's piece, noWinner otherwise
+   */
+  char findWinner(int newPieceRow, int newPieceCol,
+      char player1PieceColor, char player2PieceColor, char noWinner);
+
+  /**
+   * @return true if there are no empty cells left
+   */
+  boolean isGameOver();
+
+  /**
+   * @return row of the topmost piece in column, -1 if column is empty
+   */
+  int getMostRecentRowFilled(int column);
+
+  int getNumberOfRows();
+
+  int getNumberOfCols();
+}
@@ -1,10 +1,14 @@
 package model;
+import utilities.IBoardSnapshot;
 import utilities.ListenerInformation;
+import utilities.Variant;
 import views.IListener;
 /**
  * Implementation of the observer pattern to allow
  * listeners (view objects) to communicate with the 
- * model (GameMode) object. Model object is a singleton.
+ * model (GameMode) object. GameFactory.getGameModel(..) hands out
+ * a singleton per mode; GameFactory.newGameModel(..) and
+ * GameSessionManager create independent games.
  */
 
 public interface IGameMode {
@@ -14,6 +18,13 @@ public interface IGameMode {
    * according to mode have registered.
    */
   ListenerInformation registerListener(IListener listener, boolean isPlayer);
+
+  /**
+   * Stops notifying listener. A player leaving a game in progress
+   * forfeits it: the others are told the opponent has won. A player
+   * leaving before the game started frees the seat.
+   */
+  void unregisterListener(IListener listener);
   
   /**
    * Select the intended column to place piece at
@@ -21,11 +32,53 @@ public interface IGameMode {
    */
   boolean selectColumnForMove(IListener player, int col);
 
+  /**
+   * Takes back the last move, or against the computer the last move
+   * of each side, so that it is the same player's turn again. Also
+   * reopens a game that has been won or tied.
+   * @return false if there was nothing to take back
+   */
+  boolean undoMove(IListener player);
+
+  /**
+   * Plays again what the last undoMove took back. A new move drops
+   * what could have been redone, unless it is the move redone next.
+   * @return false if there was nothing to redo
+   */
+  boolean redoMove(IListener player);
+
+  /**
+   * Walks the move history back or forward until ply moves are on the
+   * board; 0 is the empty board. Against the computer, ply must leave
+   * the human to move or be the end of the history.
+   * @return false if ply is outside the history or not allowed
+   */
+  boolean replayToPly(IListener player, int ply);
+
+  /**
+   * Number of moves on the board
+   */
+  int getPly();
+
+  /**
+   * Columns played, in order, including moves taken back that can
+   * still be redone.
+   */
+  int[] getMoveHistory();
+
   /**
    * Returns a deep copy of the game board as of current state
    */
   char[][] getCopyOfGameBoard();
   
+  /**
+   * Returns the immutable snapshot of the board after the latest move.
+   * It is taken, under the game's lock, the first time it is asked for
+   * after a move; the same instance is then returned until the next
+   * move, so it costs nothing to share.
+   */
+  IBoardSnapshot getBoardSnapshot();
+  
   /**
    * Get number of columns on board
    */
@@ -36,4 +89,9 @@ public interface IGameMode {
    */
   int getNumberOfRows();
 
+  /**
+   * Board size and winning line length of this game
+   */
+  Variant getVariant();
+
 }
@@ -0,0 +1,12 @@
+package model;
+
+/**
+ * Told by the Matchmaker which game a waiting player was paired into.
+ */
+public interface IMatchListener {
+  /**
+   * Called before the player is registered with game, on the thread
+   * that made the pair.
+   */
+  void matchFound(IGameMode game, String gameId);
+}
@@ -0,0 +1,300 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import utilities.LatencyHistogram;
+import utilities.Mode;
+import views.IListener;
+
+/**
+ * Pairs waiting players into human vs human games of a
+ * GameSessionManager, each pair getting a game of its own.
+ *
+ * Players wait in lock-free queues, one per band of ratings, in the
+ * order they arrived; a player matchWaiting() is finding a partner for
+ * keeps its place meanwhile. A new
+ * player is paired at once with the longest waiting player of its own
+ * band, if there is one. Players left waiting are paired by
+ * matchWaiting(), called directly or on a schedule through
+ * scheduleMatching(..), with players of bands further and further away
+ * as they wait longer: after the wait bound any waiting player will do.
+ * The one who waited longer goes first.
+ *
+ * Every ticket changes state by compare-and-set only, so players can
+ * arrive on any number of threads at once without taking a lock.
+ */
+public class Matchmaker {
+  private static final int WAITING = 0;
+  // Taken by matchWaiting() while it looks for a partner
+  private static final int CLAIMING = 1;
+  private static final int MATCHED = 2;
+  private static final int CANCELLED = 3;
+
+  private final GameSessionManager games;
+  private final String gameIdPrefix;
+  private final int bandWidth;
+  private final long maxWaitNanos;
+  private final List<ConcurrentLinkedQueue<Ticket>> bands;
+  private final AtomicLong gamesCreated = new AtomicLong();
+  private final AtomicBoolean matching = new AtomicBoolean();
+  private final LongAdder waiting = new LongAdder();
+  private final LongAdder matchesMade = new LongAdder();
+  private final LatencyHistogram waits = new LatencyHistogram();
+
+  /**
+   * A player's place in the queue.
+   */
+  public static final class Ticket {
+    private final IListener player;
+    private final int rating;
+    private final int band;
+    private final IMatchListener onMatch;
+    private final long enqueuedNanos = System.nanoTime();
+    private final AtomicInteger state = new AtomicInteger(WAITING);
+
+    Ticket(IListener player, int rating, int band, IMatchListener onMatch) {
+      this.player = player;
+      this.rating = rating;
+      this.band = band;
+      this.onMatch = onMatch;
+    }
+
+    public IListener getPlayer() {
+      return player;
+    }
+
+    public int getRating() {
+      return rating;
+    }
+
+    public boolean isMatched() {
+      return state.get() == MATCHED;
+    }
+  }
+
+  /**
+   * @param bandWidth range of ratings paired at once
+   * @param maxRating ratings above it share the top band
+   * @param maxWaitMillis wait after which a player is paired with anyone
+   */
+  public Matchmaker(GameSessionManager games, String gameIdPrefix, int bandWidth,
+      int maxRating, long maxWaitMillis) {
+    if (bandWidth < 1 || maxRating < 0) {
+      throw new IllegalArgumentException("Rating bands must be at least 1 wide");
+    }
+    if (maxWaitMillis <= 0) {
+      throw new IllegalArgumentException("Wait bound must be positive");
+    }
+    this.games = games;
+    this.gameIdPrefix = gameIdPrefix;
+    this.bandWidth = bandWidth;
+    maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    int numberOfBands = maxRating / bandWidth + 1;
+    bands = new ArrayList<ConcurrentLinkedQueue<Ticket>>(numberOfBands);
+    for (int i = 0; i < numberOfBands; i ++) {
+      bands.add(new ConcurrentLinkedQueue<Ticket>());
+    }
+  }
+
+  private int bandOf(int rating) {
+    return Math.max(0, Math.min(bands.size() - 1, rating / bandWidth));
+  }
+
+  /**
+   * Queues player, or pairs it right away with a player of its band.
+   * @return the player's ticket, which can be cancelled until it is matched
+   */
+  public Ticket enqueue(IListener player, int rating, IMatchListener onMatch) {
+    Ticket ticket = new Ticket(player, rating, bandOf(rating), onMatch);
+    ConcurrentLinkedQueue<Ticket> band = bands.get(ticket.band);
+    Ticket partner = null;
+    Iterator<Ticket> tickets = band.iterator();
+    while (partner == null && tickets.hasNext()) {
+      Ticket waitingTicket = tickets.next();
+      if (waitingTicket.state.compareAndSet(WAITING, MATCHED)) {
+        waiting.decrement();
+        partner = waitingTicket;
+        tickets.remove();
+      } else if (waitingTicket.state.get() != CLAIMING) {
+        tickets.remove();
+      }
+      // A claimed ticket stays in its place: matchWaiting() may hand it back
+    }
+    if (partner == null) {
+      waiting.increment();
+      band.offer(ticket);
+    } else {
+      ticket.state.set(MATCHED);
+      startGame(partner, ticket);
+    }
+    return ticket;
+  }
+
+  /**
+   * Takes ticket out of the queue.
+   * @return false if it was matched first
+   */
+  public boolean cancel(Ticket ticket) {
+    while (true) {
+      int state = ticket.state.get();
+      if (state == WAITING) {
+        if (ticket.state.compareAndSet(WAITING, CANCELLED)) {
+          waiting.decrement();
+          return true;
+        }
+      } else if (state == CLAIMING) {
+        Thread.yield();
+      } else {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Pairs every waiting player with the longest waiting player of the
+   * nearest band within its reach, which grows from its own band to all
+   * bands over the wait bound. Calls made while another is running
+   * return at once.
+   * @return number of games started
+   */
+  public int matchWaiting() {
+    if (!matching.compareAndSet(false, true)) {
+      return 0;
+    }
+    try {
+      long now = System.nanoTime();
+      int started = 0;
+      for (int i = 0; i < bands.size(); i ++) {
+        Iterator<Ticket> tickets = bands.get(i).iterator();
+        while (tickets.hasNext()) {
+          Ticket ticket = tickets.next();
+          if (ticket.state.get() > CLAIMING) {
+            tickets.remove();
+            continue;
+          }
+          if (!ticket.state.compareAndSet(WAITING, CLAIMING)) {
+            continue;
+          }
+          Ticket partner = claimPartner(ticket, reach(now - ticket.enqueuedNanos));
+          if (partner == null) {
+            ticket.state.set(WAITING);
+            continue;
+          }
+          ticket.state.set(MATCHED);
+          tickets.remove();
+          waiting.add(-2);
+          if (partner.enqueuedNanos - ticket.enqueuedNanos < 0) {
+            startGame(partner, ticket);
+          } else {
+            startGame(ticket, partner);
+          }
+          started ++;
+        }
+      }
+      return started;
+    } finally {
+      matching.set(false);
+    }
+  }
+
+  /**
+   * @return number of bands either side a player who waited so long may be paired across
+   */
+  private int reach(long waitedNanos) {
+    if (waitedNanos >= maxWaitNanos) {
+      return bands.size();
+    }
+    return (int) (waitedNanos * bands.size() / maxWaitNanos);
+  }
+
+  /**
+   * Looks for a partner for ticket in its band, then one band out
+   * either side, and so on up to reach bands out.
+   * @return the partner, now MATCHED, or null if there is none
+   */
+  private Ticket claimPartner(Ticket ticket, int reach) {
+    for (int distance = 0; distance <= reach; distance ++) {
+      for (int side = 0; side < ((distance == 0) ? 1 : 2); side ++) {
+        int band = ticket.band + ((side == 0) ? distance : -distance);
+        if (band < 0 || band >= bands.size()) {
+          continue;
+        }
+        for (Ticket candidate : bands.get(band)) {
+          if (candidate != ticket && candidate.state.compareAndSet(WAITING, MATCHED)) {
+            bands.get(band).remove(candidate);
+            return candidate;
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Runs matchWaiting() on executor every periodMillis.
+   * Cancel the returned future to stop.
+   */
+  public ScheduledFuture<?> scheduleMatching(ScheduledExecutorService executor,
+      long periodMillis) {
+    return executor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        matchWaiting();
+      }
+    }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Creates the pair's game, tells both players about it and registers
+   * them, first first.
+   */
+  private void startGame(Ticket first, Ticket second) {
+    long now = System.nanoTime();
+    waits.record(now - first.enqueuedNanos);
+    waits.record(now - second.enqueuedNanos);
+    matchesMade.increment();
+    IGameMode game;
+    String gameId;
+    do {
+      gameId = gameIdPrefix + gamesCreated.incrementAndGet();
+      game = games.createGame(gameId, Mode.HUMAN);
+    } while (game == null);
+    first.onMatch.matchFound(game, gameId);
+    second.onMatch.matchFound(game, gameId);
+    game.registerListener(first.player, true);
+    game.registerListener(second.player, true);
+  }
+
+  /**
+   * Players waiting to be paired
+   */
+  public long getQueueLength() {
+    return waiting.sum();
+  }
+
+  /**
+   * Games started since the matchmaker was created
+   */
+  public long getMatchesMade() {
+    return matchesMade.sum();
+  }
+
+  /**
+   * Time from enqueue(..) to being paired, at or below which fraction
+   * of all paired players were, to within 1/8.
+   * @param fraction between 0 and 1, e.g. 0.99 for the 99th percentile
+   */
+  public long getWaitPercentileMicros(double fraction) {
+    return waits.percentile(fraction) / 1000;
+  }
+}
@@ -0,0 +1,41 @@
+package model;
+
+/**
+ * Plays the move MonteCarloSearch visits most, keeping the tree from
+ * one move to the next within a game.
+ */
+class MctsStrategy extends ComputerStrategy {
+  private final MonteCarloSearch search;
+
+  MctsStrategy(int capacity, long playouts) {
+    super("mcts");
+    search = new MonteCarloSearch(capacity, playouts);
+  }
+
+  MonteCarloSearch getSearch() {
+    return search;
+  }
+
+  @Override
+  public void newGame() {
+    search.clear();
+  }
+
+  @Override
+  int selectColumn(BitBoard board, int side) {
+    return search.findBestMove(board, side);
+  }
+
+  /**
+   * Playouts, as those are what the search spends its time on
+   */
+  @Override
+  long nodesOfLastMove() {
+    return search.getPlayouts();
+  }
+
+  @Override
+  public long getMemoryBytes() {
+    return search.getMemoryBytes();
+  }
+}
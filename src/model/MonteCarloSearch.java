@@ -0,0 +1,427 @@
+package model;
+
+/**
+ * Monte Carlo tree search with UCT selection over a BitBoard.
+ *
+ * The tree lives in parallel primitive arrays: a node is an index, its
+ * children are a row of COLS slots in one int array (0 meaning none, as
+ * the first root is never a child) and its statistics are an int each.
+ * The arrays start small and double as the tree needs them, up to the
+ * capacity, so a game only pays for the nodes its playouts reach. Once
+ * the capacity is reached the tree stops growing and playouts simply
+ * start lower down. Playouts make random moves on the board itself
+ * with play/undo and take everything back afterwards, so a search only
+ * allocates when the tree grows past its largest size so far.
+ *
+ * Between moves of the same game the tree is kept: the next search
+ * starts from the node of the position the opponent's reply reached,
+ * with the visits it already has, as long as the board is the one the
+ * last search left plus one move. Anything else starts a new tree.
+ */
+public class MonteCarloSearch {
+  private static final int COLS = BitBoard.COLS;
+  // Terminal states of a node, from the point of view of the player
+  // who moved into it
+  private static final byte OPEN = 0;
+  private static final byte WON = 1;
+  private static final byte DRAWN = 2;
+  private static final int INITIAL_NODES = 256;
+
+  private final int capacity;
+  // Room for this many nodes so far, grown up to capacity
+  private int[] children;
+  private int[] visits;
+  // Twice the wins plus the draws of the player who moved into the node
+  private int[] rewards;
+  private byte[] terminal;
+  private int size;
+
+  // Nodes and moves of the current iteration, root first
+  private final int[] path = new int[BitBoard.CELLS + 1];
+  private final int[] movesPlayed = new int[BitBoard.CELLS];
+  private final int[] playoutMoves = new int[BitBoard.CELLS];
+  private int playoutLength;
+
+  private double exploration = Math.sqrt(2);
+  private long playoutBudget;
+  private long timeBudgetNanos;
+  private long randomState = System.nanoTime() | 1;
+
+  private int root = -1;
+  // Position the last search left behind, after its own move
+  private int expectedRoot = -1;
+  private long expectedMask;
+  private long expectedPieces;
+  private int reusedVisits;
+
+  private final Threats threats = new Threats();
+  private long playouts;
+  private long elapsedNanos;
+
+  /**
+   * @param capacity most tree nodes kept, bounding the memory used
+   * @param playoutBudget playouts per move, 0 to go by time only
+   */
+  public MonteCarloSearch(int capacity, long playoutBudget) {
+    if (capacity < 2) {
+      throw new IllegalArgumentException("Tree needs room for at least 2 nodes");
+    }
+    this.capacity = capacity;
+    allocate(Math.min(capacity, INITIAL_NODES));
+    setPlayoutBudget(playoutBudget);
+  }
+
+  private void allocate(int nodes) {
+    children = new int[nodes * COLS];
+    visits = new int[nodes];
+    rewards = new int[nodes];
+    terminal = new byte[nodes];
+  }
+
+  /**
+   * Doubles the room for nodes, up to the capacity, keeping the tree.
+   */
+  private void grow() {
+    int[] oldChildren = children;
+    int[] oldVisits = visits;
+    int[] oldRewards = rewards;
+    byte[] oldTerminal = terminal;
+    allocate((int) Math.min(capacity, 2L * visits.length));
+    System.arraycopy(oldChildren, 0, children, 0, size * COLS);
+    System.arraycopy(oldVisits, 0, visits, 0, size);
+    System.arraycopy(oldRewards, 0, rewards, 0, size);
+    System.arraycopy(oldTerminal, 0, terminal, 0, size);
+  }
+
+  /**
+   * Playouts per move, 0 for no limit (a time budget must then be set).
+   */
+  public void setPlayoutBudget(long playouts) {
+    if (playouts < 0) {
+      throw new IllegalArgumentException("Playout budget cannot be negative");
+    }
+    playoutBudget = playouts;
+  }
+
+  public long getPlayoutBudget() {
+    return playoutBudget;
+  }
+
+  /**
+   * Wall-clock limit per move, 0 for none. Checked every 64 playouts.
+   */
+  public void setTimeBudgetMillis(long millis) {
+    if (millis < 0) {
+      throw new IllegalArgumentException("Time budget cannot be negative");
+    }
+    timeBudgetNanos = millis * 1000000L;
+  }
+
+  public long getTimeBudgetMillis() {
+    return timeBudgetNanos / 1000000L;
+  }
+
+  /**
+   * The UCT constant c in mean + c * sqrt(ln(parent visits) / visits),
+   * with rewards between 0 and 1. Higher explores more.
+   */
+  public void setExplorationConstant(double exploration) {
+    if (exploration < 0) {
+      throw new IllegalArgumentException("Exploration constant cannot be negative");
+    }
+    this.exploration = exploration;
+  }
+
+  public double getExplorationConstant() {
+    return exploration;
+  }
+
+  public void setSeed(long seed) {
+    randomState = seed | 1;
+  }
+
+  /**
+   * Playouts run by the last call to findBestMove
+   */
+  public long getPlayouts() {
+    return playouts;
+  }
+
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  public long getPlayoutsPerSecond() {
+    if (elapsedNanos == 0) {
+      return 0;
+    }
+    return playouts * 1000000000L / elapsedNanos;
+  }
+
+  /**
+   * Visits the last search inherited from the one before
+   */
+  public int getReusedVisits() {
+    return reusedVisits;
+  }
+
+  public int getNodesUsed() {
+    return size;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Heap held by the tree as grown so far
+   */
+  public long getMemoryBytes() {
+    return (long) visits.length * (COLS * 4 + 4 + 4 + 1);
+  }
+
+  /**
+   * Forgets the tree, for example at the start of a new game.
+   */
+  public void clear() {
+    size = 0;
+    root = -1;
+    expectedRoot = -1;
+  }
+
+  /**
+   * Returns the most visited column for side, after taking a win or a
+   * forced block straight away. The board is left as it was found.
+   * @return -1 if the board is full
+   */
+  int findBestMove(BitBoard board, int side) {
+    if (playoutBudget == 0 && timeBudgetNanos == 0) {
+      throw new IllegalStateException("Search needs a playout or time budget");
+    }
+    long start = System.nanoTime();
+    playouts = 0;
+    reusedVisits = 0;
+    threats.scan(board, side);
+    long forcedMove = threats.getWins();
+    if (forcedMove == 0 && Long.bitCount(threats.getSafeMoves()) == 1) {
+      forcedMove = threats.getSafeMoves();
+    }
+    if (forcedMove != 0 || threats.getPlayable() == 0) {
+      // Nothing to think about; the tree cannot follow this move
+      clear();
+      elapsedNanos = System.nanoTime() - start;
+      return (forcedMove != 0) ? BitBoard.columnOf(forcedMove) : -1;
+    }
+
+    findRoot(board);
+    long deadline = start + timeBudgetNanos;
+    while (playoutBudget == 0 || playouts < playoutBudget) {
+      if (timeBudgetNanos > 0 && (playouts & 63) == 0
+          && System.nanoTime() - deadline > 0) {
+        break;
+      }
+      iterate(board, side);
+      playouts ++;
+    }
+
+    int bestColumn = -1;
+    int bestVisits = -1;
+    for (int col = 0; col < COLS; col ++) {
+      int child = children[root * COLS + col];
+      if (child != 0 && visits[child] > bestVisits) {
+        bestVisits = visits[child];
+        bestColumn = col;
+      }
+    }
+    if (bestColumn == -1) {
+      bestColumn = BitBoard.columnOf(threats.getPlayable());
+    }
+    rememberPosition(board, side, bestColumn);
+    elapsedNanos = System.nanoTime() - start;
+    return bestColumn;
+  }
+
+  /**
+   * Sets root to the node of board: the child of the last search's
+   * move if the opponent has played one move since, a new tree otherwise.
+   */
+  private void findRoot(BitBoard board) {
+    root = -1;
+    if (expectedRoot != -1) {
+      long mask = board.getMask();
+      long added = mask ^ expectedMask;
+      boolean oneMoveLater = (mask & expectedMask) == expectedMask
+          && added != 0 && (added & (added - 1)) == 0
+          && (board.getPieces(0) & expectedMask) == expectedPieces;
+      if (oneMoveLater) {
+        int child = children[expectedRoot * COLS + BitBoard.columnOf(added)];
+        if (child != 0) {
+          root = child;
+          reusedVisits = visits[child];
+        }
+      }
+    }
+    if (root == -1) {
+      size = 0;
+      root = newNode();
+    }
+    expectedRoot = -1;
+  }
+
+  private void rememberPosition(BitBoard board, int side, int column) {
+    int child = children[root * COLS + column];
+    if (child == 0) {
+      return;
+    }
+    expectedRoot = child;
+    board.play(column, side);
+    expectedMask = board.getMask();
+    expectedPieces = board.getPieces(0);
+    board.undo(column);
+  }
+
+  private int newNode() {
+    if (size == visits.length) {
+      grow();
+    }
+    int node = size ++;
+    visits[node] = 0;
+    rewards[node] = 0;
+    terminal[node] = OPEN;
+    for (int col = 0; col < COLS; col ++) {
+      children[node * COLS + col] = 0;
+    }
+    return node;
+  }
+
+  /**
+   * One selection, expansion, playout and backup from the root.
+   */
+  private void iterate(BitBoard board, int side) {
+    int node = root;
+    int depth = 0;
+    int moves = 0;
+    playoutLength = 0;
+    int toMove = side;
+    path[0] = node;
+    // Result for the player who moved into the last node: 2 win,
+    // 1 draw, 0 loss
+    int result;
+    while (true) {
+      if (terminal[node] != OPEN) {
+        result = (terminal[node] == WON) ? 2 : 1;
+        break;
+      }
+      int col = unexpandedColumn(board, node);
+      if (col != -1 && size < capacity) {
+        int child = newNode();
+        children[node * COLS + col] = child;
+        board.play(col, toMove);
+        movesPlayed[moves ++] = col;
+        path[++ depth] = child;
+        if (board.hasWon(toMove)) {
+          terminal[child] = WON;
+          result = 2;
+        } else if (board.getMoveCount() == BitBoard.CELLS) {
+          terminal[child] = DRAWN;
+          result = 1;
+        } else {
+          result = playout(board, 1 - toMove);
+        }
+        break;
+      }
+      if (col != -1) {
+        // Tree is full: play out from here
+        result = playout(board, toMove);
+        break;
+      }
+      col = selectColumn(node);
+      int child = children[node * COLS + col];
+      board.play(col, toMove);
+      movesPlayed[moves ++] = col;
+      path[++ depth] = child;
+      node = child;
+      toMove = 1 - toMove;
+    }
+    for (int i = playoutLength - 1; i >= 0; i --) {
+      board.undo(playoutMoves[i]);
+    }
+    for (int i = moves - 1; i >= 0; i --) {
+      board.undo(movesPlayed[i]);
+    }
+    for (int i = depth; i >= 0; i --) {
+      visits[path[i]] ++;
+      rewards[path[i]] += result;
+      result = 2 - result;
+    }
+  }
+
+  /**
+   * Plays random moves from the board, side first, until the game
+   * ends. The moves are left on the board for iterate to take back.
+   * @return 2 if the player who moved last before the playout wins,
+   * 1 for a draw, 0 if side wins
+   */
+  private int playout(BitBoard board, int side) {
+    int toMove = side;
+    while (board.getMoveCount() < BitBoard.CELLS) {
+      long possible = board.possibleMoves();
+      int col = BitBoard.columnOf(randomCell(possible));
+      board.play(col, toMove);
+      playoutMoves[playoutLength ++] = col;
+      if (board.hasWon(toMove)) {
+        return (toMove == side) ? 0 : 2;
+      }
+      toMove = 1 - toMove;
+    }
+    return 1;
+  }
+
+  private long randomCell(long cells) {
+    // xorshift64
+    randomState ^= randomState << 13;
+    randomState ^= randomState >>> 7;
+    randomState ^= randomState << 17;
+    int skip = (int) ((randomState >>> 1) % Long.bitCount(cells));
+    for (; skip > 0; skip --) {
+      cells &= cells - 1;
+    }
+    return cells & -cells;
+  }
+
+  /**
+   * A playable column of board with no child under node yet, -1 if none.
+   */
+  private int unexpandedColumn(BitBoard board, int node) {
+    int base = node * COLS;
+    for (int col : AlphaBetaSearch.COLUMN_ORDER) {
+      if (children[base + col] == 0 && board.canPlay(col)) {
+        return col;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Column of the child of node with the highest UCT value.
+   */
+  private int selectColumn(int node) {
+    int base = node * COLS;
+    double logVisits = Math.log(visits[node]);
+    int bestColumn = -1;
+    double bestValue = Double.NEGATIVE_INFINITY;
+    for (int col = 0; col < COLS; col ++) {
+      int child = children[base + col];
+      if (child == 0) {
+        continue;
+      }
+      double value = rewards[child] / (2.0 * visits[child])
+          + exploration * Math.sqrt(logVisits / visits[child]);
+      if (value > bestValue) {
+        bestValue = value;
+        bestColumn = col;
+      }
+    }
+    return bestColumn;
+  }
+}
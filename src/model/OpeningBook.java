@@ -0,0 +1,182 @@
+package model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Precomputed replies for the first moves of the game, read from a file
+ * that is memory-mapped rather than loaded, so a book of any size costs
+ * next to no heap and is shared by every game using it.
+ *
+ * File layout (big-endian):
+ *   int  magic 'C4OB'
+ *   int  format version
+ *   int  rows, int columns of the board the book was built for
+ *   int  flags: SOLVED if every column was proven best by EndgameSolver,
+ *        clear if it is the choice of a depth-limited search
+ *   int  number of moves made in the deepest positions
+ *   long number of entries
+ *   long entries, sorted: canonical position key << 8 | best column
+ * Version 2 books, without the flags and depth, are read as searched.
+ *
+ * Mirrored positions share one entry, whose column is the one for the
+ * board with the smaller key. A searched book's moves are only as good
+ * as its search; only a solved one is exact.
+ *
+ * Lookup is a binary search over the mapped entries.
+ */
+public class OpeningBook {
+  static final int MAGIC = 0x43344F42;
+  static final int VERSION = 3;
+  static final int SOLVED = 1;
+  private static final int HEADER_BYTES = 32;
+  private static final int VERSION_2_HEADER_BYTES = 24;
+
+  private final MappedByteBuffer entries;
+  private final int headerBytes;
+  private final long size;
+  private final int flags;
+  private final int maxPly;
+
+  private OpeningBook(MappedByteBuffer entries, int headerBytes, long size, int flags,
+      int maxPly) {
+    this.entries = entries;
+    this.headerBytes = headerBytes;
+    this.size = size;
+    this.flags = flags;
+    this.maxPly = maxPly;
+  }
+
+  /**
+   * Maps a book written by OpeningBookGenerator.
+   * @throws IOException if the file cannot be read or is not a book
+   * for this board
+   */
+  public static OpeningBook open(Path file) throws IOException {
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (channel.size() < VERSION_2_HEADER_BYTES || buffer.getInt(0) != MAGIC
+          || (buffer.getInt(4) != VERSION && buffer.getInt(4) != 2)) {
+        throw new IOException(file + " is not an opening book");
+      }
+      if (buffer.getInt(8) != BitBoard.ROWS || buffer.getInt(12) != BitBoard.COLS) {
+        throw new IOException(file + " was built for another board size");
+      }
+      if (buffer.getInt(4) == 2) {
+        long size = buffer.getLong(16);
+        if (VERSION_2_HEADER_BYTES + size * 8 != channel.size()) {
+          throw new IOException(file + " is truncated");
+        }
+        return new OpeningBook(buffer, VERSION_2_HEADER_BYTES, size, 0, -1);
+      }
+      if (channel.size() < HEADER_BYTES) {
+        throw new IOException(file + " is truncated");
+      }
+      long size = buffer.getLong(24);
+      if (HEADER_BYTES + size * 8 != channel.size()) {
+        throw new IOException(file + " is truncated");
+      }
+      return new OpeningBook(buffer, HEADER_BYTES, size, buffer.getInt(16), buffer.getInt(20));
+    } finally {
+      // The mapping stays valid after the channel is closed
+      channel.close();
+    }
+  }
+
+  /**
+   * Writes entries (key << 8 | column, in any order) as a book file.
+   * @param flags SOLVED if every column is proven best, else 0
+   * @param maxPly moves made in the deepest positions
+   */
+  static void write(Path file, long[] bookEntries, int flags, int maxPly) throws IOException {
+    long[] sorted = bookEntries.clone();
+    Arrays.sort(sorted);
+    OutputStream stream = new FileOutputStream(file.toFile());
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(BitBoard.ROWS);
+      out.writeInt(BitBoard.COLS);
+      out.writeInt(flags);
+      out.writeInt(maxPly);
+      out.writeLong(sorted.length);
+      for (long entry : sorted) {
+        out.writeLong(entry);
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  static long entry(long key, int column) {
+    return (key << 8) | column;
+  }
+
+  public long getNumberOfEntries() {
+    return size;
+  }
+
+  /**
+   * True if every move in the book was proven best by EndgameSolver,
+   * false if it was picked by a depth-limited search
+   */
+  public boolean isSolved() {
+    return (flags & SOLVED) != 0;
+  }
+
+  /**
+   * Moves made in the deepest positions, -1 if the book does not say
+   */
+  public int getMaxPly() {
+    return maxPly;
+  }
+
+  /**
+   * @return the book's column for the position, -1 if it is not in the book
+   */
+  int lookup(long key) {
+    long low = 0;
+    long high = size - 1;
+    while (low <= high) {
+      long middle = (low + high) >>> 1;
+      long entry = entries.getLong((int) (headerBytes + middle * 8));
+      long entryKey = entry >>> 8;
+      if (entryKey < key) {
+        low = middle + 1;
+      } else if (entryKey > key) {
+        high = middle - 1;
+      } else {
+        return (int) (entry & 0xFF);
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return the book's column for side to move on board, -1 if none
+   */
+  int lookup(BitBoard board) {
+    long key = board.getKey();
+    long mirrorKey = BitBoard.mirror(key);
+    int column;
+    if (mirrorKey < key) {
+      column = BitBoard.mirrorColumn(lookup(mirrorKey));
+    } else {
+      column = lookup(key);
+    }
+    if (column < 0 || column >= BitBoard.COLS || !board.canPlay(column)) {
+      return -1;
+    }
+    return column;
+  }
+}
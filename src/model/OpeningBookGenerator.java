@@ -0,0 +1,102 @@
+package model;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds an opening book offline: visits every position reachable in
+ * at most maxPly moves without either side having won, picks a move
+ * for each and writes them with OpeningBook.write. Positions reached by
+ * different move orders, and mirror images of each other, are only
+ * looked at once.
+ *
+ * By default each move is the choice of an AlphaBetaSearch to
+ * searchDepth, which is fast but only as good as the search's
+ * heuristic at the horizon: the book is marked as searched, and only
+ * the search player uses it. solved(..) instead proves every move with
+ * EndgameSolver and marks the book solved, fit for the perfect player
+ * too. Solving takes many minutes for the first positions and seconds
+ * each six moves in, so a solved book takes hours even when shallow.
+ */
+public class OpeningBookGenerator {
+  private final int maxPly;
+  // One of the two is set
+  private final AlphaBetaSearch search;
+  private final EndgameSolver solver;
+  private final Map<Long, Integer> bestMoves = new HashMap<Long, Integer>();
+
+  /**
+   * @param maxPly number of moves already made in the deepest positions in the book
+   * @param searchDepth plies searched below each position
+   * @param tableMegabytes transposition table used while generating
+   */
+  public OpeningBookGenerator(int maxPly, int searchDepth, int tableMegabytes) {
+    if (maxPly < 0 || maxPly >= BitBoard.CELLS) {
+      throw new IllegalArgumentException("Book depth must be between 0 and "
+          + (BitBoard.CELLS - 1));
+    }
+    this.maxPly = maxPly;
+    search = new AlphaBetaSearch(searchDepth, new TranspositionTable(tableMegabytes));
+    solver = null;
+  }
+
+  private OpeningBookGenerator(int maxPly, EndgameSolver solver) {
+    if (maxPly < 0 || maxPly >= BitBoard.CELLS) {
+      throw new IllegalArgumentException("Book depth must be between 0 and "
+          + (BitBoard.CELLS - 1));
+    }
+    this.maxPly = maxPly;
+    search = null;
+    this.solver = solver;
+  }
+
+  /**
+   * Generator of a solved book, every move proven by EndgameSolver.
+   * @param tableMegabytes solver table, kept across positions
+   */
+  public static OpeningBookGenerator solved(int maxPly, int tableMegabytes) {
+    return new OpeningBookGenerator(maxPly, new EndgameSolver(BitBoard.CELLS, tableMegabytes));
+  }
+
+  /**
+   * @return number of positions written to file
+   */
+  public int generate(Path file) throws IOException {
+    bestMoves.clear();
+    addPositions(new BitBoard('Y', 'R'));
+    long[] bookEntries = new long[bestMoves.size()];
+    int i = 0;
+    for (Map.Entry<Long, Integer> position : bestMoves.entrySet()) {
+      bookEntries[i ++] = OpeningBook.entry(position.getKey(), position.getValue());
+    }
+    OpeningBook.write(file, bookEntries, (solver != null) ? OpeningBook.SOLVED : 0, maxPly);
+    return bookEntries.length;
+  }
+
+  private void addPositions(BitBoard board) {
+    long key = board.getCanonicalKey();
+    if (bestMoves.containsKey(key)) {
+      return;
+    }
+    int side = board.getMoveCount() % 2;
+    // Both leave the board as they found it
+    int column = (solver != null) ? solver.findBestMove(board)
+        : search.findBestMove(board, side);
+    if (key != board.getKey()) {
+      column = BitBoard.mirrorColumn(column);
+    }
+    bestMoves.put(key, column);
+    if (board.getMoveCount() == maxPly) {
+      return;
+    }
+    for (int col = 0; col < BitBoard.COLS; col ++) {
+      if (board.canPlay(col) && !board.isWinningMove(col, side)) {
+        board.play(col, side);
+        addPositions(board);
+        board.undo(col);
+      }
+    }
+  }
+}
@@ -0,0 +1,180 @@
+package model;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Lazy SMP: runs the main AlphaBetaSearch on the calling thread and
+ * helper copies of it on a ForkJoinPool, all on the same position and
+ * all sharing the main search's transposition table. Helpers start
+ * alternately one iteration deeper, so results they store in the table
+ * are found by the others ahead of time. Without a table the helpers
+ * cannot help, so one must be set on the main search.
+ *
+ * The main search's depth, time budget and table are picked up on
+ * every move. The move comes from whichever search completed the
+ * deepest iteration, the main search winning ties, unless one proved a
+ * win or loss: through the table that can happen in a shallow
+ * iteration, and a deeper one that did not see it is worse.
+ */
+public class ParallelSearch {
+  private final AlphaBetaSearch mainSearch;
+  private final AlphaBetaSearch[] helpers;
+  private final ForkJoinPool pool;
+  private long nodesSearched;
+  private long elapsedNanos;
+  private int depthReached;
+  private int score;
+
+  /**
+   * @param threads total number of searching threads, including the caller's
+   */
+  public ParallelSearch(AlphaBetaSearch mainSearch, int threads) {
+    if (threads < 2) {
+      throw new IllegalArgumentException("Parallel search needs at least 2 threads");
+    }
+    this.mainSearch = mainSearch;
+    helpers = new AlphaBetaSearch[threads - 1];
+    for (int i = 0; i < helpers.length; i ++) {
+      helpers[i] = new AlphaBetaSearch(mainSearch.getMaxDepth());
+      helpers[i].setFirstDepth(1 + (i + 1) % 2);
+    }
+    pool = new ForkJoinPool(helpers.length);
+  }
+
+  public int getNumberOfThreads() {
+    return helpers.length + 1;
+  }
+
+  /**
+   * Nodes visited by all threads in the last call to findBestMove
+   */
+  public long getNodesSearched() {
+    return nodesSearched;
+  }
+
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  public int getDepthReached() {
+    return depthReached;
+  }
+
+  /**
+   * Score of the search the last move came from, see
+   * AlphaBetaSearch.getScore()
+   */
+  public int getScore() {
+    return score;
+  }
+
+  public long getNodesPerSecond() {
+    if (elapsedNanos == 0) {
+      return 0;
+    }
+    return nodesSearched * 1000000000L / elapsedNanos;
+  }
+
+  /**
+   * Same contract as AlphaBetaSearch.findBestMove.
+   */
+  int findBestMove(BitBoard board, int side) {
+    long start = System.nanoTime();
+    TranspositionTable table = mainSearch.getTranspositionTable();
+    if (table != null) {
+      table.newSearch();
+    }
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    ForkJoinTask<Integer>[] tasks = new ForkJoinTask[helpers.length];
+    for (int i = 0; i < helpers.length; i ++) {
+      final AlphaBetaSearch helper = helpers[i];
+      final BitBoard helperBoard = new BitBoard(board);
+      helper.setMaxDepth(mainSearch.getMaxDepth());
+      helper.setTimeBudgetMillis(mainSearch.getTimeBudgetMillis());
+      helper.setTranspositionTable(table);
+      helper.clearStop();
+      tasks[i] = pool.submit(() -> helper.search(helperBoard, side));
+    }
+
+    int bestColumn = mainSearch.search(board, side);
+    depthReached = mainSearch.getDepthReached();
+    score = mainSearch.getScore();
+    nodesSearched = mainSearch.getNodesSearched();
+    boolean proven = AlphaBetaSearch.isProven(score);
+    for (AlphaBetaSearch helper : helpers) {
+      helper.requestStop();
+    }
+    for (int i = 0; i < tasks.length; i ++) {
+      int helperColumn = tasks[i].join();
+      nodesSearched += helpers[i].getNodesSearched();
+      boolean helperProven = AlphaBetaSearch.isProven(helpers[i].getScore());
+      if (!proven && (helperProven || helpers[i].getDepthReached() > depthReached)) {
+        depthReached = helpers[i].getDepthReached();
+        score = helpers[i].getScore();
+        bestColumn = helperColumn;
+        proven = helperProven;
+      }
+    }
+    elapsedNanos = System.nanoTime() - start;
+    return bestColumn;
+  }
+
+  /**
+   * Stops the helper threads. The search cannot be used afterwards.
+   */
+  public void shutdown() {
+    pool.shutdown();
+  }
+
+  /**
+   * Times a fixed-depth search of the position reached by moves (zero-based
+   * columns, first player to move first) with 1, 2, 4, ... maxThreads
+   * threads, each run with a fresh table, and returns one line per thread
+   * count with the time, nodes and speedup over the single-threaded run.
+   * One untimed single-threaded search is run first to warm up the JIT.
+   */
+  public static String reportSpeedup(String moves, int depth, int maxThreads,
+      int tableMegabytes) {
+    StringBuilder report = new StringBuilder();
+    report.append("threads\tms\tnodes\tdepth\tspeedup\n");
+    new AlphaBetaSearch(depth, new TranspositionTable(tableMegabytes))
+        .findBestMove(BitBoard.fromMoves(moves, 'Y', 'R'), moves.length() % 2);
+    long singleThreadNanos = 0;
+    int threads = 1;
+    while (threads <= maxThreads) {
+      BitBoard board = BitBoard.fromMoves(moves, 'Y', 'R');
+      int side = board.getMoveCount() % 2;
+      AlphaBetaSearch search = new AlphaBetaSearch(depth,
+          new TranspositionTable(tableMegabytes));
+      long nanos;
+      long nodes;
+      int depthReached;
+      if (threads == 1) {
+        search.findBestMove(board, side);
+        nanos = search.getElapsedNanos();
+        nodes = search.getNodesSearched();
+        depthReached = search.getDepthReached();
+        singleThreadNanos = nanos;
+      } else {
+        ParallelSearch parallel = new ParallelSearch(search, threads);
+        parallel.findBestMove(board, side);
+        parallel.shutdown();
+        nanos = parallel.getElapsedNanos();
+        nodes = parallel.getNodesSearched();
+        depthReached = parallel.getDepthReached();
+      }
+      report.append(threads).append('\t')
+          .append(nanos / 1000000).append('\t')
+          .append(nodes).append('\t')
+          .append(depthReached).append('\t')
+          .append(String.format("%.2f", (double) singleThreadNanos / nanos)).append('\n');
+      if (threads < maxThreads && threads * 2 > maxThreads) {
+        threads = maxThreads;
+      } else {
+        threads *= 2;
+      }
+    }
+    return report.toString();
+  }
+}
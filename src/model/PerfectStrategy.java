@@ -0,0 +1,92 @@
+package model;
+
+/**
+ * Plays the move EndgameSolver proves best once few enough cells are
+ * empty for a solve to take well under a second. Before that, solving
+ * takes minutes, all of it with the game locked, so the first moves
+ * come from the opening book if it is solved and otherwise from an
+ * AlphaBetaSearch cut off after a second. Those searched moves are
+ * not proven: play is only perfect from a solved book, or from the
+ * solver's first move on.
+ */
+class PerfectStrategy extends ComputerStrategy {
+  private static final int DEFAULT_SOLVER_EMPTY_CELLS = 28;
+  private static final long SEARCH_MILLIS = 1000;
+  private static final int SEARCH_TABLE_MEGABYTES = 4;
+
+  private final EndgameSolver solver;
+  private final AlphaBetaSearch search;
+  private final boolean searchTableShared;
+  private OpeningBook openingBook = null;
+  private long lastNodes;
+
+  PerfectStrategy(int tableMegabytes) {
+    this(new EndgameSolver(DEFAULT_SOLVER_EMPTY_CELLS, tableMegabytes), null);
+  }
+
+  /**
+   * Player solving with sharedTable and searching with sharedSearchTable,
+   * both shared with other games; null for a search table of its own.
+   */
+  PerfectStrategy(TranspositionTable sharedTable, TranspositionTable sharedSearchTable) {
+    this(new EndgameSolver(DEFAULT_SOLVER_EMPTY_CELLS, sharedTable), sharedSearchTable);
+  }
+
+  private PerfectStrategy(EndgameSolver solver, TranspositionTable sharedSearchTable) {
+    super("perfect");
+    this.solver = solver;
+    searchTableShared = sharedSearchTable != null;
+    search = new AlphaBetaSearch(BitBoard.CELLS, searchTableShared ? sharedSearchTable
+        : new TranspositionTable(SEARCH_TABLE_MEGABYTES));
+    search.setTimeBudgetMillis(SEARCH_MILLIS);
+  }
+
+  /**
+   * Book for the first moves, used only if it is solved: a searched
+   * book's moves are not proven, and this player plays proven moves.
+   */
+  void setOpeningBook(OpeningBook book) {
+    openingBook = (book != null && book.isSolved()) ? book : null;
+  }
+
+  /**
+   * Most empty cells a position may have to be solved rather than
+   * searched. Each one more makes the longest solves several times longer.
+   */
+  void setSolverEmptyCells(int emptyCells) {
+    solver.setMaxEmptyCells(emptyCells);
+  }
+
+  @Override
+  int selectColumn(BitBoard board, int side) {
+    lastNodes = 0;
+    if (openingBook != null) {
+      int bookColumn = openingBook.lookup(board);
+      if (bookColumn != -1) {
+        return bookColumn;
+      }
+    }
+    if (solver.canSolve(board)) {
+      int column = solver.findBestMove(board);
+      lastNodes = solver.getNodesSearched();
+      return column;
+    }
+    int column = search.findBestMove(board, side);
+    lastNodes = search.getNodesSearched();
+    return column;
+  }
+
+  @Override
+  long nodesOfLastMove() {
+    return lastNodes;
+  }
+
+  @Override
+  public long getMemoryBytes() {
+    long bytes = solver.getMemoryBytes();
+    if (!searchTableShared) {
+      bytes += search.getTranspositionTable().getSizeInBytes();
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,43 @@
+package model;
+
+import java.util.Random;
+
+/**
+ * Plays any column that is not full.
+ */
+class RandomStrategy extends ComputerStrategy {
+  private final Random rand = new Random();
+
+  RandomStrategy() {
+    super("random");
+  }
+
+  @Override
+  int selectColumn(BitBoard board, int side) {
+    return randomCell(rand, board.possibleMoves());
+  }
+
+  /**
+   * Column of a random one of cells, -1 if there are none.
+   */
+  static int randomCell(Random rand, long cells) {
+    int count = Long.bitCount(cells);
+    if (count == 0) {
+      return -1;
+    }
+    for (int skip = rand.nextInt(count); skip > 0; skip --) {
+      cells &= cells - 1;
+    }
+    return BitBoard.columnOf(cells);
+  }
+
+  @Override
+  long nodesOfLastMove() {
+    return 0;
+  }
+
+  @Override
+  public long getMemoryBytes() {
+    return 0;
+  }
+}
@@ -0,0 +1,108 @@
+package model;
+
+/**
+ * Results of a SelfPlayRunner batch.
+ */
+public class SelfPlayReport {
+  private final long games;
+  private final long elapsedNanos;
+  private final long firstPlayerWins;
+  private final long secondPlayerWins;
+  private final long ties;
+  private final long[] columnCounts;
+  private final long[] gameLengthCounts;
+
+  SelfPlayReport(long games, long elapsedNanos, long firstPlayerWins,
+      long secondPlayerWins, long ties, long[] columnCounts, long[] gameLengthCounts) {
+    this.games = games;
+    this.elapsedNanos = elapsedNanos;
+    this.firstPlayerWins = firstPlayerWins;
+    this.secondPlayerWins = secondPlayerWins;
+    this.ties = ties;
+    this.columnCounts = columnCounts;
+    this.gameLengthCounts = gameLengthCounts;
+  }
+
+  public long getGames() {
+    return games;
+  }
+
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  public double getGamesPerSecond() {
+    return (elapsedNanos == 0) ? 0 : games * 1e9 / elapsedNanos;
+  }
+
+  public long getFirstPlayerWins() {
+    return firstPlayerWins;
+  }
+
+  public long getSecondPlayerWins() {
+    return secondPlayerWins;
+  }
+
+  public long getTies() {
+    return ties;
+  }
+
+  public double getFirstPlayerWinRate() {
+    return rate(firstPlayerWins);
+  }
+
+  public double getSecondPlayerWinRate() {
+    return rate(secondPlayerWins);
+  }
+
+  public double getTieRate() {
+    return rate(ties);
+  }
+
+  private double rate(long count) {
+    return (games == 0) ? 0 : (double) count / games;
+  }
+
+  /**
+   * @return moves played in each column, over all games
+   */
+  public long[] getColumnCounts() {
+    return columnCounts.clone();
+  }
+
+  /**
+   * @return number of games that lasted each number of moves (index)
+   */
+  public long[] getGameLengthCounts() {
+    return gameLengthCounts.clone();
+  }
+
+  public double getAverageGameLength() {
+    long moves = 0;
+    for (int length = 0; length < gameLengthCounts.length; length ++) {
+      moves += length * gameLengthCounts[length];
+    }
+    return (games == 0) ? 0 : (double) moves / games;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder report = new StringBuilder();
+    report.append(String.format("games: %d in %.1f s (%.0f games/s)%n",
+        games, elapsedNanos / 1e9, getGamesPerSecond()));
+    report.append(String.format("first player wins: %.2f%%, second player wins: %.2f%%,"
+        + " ties: %.2f%%%n", 100 * getFirstPlayerWinRate(),
+        100 * getSecondPlayerWinRate(), 100 * getTieRate()));
+    report.append(String.format("average game length: %.1f moves%n", getAverageGameLength()));
+    long moves = 0;
+    for (long count : columnCounts) {
+      moves += count;
+    }
+    report.append("moves per column:");
+    for (int col = 0; col < columnCounts.length; col ++) {
+      report.append(String.format(" %d=%.1f%%", col,
+          (moves == 0) ? 0 : 100.0 * columnCounts[col] / moves));
+    }
+    return report.append(String.format("%n")).toString();
+  }
+}
@@ -0,0 +1,160 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import views.HeadlessListener;
+
+/**
+ * Plays computer-vs-computer games without a display, through the same
+ * GameModeHumanvsComputer flow as a real game: a HeadlessListener
+ * registers as the first player and its moves, picked by a search of
+ * its own, go through selectColumnForMove, which answers with the
+ * computer's move.
+ *
+ * Each worker thread reuses one game model, one listener and one
+ * search for all of its games. All searches share one transposition
+ * table. For variety, the first player plays randomOpeningMoves random
+ * moves before searching, and a random move with probability
+ * randomMoveRate afterwards.
+ */
+public class SelfPlayRunner {
+  // Layout of the counts each worker returns
+  private static final int GAMES = 0;
+  private static final int FIRST_WINS = 1;
+  private static final int SECOND_WINS = 2;
+  private static final int TIES = 3;
+  private static final int COLUMNS = 4;
+  private static final int LENGTHS = COLUMNS + BitBoard.COLS;
+  private static final int RESULT_SIZE = LENGTHS + BitBoard.CELLS + 1;
+
+  private final int firstPlayerDepth;
+  private final int computerDepth;
+  private int randomOpeningMoves = 2;
+  private double randomMoveRate = 0.1;
+  private int tableMegabytes = 16;
+  private long seed = System.nanoTime();
+
+  public SelfPlayRunner(int firstPlayerDepth, int computerDepth) {
+    if (firstPlayerDepth < 1 || computerDepth < 1) {
+      throw new IllegalArgumentException("Search depth must be at least 1");
+    }
+    this.firstPlayerDepth = firstPlayerDepth;
+    this.computerDepth = computerDepth;
+  }
+
+  public void setRandomOpeningMoves(int moves) {
+    randomOpeningMoves = moves;
+  }
+
+  public void setRandomMoveRate(double rate) {
+    randomMoveRate = rate;
+  }
+
+  public void setTableMegabytes(int megabytes) {
+    tableMegabytes = megabytes;
+  }
+
+  public void setSeed(long seed) {
+    this.seed = seed;
+  }
+
+  /**
+   * Plays games on threads threads and blocks until all are done.
+   */
+  public SelfPlayReport run(long games, int threads) throws InterruptedException {
+    final TranspositionTable table = new TranspositionTable(tableMegabytes);
+    // Both players of every thread's game search the table
+    table.setSearchesPerGeneration(2 * threads);
+    final AtomicLong gamesLeft = new AtomicLong(games);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<Future<long[]>> results = new ArrayList<Future<long[]>>();
+    long start = System.nanoTime();
+    for (int i = 0; i < threads; i ++) {
+      final long workerSeed = seed + i;
+      results.add(executor.submit(new Callable<long[]>() {
+        @Override
+        public long[] call() {
+          return playGames(table, gamesLeft, workerSeed);
+        }
+      }));
+    }
+    executor.shutdown();
+
+    long[] totals = new long[RESULT_SIZE];
+    try {
+      for (Future<long[]> result : results) {
+        long[] counts = result.get();
+        for (int i = 0; i < RESULT_SIZE; i ++) {
+          totals[i] += counts[i];
+        }
+      }
+    } catch (ExecutionException e) {
+      executor.shutdownNow();
+      throw new IllegalStateException("Self-play worker failed", e.getCause());
+    }
+    long elapsed = System.nanoTime() - start;
+
+    long[] columnCounts = new long[BitBoard.COLS];
+    System.arraycopy(totals, COLUMNS, columnCounts, 0, BitBoard.COLS);
+    long[] gameLengthCounts = new long[BitBoard.CELLS + 1];
+    System.arraycopy(totals, LENGTHS, gameLengthCounts, 0, BitBoard.CELLS + 1);
+    return new SelfPlayReport(totals[GAMES], elapsed, totals[FIRST_WINS],
+        totals[SECOND_WINS], totals[TIES], columnCounts, gameLengthCounts);
+  }
+
+  private long[] playGames(TranspositionTable table, AtomicLong gamesLeft, long workerSeed) {
+    long[] counts = new long[RESULT_SIZE];
+    Random random = new Random(workerSeed);
+    GameModeHumanvsComputer game = new GameModeHumanvsComputer(table);
+    game.setSearchDepth(computerDepth);
+    AlphaBetaSearch search = new AlphaBetaSearch(firstPlayerDepth, table);
+    HeadlessListener player = new HeadlessListener(game.player1color, "Player1");
+
+    while (gamesLeft.getAndDecrement() > 0) {
+      game.resetGame();
+      player.reset();
+      game.registerListener(player, true);
+      BitBoard board = (BitBoard) game.board;
+      while (!player.isGameOver()) {
+        int column;
+        if (board.getMoveCount() < 2 * randomOpeningMoves
+            || random.nextDouble() < randomMoveRate) {
+          column = randomColumn(board, random);
+        } else {
+          column = search.findBestMove(board, 0);
+        }
+        game.selectColumnForMove(player, column);
+      }
+
+      counts[GAMES] ++;
+      char winner = player.getWinner();
+      if (winner == game.player1color) {
+        counts[FIRST_WINS] ++;
+      } else if (winner == game.player2color) {
+        counts[SECOND_WINS] ++;
+      } else {
+        counts[TIES] ++;
+      }
+      counts[LENGTHS + board.getMoveCount()] ++;
+    }
+    long[] columnCounts = player.getColumnCounts();
+    System.arraycopy(columnCounts, 0, counts, COLUMNS, columnCounts.length);
+    return counts;
+  }
+
+  private static int randomColumn(BitBoard board, Random random) {
+    int column = random.nextInt(BitBoard.COLS);
+    while (!board.canPlay(column)) {
+      column = random.nextInt(BitBoard.COLS);
+    }
+    return column;
+  }
+}
@@ -0,0 +1,83 @@
+package model;
+
+/**
+ * Immediate threats on a BitBoard for the side to move, found in one
+ * pass of shifts and masks over the two bitboards: the cells each side
+ * would win on, which of them can be played right now, the blocks
+ * that are forced and the moves that would let the opponent win on
+ * the cell above. Nothing is played or copied.
+ *
+ * One instance is meant to be reused: scan(..) overwrites the results
+ * of the previous scan. Every result is a bitboard of playable cells,
+ * one bit per column at most; BitBoard.columnOf turns a cell into
+ * its column.
+ */
+class Threats {
+  private long playable;
+  private long wins;
+  private long opponentWins;
+  private long losingMoves;
+  private long safeMoves;
+
+  /**
+   * Finds the threats for side, which is about to move on board.
+   */
+  void scan(BitBoard board, int side) {
+    long mask = board.getMask();
+    playable = board.possibleMoves();
+    long ownCells = BitBoard.winningCells(board.getPieces(side), mask);
+    long opponentCells = BitBoard.winningCells(board.getPieces(1 - side), mask);
+    wins = playable & ownCells;
+    opponentWins = playable & opponentCells;
+    losingMoves = playable & (opponentCells >> 1);
+    long candidates = (opponentWins != 0) ? opponentWins : playable;
+    if ((opponentWins & (opponentWins - 1)) != 0) {
+      // Two or more wins to block: blocking one loses to the other
+      candidates = 0;
+    }
+    safeMoves = candidates & ~losingMoves;
+  }
+
+  /**
+   * Cells where the side to move wins at once
+   */
+  long getWins() {
+    return wins;
+  }
+
+  /**
+   * Cells where the opponent would win on their next move; the side
+   * to move must play there if it cannot win first.
+   */
+  long getForcedBlocks() {
+    return opponentWins;
+  }
+
+  /**
+   * Moves that fill the cell below one of the opponent's winning cells
+   */
+  long getLosingMoves() {
+    return losingMoves;
+  }
+
+  /**
+   * Moves after which the opponent cannot win on their next move,
+   * 0 if every move loses. Does not take the side to move's own wins
+   * into account, check getWins() first.
+   */
+  long getSafeMoves() {
+    return safeMoves;
+  }
+
+  long getPlayable() {
+    return playable;
+  }
+
+  /**
+   * True if the side to move cannot avoid losing on the opponent's
+   * next move (and has no win of its own).
+   */
+  boolean isLost() {
+    return wins == 0 && safeMoves == 0;
+  }
+}
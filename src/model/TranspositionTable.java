@@ -0,0 +1,216 @@
+package model;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size cache of search results keyed by BitBoard.getCanonicalKey(),
+ * so a position and its mirror image take one slot between them.
+ *
+ * Entries live in two parallel long arrays, one for the keys and one
+ * for the packed result, so the table never allocates after it is
+ * built and its footprint is exactly the size asked for (rounded down
+ * to a power of two entries). Each slot holds one position; a new
+ * result replaces the old one if it is for the same position, if the
+ * old one is left over from an earlier search or if it was searched
+ * to no greater depth. A table shared by many games ages by search
+ * count instead (see setSearchesPerGeneration(..)), so one game's
+ * searches do not make every other game's entries look old.
+ *
+ * The table can be shared by several searching threads without locks.
+ * A slot stores key ^ entry next to the entry, and a probe only
+ * accepts the entry if the two still XOR back to the key, so a slot
+ * half-written by another thread reads as a miss rather than as a
+ * wrong result. Probes write nothing shared: each search counts its
+ * own hits, misses and collisions and adds them to the table's
+ * counters when it is done.
+ *
+ * Packed entry layout:
+ *   bits  0-31 score
+ *   bits 32-39 depth
+ *   bits 40-41 bound
+ *   bits 42-49 best move + 1 (0 = none)
+ *   bits 50-57 search generation
+ */
+public class TranspositionTable {
+  static final int BOUND_EXACT = 0;
+  /** Score is at least the stored value (search failed high) */
+  static final int BOUND_LOWER = 1;
+  /** Score is at most the stored value (search failed low) */
+  static final int BOUND_UPPER = 2;
+  private static final int BYTES_PER_ENTRY = 16;
+
+  // key ^ entry, 0 for an empty slot
+  private final long[] keys;
+  private final long[] entries;
+  private final int shift;
+  private volatile int generation;
+  private final AtomicLong searches = new AtomicLong();
+  private volatile int searchesPerGeneration = 1;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder collisions = new LongAdder();
+
+  /**
+   * @param sizeInMegabytes memory given to the table, at least 1
+   */
+  public TranspositionTable(int sizeInMegabytes) {
+    if (sizeInMegabytes < 1) {
+      throw new IllegalArgumentException("Table size must be at least 1 MB");
+    }
+    long maxEntries = ((long) sizeInMegabytes << 20) / BYTES_PER_ENTRY;
+    int bits = 63 - Long.numberOfLeadingZeros(Math.min(maxEntries, 1 << 30));
+    keys = new long[1 << bits];
+    entries = new long[1 << bits];
+    shift = 64 - bits;
+  }
+
+  private int index(long key) {
+    return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+  }
+
+  /**
+   * @return the packed entry for key, 0 if the position is not stored
+   */
+  long probe(long key) {
+    int i = index(key);
+    long entry = entries[i];
+    if ((keys[i] ^ entry) == key) {
+      return entry;
+    }
+    return 0;
+  }
+
+  /**
+   * True if the slot for key holds a different position: for a search
+   * to count, after a probe for key found nothing, as a collision.
+   */
+  boolean isCollision(long key) {
+    int i = index(key);
+    long storedKey = keys[i] ^ entries[i];
+    return storedKey != 0 && storedKey != key;
+  }
+
+  /**
+   * @param move best column found, -1 if none
+   */
+  void store(long key, int depth, int bound, int score, int move) {
+    int i = index(key);
+    int currentGeneration = generation & 0xFF;
+    long old = entries[i];
+    long storedKey = keys[i] ^ old;
+    if (storedKey != 0 && storedKey != key) {
+      if (generation(old) == currentGeneration && depth(old) > depth) {
+        return;
+      }
+    }
+    long entry = (score & 0xFFFFFFFFL)
+        | ((long) depth << 32)
+        | ((long) bound << 40)
+        | ((long) (move + 1) << 42)
+        | ((long) currentGeneration << 50);
+    keys[i] = key ^ entry;
+    entries[i] = entry;
+  }
+
+  static int score(long entry) {
+    return (int) entry;
+  }
+
+  static int depth(long entry) {
+    return (int) (entry >>> 32) & 0xFF;
+  }
+
+  static int bound(long entry) {
+    return (int) (entry >>> 40) & 0x3;
+  }
+
+  /**
+   * @return best move stored with the entry, -1 if none
+   */
+  static int move(long entry) {
+    return ((int) (entry >>> 42) & 0xFF) - 1;
+  }
+
+  private static int generation(long entry) {
+    return (int) (entry >>> 50) & 0xFF;
+  }
+
+  /**
+   * Called as a search starts. Once every searchesPerGeneration calls,
+   * marks entries stored so far as old, so that later searches may
+   * replace them regardless of depth.
+   */
+  public void newSearch() {
+    int period = searchesPerGeneration;
+    if (period == 1 || searches.incrementAndGet() % period == 0) {
+      generation ++;
+    }
+  }
+
+  /**
+   * Number of searches after which entries count as old, 1 (the
+   * default) for a table searched by one game at a time. A table
+   * shared by many games is given their number, so that entries stay
+   * current until about every game has searched once more.
+   */
+  public void setSearchesPerGeneration(int searches) {
+    if (searches < 1) {
+      throw new IllegalArgumentException("A generation must last at least one search");
+    }
+    searchesPerGeneration = searches;
+  }
+
+  /**
+   * Adds the probes of a finished search to the counters.
+   */
+  void addProbes(long searchHits, long searchMisses, long searchCollisions) {
+    hits.add(searchHits);
+    misses.add(searchMisses);
+    collisions.add(searchCollisions);
+  }
+
+  public void clear() {
+    Arrays.fill(keys, 0);
+    Arrays.fill(entries, 0);
+    resetCounters();
+  }
+
+  public void resetCounters() {
+    hits.reset();
+    misses.reset();
+    collisions.reset();
+  }
+
+  public int getNumberOfEntries() {
+    return keys.length;
+  }
+
+  public long getSizeInBytes() {
+    return (long) keys.length * BYTES_PER_ENTRY;
+  }
+
+  /**
+   * Probes that found their position, by searches finished so far
+   */
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /**
+   * Probes that found nothing, including collisions, by searches
+   * finished so far
+   */
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /**
+   * Probes that found the slot taken by a different position, by
+   * searches finished so far
+   */
+  public long getCollisions() {
+    return collisions.sum();
+  }
+}
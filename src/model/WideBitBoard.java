@@ -0,0 +1,327 @@
+package model;
+
+import java.util.Random;
+
+import utilities.IBoardSnapshot;
+import utilities.Variant;
+
+/**
+ * Bitboard for the variants: any board size whose cells, plus a spare
+ * bit on top of every column, fit in 128 bits, and any length of line.
+ * The layout is BitBoard's, column by column from the bottom, spread
+ * over two longs per player (cells 0-63 in the low word, 64-127 in the
+ * high one); on boards of up to 64 bits the high word simply stays 0.
+ *
+ * Lines of any length are found by and-ing the pieces with themselves
+ * shifted one step along a direction, once per extra piece in the line.
+ * As in BitBoard the spare row stops runs from wrapping between columns.
+ *
+ * The standard board is always a BitBoard, whose fixed size lets the
+ * search engines work on it; this class only does what the game needs.
+ */
+class WideBitBoard implements IGameBoard {
+  static final int MAX_BITS = 128;
+
+  private final int rows;
+  private final int cols;
+  private final int connect;
+  private final int h1;
+  // Bit distance between neighbours: vertical, horizontal, both diagonals
+  private final int[] steps;
+  // Low and high words of each side's pieces
+  private final long[] low = new long[2];
+  private final long[] high = new long[2];
+  private final int[] height;
+  private int moveCount;
+  private final char[] pieceColors;
+  private Random rand = new Random();
+
+  /**
+   * @throws IllegalArgumentException if the variant does not fit in 128 bits
+   */
+  WideBitBoard(Variant variant, char firstPiece, char secondPiece) {
+    if (!fits(variant)) {
+      throw new IllegalArgumentException(variant + " does not fit in " + MAX_BITS + " bits");
+    }
+    rows = variant.getNumberOfRows();
+    cols = variant.getNumberOfCols();
+    connect = variant.getConnectLength();
+    h1 = rows + 1;
+    steps = new int[] {1, h1, rows, h1 + 1};
+    height = new int[cols];
+    pieceColors = new char[] {firstPiece, secondPiece};
+  }
+
+  static boolean fits(Variant variant) {
+    return (variant.getNumberOfRows() + 1) * variant.getNumberOfCols() <= MAX_BITS;
+  }
+
+  private int bitIndex(int col, int rowFromBottom) {
+    return col * h1 + rowFromBottom;
+  }
+
+  private boolean isSet(int side, int index) {
+    return isSet(low[side], high[side], index);
+  }
+
+  private static boolean isSet(long low, long high, int index) {
+    if (index < 64) {
+      return ((low >>> index) & 1) != 0;
+    }
+    return ((high >>> (index - 64)) & 1) != 0;
+  }
+
+  private void setBit(int side, int index, boolean on) {
+    if (index < 64) {
+      low[side] = on ? (low[side] | (1L << index)) : (low[side] & ~(1L << index));
+    } else {
+      long bit = 1L << (index - 64);
+      high[side] = on ? (high[side] | bit) : (high[side] & ~bit);
+    }
+  }
+
+  /**
+   * Low word of (high:low) >>> n, for n > 0
+   */
+  private static long shiftLow(long low, long high, int n) {
+    if (n >= 128) {
+      return 0;
+    }
+    if (n >= 64) {
+      return high >>> (n - 64);
+    }
+    return (low >>> n) | (high << (64 - n));
+  }
+
+  /**
+   * High word of (high:low) >>> n, for n > 0
+   */
+  private static long shiftHigh(long high, int n) {
+    return (n >= 64) ? 0 : high >>> n;
+  }
+
+  /**
+   * True if the pieces hold connect in a row in any direction.
+   */
+  private boolean alignment(long posLow, long posHigh) {
+    for (int step : steps) {
+      long runLow = posLow;
+      long runHigh = posHigh;
+      for (int k = 1; k < connect && (runLow | runHigh) != 0; k ++) {
+        runLow &= shiftLow(posLow, posHigh, k * step);
+        runHigh &= shiftHigh(posHigh, k * step);
+      }
+      if ((runLow | runHigh) != 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean hasWon(int side) {
+    return alignment(low[side], high[side]);
+  }
+
+  private boolean canPlay(int col) {
+    return height[col] < rows;
+  }
+
+  private void play(int col, int side) {
+    setBit(side, bitIndex(col, height[col]), true);
+    height[col] ++;
+    moveCount ++;
+  }
+
+  private void undo(int col, int side) {
+    height[col] --;
+    setBit(side, bitIndex(col, height[col]), false);
+    moveCount --;
+  }
+
+  private int sideOf(char piece) {
+    if (piece == pieceColors[0]) {
+      return 0;
+    }
+    if (piece == pieceColors[1]) {
+      return 1;
+    }
+    return -1;
+  }
+
+  /**
+   * @return side whose piece is at row (from the top), col; -1 if empty
+   */
+  private int sideAt(int row, int col) {
+    int index = bitIndex(col, (rows - 1) - row);
+    if (isSet(0, index)) {
+      return 0;
+    }
+    if (isSet(1, index)) {
+      return 1;
+    }
+    return -1;
+  }
+
+  @Override
+  public char[][] returnBoardCurrentState() {
+    char[][] copyOfBoard = new char[rows][cols];
+    for (int row = 0; row < rows; row ++) {
+      for (int col = 0; col < cols; col ++) {
+        int side = sideAt(row, col);
+        copyOfBoard[row][col] = (side == -1) ? ' ' : pieceColors[side];
+      }
+    }
+    return copyOfBoard;
+  }
+
+  /**
+   * Snapshot backed by a copy of the four words - no per-cell copy.
+   */
+  @Override
+  public IBoardSnapshot snapshot() {
+    return new Snapshot(this);
+  }
+
+  private static class Snapshot implements IBoardSnapshot {
+    private final long firstLow;
+    private final long firstHigh;
+    private final long secondLow;
+    private final long secondHigh;
+    private final char[] pieceColors;
+    private final int rows;
+    private final int cols;
+    private final int moveNumber;
+
+    Snapshot(WideBitBoard board) {
+      firstLow = board.low[0];
+      firstHigh = board.high[0];
+      secondLow = board.low[1];
+      secondHigh = board.high[1];
+      pieceColors = board.pieceColors;
+      rows = board.rows;
+      cols = board.cols;
+      moveNumber = board.moveCount;
+    }
+
+    @Override
+    public char getPiece(int row, int col) {
+      int index = col * (rows + 1) + (rows - 1) - row;
+      if (isSet(firstLow, firstHigh, index)) {
+        return pieceColors[0];
+      }
+      if (isSet(secondLow, secondHigh, index)) {
+        return pieceColors[1];
+      }
+      return ' ';
+    }
+
+    @Override
+    public int getMoveNumber() {
+      return moveNumber;
+    }
+
+    @Override
+    public int getNumberOfRows() {
+      return rows;
+    }
+
+    @Override
+    public int getNumberOfCols() {
+      return cols;
+    }
+  }
+
+  @Override
+  public boolean updateBoardForMove(int column, char playerChar) {
+    int side = sideOf(playerChar);
+    if ((column < 0) || (column > (cols - 1)) || (side == -1)) {
+      return false;
+    }
+    if (!canPlay(column)) {
+      return false;
+    }
+    play(column, side);
+    return true;
+  }
+
+  @Override
+  public boolean undoMove(int column) {
+    if ((column < 0) || (column > (cols - 1)) || (height[column] == 0)) {
+      return false;
+    }
+    undo(column, sideAt(rows - height[column], column));
+    return true;
+  }
+
+  @Override
+  public int computerFindNextWinMove(char playerColor) {
+    int side = sideOf(playerColor);
+    if (side == -1) {
+      return -1;
+    }
+    for (int col = 0; col < cols; col ++) {
+      if (canPlay(col)) {
+        play(col, side);
+        boolean won = hasWon(side);
+        undo(col, side);
+        if (won) {
+          return col;
+        }
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public int computerFindNextRegularMove() {
+    int colGeneratedAtRandom = rand.nextInt(cols);
+    while (!canPlay(colGeneratedAtRandom)) {
+      colGeneratedAtRandom = rand.nextInt(cols);
+    }
+    return colGeneratedAtRandom;
+  }
+
+  @Override
+  public int getFirstEmptyRowFromBottom(int col) {
+    if (!canPlay(col)) {
+      return -1;
+    }
+    return (rows - 1) - height[col];
+  }
+
+  @Override
+  public char findWinner(int newPieceRow, int newPieceCol,
+      char player1PieceColor, char player2PieceColor, char noWinner) {
+    int side = sideAt(newPieceRow, newPieceCol);
+    if (side != -1 && hasWon(side)) {
+      char piece = pieceColors[side];
+      if (piece == player1PieceColor || piece == player2PieceColor) {
+        return piece;
+      }
+    }
+    return noWinner;
+  }
+
+  @Override
+  public boolean isGameOver() {
+    return moveCount == rows * cols;
+  }
+
+  @Override
+  public int getMostRecentRowFilled(int column) {
+    if (height[column] == 0) {
+      return -1;
+    }
+    return rows - height[column];
+  }
+
+  @Override
+  public int getNumberOfRows() {
+    return rows;
+  }
+
+  @Override
+  public int getNumberOfCols() {
+    return cols;
+  }
+}
@@ -0,0 +1,278 @@
+package network;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import model.IGameMode;
+import utilities.IBoardSnapshot;
+import utilities.MoveEvent;
+import views.IListener;
+
+/**
+ * The one listener a game has for all its spectators on a GameServer.
+ * Each event is encoded once, appended to a shared segment of frames,
+ * and written to every spectator from there, each through a view of its
+ * own, so nothing is encoded or copied per spectator.
+ *
+ * The game's threads append to the segment and publish its new end;
+ * the selector thread alone reads it, keeps the spectator list and
+ * writes. A spectator that has fallen behind is moved to the latest
+ * checkpoint: a BOARD frame for the board after the last move, again
+ * encoded once and shared, and the frames that follow it, so it skips
+ * moves but never a win or a tie. A full segment is followed by a new
+ * one that starts with the frames after the checkpoint.
+ */
+class GameBroadcast implements IListener {
+  static final int SEGMENT_BYTES = 16 * 1024;
+
+  /**
+   * Frames appended one after the other. Bytes below end are never
+   * written again.
+   */
+  static final class Segment {
+    final ByteBuffer data = ByteBuffer.allocateDirect(SEGMENT_BYTES);
+    // Where the frames not already in the previous segment start
+    int start;
+    volatile int end;
+    // Set once this segment is full, end is final
+    volatile Segment next;
+  }
+
+  /**
+   * Board as of offset in segment.
+   */
+  static final class Checkpoint {
+    final IBoardSnapshot board;
+    final Segment segment;
+    final int offset;
+    // Encoded on the selector thread when a spectator first needs it
+    private ByteBuffer boardFrame;
+
+    Checkpoint(IBoardSnapshot board, Segment segment, int offset) {
+      this.board = board;
+      this.segment = segment;
+      this.offset = offset;
+    }
+
+    ByteBuffer boardFrame() {
+      if (boardFrame == null) {
+        boardFrame = ByteBuffer.allocateDirect(Protocol.boardFrameLength(board));
+        Protocol.putBoard(boardFrame, board);
+        boardFrame.flip();
+      }
+      return boardFrame;
+    }
+  }
+
+  private final GameServer server;
+  private final IGameMode game;
+  private final String gameId;
+  // Appended to under this object's lock
+  private Segment segment = new Segment();
+  private ByteBuffer writer = segment.data.duplicate();
+  private volatile Checkpoint checkpoint;
+  private volatile boolean gameOver;
+  private final AtomicBoolean flushRequested = new AtomicBoolean();
+  private final AtomicInteger spectatorsJoined = new AtomicInteger();
+  // Selector thread only
+  private final ArrayList<RemoteConnection> spectators = new ArrayList<RemoteConnection>();
+
+  /**
+   * Starts broadcasting game. Registers as its listener under the
+   * game's monitor, so that the first checkpoint's board is exactly
+   * the one the first event follows.
+   */
+  GameBroadcast(GameServer server, IGameMode game, String gameId) {
+    this.server = server;
+    this.game = game;
+    this.gameId = gameId;
+    synchronized (game) {
+      game.registerListener(this, false);
+      checkpoint = new Checkpoint(game.getBoardSnapshot(), segment, 0);
+    }
+  }
+
+  IGameMode getGame() {
+    return game;
+  }
+
+  String getGameId() {
+    return gameId;
+  }
+
+  Checkpoint getCheckpoint() {
+    return checkpoint;
+  }
+
+  /**
+   * Number of spectators; on the selector thread.
+   */
+  int getNumberOfSpectators() {
+    return spectators.size();
+  }
+
+  String newSpectatorId() {
+    return "Spectator" + spectatorsJoined.incrementAndGet();
+  }
+
+  /**
+   * On the selector thread.
+   */
+  void addSpectator(RemoteConnection spectator) {
+    spectator.setSpectatorIndex(spectators.size());
+    spectators.add(spectator);
+  }
+
+  /**
+   * On the selector thread. Swaps the last spectator into the gap.
+   */
+  void removeSpectator(RemoteConnection spectator) {
+    int index = spectator.getSpectatorIndex();
+    RemoteConnection last = spectators.remove(spectators.size() - 1);
+    if (last != spectator) {
+      spectators.set(index, last);
+      last.setSpectatorIndex(index);
+    }
+    if (spectators.isEmpty() && gameOver) {
+      server.broadcastFinished(this);
+    }
+  }
+
+  /**
+   * Writes the new frames to every spectator; on the selector thread.
+   */
+  void flush() {
+    flushRequested.set(false);
+    // Backwards, as a spectator closed on the way is swapped out for the last
+    for (int i = spectators.size() - 1; i >= 0; i --) {
+      spectators.get(i).writeBroadcast();
+    }
+  }
+
+  /**
+   * Appends a frame whose payload is the low payloadBytes bytes of
+   * payload, or with payloadBytes -1 a BOARD frame of board.
+   * @param board board after the frame, null if it did not change
+   */
+  private void append(byte type, int payloadBytes, IBoardSnapshot board, long payload) {
+    synchronized (this) {
+      int frameBytes = (payloadBytes == -1) ? Protocol.boardFrameLength(board)
+          : Protocol.LENGTH_BYTES + 1 + payloadBytes;
+      if (writer.remaining() < frameBytes) {
+        nextSegment(frameBytes);
+      }
+      if (payloadBytes == -1) {
+        Protocol.putBoard(writer, board);
+      } else {
+        writer.putShort((short) (1 + payloadBytes)).put(type);
+        for (int i = payloadBytes - 1; i >= 0; i --) {
+          writer.put((byte) (payload >>> (8 * i)));
+        }
+      }
+      segment.end = writer.position();
+      if (board != null) {
+        checkpoint = new Checkpoint(board, segment, writer.position());
+      }
+    }
+    if (flushRequested.compareAndSet(false, true)) {
+      server.requestBroadcast(this);
+    }
+  }
+
+  /**
+   * Starts a new segment with the frames after the checkpoint, so that
+   * the checkpoint can move to its start. Caller holds the lock.
+   */
+  private void nextSegment(int frameBytes) {
+    Segment next = new Segment();
+    ByteBuffer tail = segment.data.duplicate();
+    tail.limit(segment.end).position(checkpoint.offset);
+    writer = next.data.duplicate();
+    if (tail.remaining() + frameBytes <= SEGMENT_BYTES) {
+      writer.put(tail);
+    }
+    next.start = writer.position();
+    next.end = next.start;
+    checkpoint = new Checkpoint(checkpoint.board, next, 0);
+    segment.next = next;
+    segment = next;
+  }
+
+  private void appendMove(byte type, MoveEvent move) {
+    long payload = ((long) (move.getColumn() & 0xFF) << 32)
+        | ((long) (move.getRow() & 0xFF) << 24)
+        | ((move.getPiece() & 0xFF) << 16)
+        | (move.getMoveNumber() & 0xFFFF);
+    append(type, 5, move.getBoard(), payload);
+  }
+
+  @Override
+  public void gameStartSignal(IListener firstPlayerToGo) {
+    gameOver = false;
+    // No spectator is ever the first to go
+    append(Protocol.START, 1, game.getBoardSnapshot(), 0);
+  }
+
+  @Override
+  public void moveMadeNotify(MoveEvent move) {
+    appendMove(Protocol.MOVE_MADE, move);
+  }
+
+  @Override
+  public void moveUndoneNotify(MoveEvent undone) {
+    gameOver = false;
+    appendMove(Protocol.MOVE_UNDONE, undone);
+  }
+
+  /**
+   * Move without an event: send the whole board
+   */
+  @Override
+  public void correctMoveNotify() {
+    append(Protocol.BOARD, -1, game.getBoardSnapshot(), 0);
+  }
+
+  @Override
+  public void gameWinNotify(char winnerPiece) {
+    gameOver = true;
+    append(Protocol.WIN, 1, null, winnerPiece);
+  }
+
+  @Override
+  public void gameTied() {
+    gameOver = true;
+    append(Protocol.TIED, 0, null, 0);
+  }
+
+  boolean isGameOver() {
+    return gameOver;
+  }
+
+  @Override
+  public void invalidTurnNotify() {
+  }
+
+  @Override
+  public void invalidMoveNotify() {
+  }
+
+  @Override
+  public void gameNotInProgressNotify() {
+  }
+
+  @Override
+  public char getPiece() {
+    return 'G';
+  }
+
+  @Override
+  public String getId() {
+    return "Broadcast";
+  }
+
+  @Override
+  public void shutFrame() {
+  }
+}
@@ -0,0 +1,367 @@
+package network;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import model.GameSessionManager;
+import model.IGameMode;
+
+/**
+ * Non-blocking front end that lets remote players and spectators take
+ * part in the games of a GameSessionManager over TCP, speaking the
+ * frames described in Protocol. Each connection is one IListener.
+ *
+ * One selector thread accepts, reads and writes for every connection.
+ * Complete frames are handed to gameExecutor, or run on the selector
+ * thread if there is none, which is only wise when no computer player
+ * has to think. A connection is not read again until its frames have
+ * been handled, so frames are handled in order and a client that
+ * sends faster than its moves are played is simply not read.
+ *
+ * Notifications may come from any thread. They are encoded into the
+ * connection's output buffer and the selector thread is woken to write
+ * it out; a connection whose unsent output passes the limit is closed.
+ * Spectators are the exception: each game has one GameBroadcast that
+ * encodes its events once for all of them.
+ *
+ * Errors on one connection close that connection only. If accepting
+ * fails, as when the process is out of file descriptors, accepting
+ * pauses for ACCEPT_RETRY_MILLIS while open connections carry on. Only
+ * close() stops the selector thread.
+ */
+public class GameServer implements Closeable {
+  private static final int MAX_OUTPUT_BYTES = 64 * 1024;
+  private static final long ACCEPT_RETRY_MILLIS = 50;
+
+  private final GameSessionManager games;
+  private final Executor gameExecutor;
+  private final Selector selector;
+  private final ServerSocketChannel serverChannel;
+  private final SelectionKey acceptKey;
+  private final Thread selectorThread;
+  // Connections to write out or to read again, handed to the selector thread
+  private final ConcurrentLinkedQueue<RemoteConnection> pendingWrites =
+      new ConcurrentLinkedQueue<RemoteConnection>();
+  private final ConcurrentLinkedQueue<RemoteConnection> pendingReads =
+      new ConcurrentLinkedQueue<RemoteConnection>();
+  private final ConcurrentLinkedQueue<GameBroadcast> pendingBroadcasts =
+      new ConcurrentLinkedQueue<GameBroadcast>();
+  private final AtomicBoolean wakeupPending = new AtomicBoolean();
+  // Guarded by itself
+  private final HashMap<String, GameBroadcast> broadcasts = new HashMap<String, GameBroadcast>();
+  private volatile boolean running;
+  // Written by the selector thread only
+  private volatile int connectionCount;
+  private volatile long acceptedCount;
+  // When to accept again after a failed accept, 0 while accepting; selector thread only
+  private long acceptResumeNanos;
+  private volatile int sendBufferBytes;
+
+  /**
+   * Binds to address; call start() to begin serving.
+   * @param gameExecutor runs the game calls of incoming frames, null to
+   * run them on the selector thread
+   */
+  public GameServer(GameSessionManager games, InetSocketAddress address,
+      Executor gameExecutor) throws IOException {
+    this.games = games;
+    this.gameExecutor = gameExecutor;
+    selector = Selector.open();
+    serverChannel = ServerSocketChannel.open();
+    try {
+      serverChannel.bind(address, 1024);
+      serverChannel.configureBlocking(false);
+      acceptKey = serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    } catch (IOException e) {
+      serverChannel.close();
+      selector.close();
+      throw e;
+    }
+    selectorThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        selectLoop();
+      }
+    }, "game-server");
+  }
+
+  public void start() {
+    running = true;
+    selectorThread.start();
+  }
+
+  public int getPort() {
+    return serverChannel.socket().getLocalPort();
+  }
+
+  /**
+   * Socket send buffer of connections accepted from now on, 0 (the
+   * default) for the system's. A small one holds less per connection,
+   * and lets a spectator that does not read fall behind sooner.
+   */
+  public void setSendBufferBytes(int bytes) {
+    sendBufferBytes = bytes;
+  }
+
+  GameSessionManager getGames() {
+    return games;
+  }
+
+  int getMaxOutputBytes() {
+    return MAX_OUTPUT_BYTES;
+  }
+
+  /**
+   * Connections open right now
+   */
+  public int getConnectionCount() {
+    return connectionCount;
+  }
+
+  /**
+   * Connections accepted since the server started
+   */
+  public long getAcceptedCount() {
+    return acceptedCount;
+  }
+
+  private void selectLoop() {
+    while (running) {
+      try {
+        selector.select((acceptResumeNanos == 0) ? 0 : ACCEPT_RETRY_MILLIS);
+      } catch (IOException e) {
+        // Nothing to do but select again; only close() ends the loop
+        continue;
+      } catch (ClosedSelectorException e) {
+        return;
+      }
+      wakeupPending.set(false);
+      resumeAccepting();
+      runPending();
+      Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+      while (keys.hasNext()) {
+        SelectionKey key = keys.next();
+        keys.remove();
+        if (!key.isValid()) {
+          continue;
+        }
+        if (key == acceptKey) {
+          accept();
+          continue;
+        }
+        RemoteConnection connection = (RemoteConnection) key.attachment();
+        try {
+          if (key.isWritable()) {
+            connection.writeOut();
+          }
+          if (key.isValid() && key.isReadable()) {
+            connection.readIn();
+          }
+        } catch (CancelledKeyException e) {
+          connection.close();
+        }
+      }
+    }
+  }
+
+  private void runPending() {
+    RemoteConnection connection;
+    while ((connection = pendingReads.poll()) != null) {
+      connection.resumeReading();
+    }
+    while ((connection = pendingWrites.poll()) != null) {
+      connection.writeOut();
+    }
+    GameBroadcast broadcast;
+    while ((broadcast = pendingBroadcasts.poll()) != null) {
+      broadcast.flush();
+    }
+  }
+
+  /**
+   * Accepts every connection waiting. A connection that cannot be set
+   * up is closed; if accept itself fails, accepting pauses.
+   */
+  private void accept() {
+    while (true) {
+      SocketChannel channel;
+      try {
+        channel = serverChannel.accept();
+      } catch (IOException e) {
+        // Likely to fail again straight away, so wait rather than spin
+        acceptKey.interestOps(0);
+        acceptResumeNanos = System.nanoTime()
+            + TimeUnit.MILLISECONDS.toNanos(ACCEPT_RETRY_MILLIS);
+        return;
+      }
+      if (channel == null) {
+        return;
+      }
+      try {
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        if (sendBufferBytes > 0) {
+          channel.setOption(StandardSocketOptions.SO_SNDBUF, sendBufferBytes);
+        }
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new RemoteConnection(this, channel, key));
+      } catch (IOException e) {
+        try {
+          channel.close();
+        } catch (IOException closeFailure) {
+          // Nothing left to do with it
+        }
+        continue;
+      }
+      connectionCount ++;
+      acceptedCount ++;
+    }
+  }
+
+  private void resumeAccepting() {
+    if (acceptResumeNanos != 0 && System.nanoTime() - acceptResumeNanos >= 0) {
+      acceptResumeNanos = 0;
+      acceptKey.interestOps(SelectionKey.OP_ACCEPT);
+    }
+  }
+
+  boolean isSelectorThread() {
+    return Thread.currentThread() == selectorThread;
+  }
+
+  /**
+   * Runs a call into a game, such as a connection's frames, on the game
+   * executor, or right here.
+   */
+  void dispatch(Runnable gameCall) {
+    if (gameExecutor == null) {
+      gameCall.run();
+    } else {
+      gameExecutor.execute(gameCall);
+    }
+  }
+
+  /**
+   * Has the selector thread write connection's output.
+   */
+  void requestWrite(RemoteConnection connection) {
+    if (isSelectorThread()) {
+      connection.writeOut();
+      return;
+    }
+    pendingWrites.add(connection);
+    wakeUp();
+  }
+
+  /**
+   * Has the selector thread read connection again.
+   */
+  void requestRead(RemoteConnection connection) {
+    if (isSelectorThread()) {
+      connection.resumeReading();
+      return;
+    }
+    pendingReads.add(connection);
+    wakeUp();
+  }
+
+  /**
+   * Has the selector thread write broadcast's new frames to its spectators.
+   */
+  void requestBroadcast(GameBroadcast broadcast) {
+    if (isSelectorThread()) {
+      broadcast.flush();
+      return;
+    }
+    pendingBroadcasts.add(broadcast);
+    wakeUp();
+  }
+
+  /**
+   * @return the broadcast of game, started if there is none yet
+   */
+  GameBroadcast broadcastFor(String gameId, IGameMode game) {
+    synchronized (broadcasts) {
+      GameBroadcast broadcast = broadcasts.get(gameId);
+      if (broadcast == null || broadcast.getGame() != game) {
+        broadcast = new GameBroadcast(this, game, gameId);
+        broadcasts.put(gameId, broadcast);
+      }
+      return broadcast;
+    }
+  }
+
+  /**
+   * Called on the selector thread when the last spectator has left a
+   * broadcast whose game is over. The broadcast stops listening to the
+   * game.
+   */
+  void broadcastFinished(final GameBroadcast broadcast) {
+    synchronized (broadcasts) {
+      if (broadcasts.get(broadcast.getGameId()) == broadcast) {
+        broadcasts.remove(broadcast.getGameId());
+      }
+    }
+    dispatch(new Runnable() {
+      @Override
+      public void run() {
+        broadcast.getGame().unregisterListener(broadcast);
+      }
+    });
+  }
+
+  /**
+   * Games being broadcast to spectators right now
+   */
+  public int getNumberOfBroadcasts() {
+    synchronized (broadcasts) {
+      return broadcasts.size();
+    }
+  }
+
+  private void wakeUp() {
+    if (wakeupPending.compareAndSet(false, true)) {
+      selector.wakeup();
+    }
+  }
+
+  /**
+   * Called on the selector thread when connection has closed.
+   */
+  void connectionClosed() {
+    connectionCount --;
+  }
+
+  /**
+   * Stops serving and closes every connection. Games stay in the
+   * session manager.
+   */
+  @Override
+  public void close() throws IOException {
+    running = false;
+    selector.wakeup();
+    try {
+      selectorThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    for (SelectionKey key : selector.keys()) {
+      key.channel().close();
+    }
+    selector.close();
+  }
+}
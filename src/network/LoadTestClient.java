@@ -0,0 +1,406 @@
+package network;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Simulates many remote players on one thread, for load testing a
+ * GameServer. Connections are paired up, each pair playing human vs
+ * human games of random moves back to back, registering for the next
+ * game as soon as one ends. Latency is measured from sending a move to
+ * receiving its MOVE_MADE, and sampled into a fixed-size buffer.
+ *
+ * Spectators, if any, all watch the games of the first pair, following
+ * it from game to game. Their lag is measured from the move being sent
+ * to the spectator receiving its MOVE_MADE; moves skipped by coalescing
+ * show up as BOARD frames instead.
+ */
+public class LoadTestClient {
+  // Connections allowed to be connecting at once
+  private static final int MAX_PENDING_CONNECTS = 512;
+  private static final int LATENCY_SAMPLES = 1 << 20;
+  // A spectator hearing nothing for this long after its game ended rejoins
+  private static final long STALLED_NANOS = 500000000L;
+  private static final int COLUMNS = 7;
+  private static final int ROWS = 6;
+
+  private final InetSocketAddress server;
+  private final int connections;
+  private final int spectators;
+  private final Random random;
+  private final long[] latencies = new long[LATENCY_SAMPLES];
+  private int latencyCount;
+  private final long[] lags = new long[LATENCY_SAMPLES];
+  private int lagCount;
+  // Game of the first pair, when each of its moves was sent
+  private int watchedRound;
+  private final long[] watchedMoveNanos = new long[ROWS * COLUMNS + 1];
+  private final ArrayList<Player> spectatorList = new ArrayList<Player>();
+  private long spectatorMoves;
+  private long spectatorBoards;
+  private long spectatorRejoins;
+  private int connected;
+  private int failedConnects;
+  private int disconnects;
+  private long movesPlayed;
+  private long gamesFinished;
+  private long lateMoves;
+  private long errors;
+
+  private class Player {
+    final SocketChannel channel;
+    final int pair;
+    final ByteBuffer input = ByteBuffer.allocate(256);
+    final ByteBuffer output = ByteBuffer.allocate(256);
+    final int[] heights = new int[COLUMNS];
+    SelectionKey key;
+    char piece;
+    int movesSeen;
+    int round;
+    long moveSentNanos;
+    long lastFrameNanos;
+
+    Player(SocketChannel channel, int pair) {
+      this.channel = channel;
+      this.pair = pair;
+    }
+  }
+
+  /**
+   * @param connections number of simulated players, rounded up to even
+   */
+  public LoadTestClient(InetSocketAddress server, int connections, long seed) {
+    this(server, connections, 0, seed);
+  }
+
+  /**
+   * @param connections number of simulated players, rounded up to even
+   * @param spectators number of connections watching the first pair's games
+   */
+  public LoadTestClient(InetSocketAddress server, int connections, int spectators, long seed) {
+    this.server = server;
+    this.connections = connections + connections % 2;
+    this.spectators = spectators;
+    random = new Random(seed);
+  }
+
+  /**
+   * Connects every player and plays for durationMillis after the last
+   * connection was made, then closes them all.
+   * @return report of the run
+   */
+  public String run(long durationMillis) throws IOException {
+    Selector selector = Selector.open();
+    try {
+      int opened = 0;
+      int pending = 0;
+      long connectStart = System.nanoTime();
+      long connectedNanos = 0;
+      long playStart = 0;
+      long deadline = Long.MAX_VALUE;
+      int total = connections + spectators;
+      while (System.nanoTime() < deadline) {
+        while (opened < total && pending < MAX_PENDING_CONNECTS) {
+          SocketChannel channel = SocketChannel.open();
+          channel.configureBlocking(false);
+          channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+          Player player = new Player(channel, (opened < connections) ? opened / 2 : -1);
+          if (player.pair == -1) {
+            spectatorList.add(player);
+          }
+          player.key = channel.register(selector, SelectionKey.OP_CONNECT, player);
+          channel.connect(server);
+          opened ++;
+          pending ++;
+        }
+        if (connected + failedConnects == total && playStart == 0) {
+          playStart = System.nanoTime();
+          connectedNanos = playStart - connectStart;
+          movesPlayed = 0;
+          gamesFinished = 0;
+          lateMoves = 0;
+          errors = 0;
+          latencyCount = 0;
+          lagCount = 0;
+          spectatorMoves = 0;
+          spectatorBoards = 0;
+          spectatorRejoins = 0;
+          deadline = playStart + durationMillis * 1000000L;
+        }
+        selector.select(100);
+        rejoinStalledSpectators();
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          Player player = (Player) key.attachment();
+          if (!key.isValid()) {
+            continue;
+          }
+          if (key.isConnectable()) {
+            pending --;
+            if (finishConnect(player)) {
+              connected ++;
+              register(player);
+            } else {
+              failedConnects ++;
+            }
+            continue;
+          }
+          if (key.isWritable()) {
+            flush(player);
+          }
+          if (key.isValid() && key.isReadable()) {
+            read(player);
+          }
+        }
+      }
+      long playNanos = System.nanoTime() - playStart;
+      return report(connectedNanos, playNanos);
+    } finally {
+      for (SelectionKey key : selector.keys()) {
+        key.channel().close();
+      }
+      selector.close();
+    }
+  }
+
+  private boolean finishConnect(Player player) {
+    try {
+      player.channel.finishConnect();
+      player.key.interestOps(SelectionKey.OP_READ);
+      return true;
+    } catch (IOException e) {
+      player.key.cancel();
+      try {
+        player.channel.close();
+      } catch (IOException ignored) {
+        // Already failed
+      }
+      return false;
+    }
+  }
+
+  private void register(Player player) {
+    boolean spectator = player.pair == -1;
+    String gameId = "load-" + (spectator ? 0 : player.pair) + "-" + player.round;
+    int idLength = Protocol.stringLength(gameId);
+    player.output.putShort((short) (3 + idLength)).put(Protocol.REGISTER)
+        .put((byte) 0).put((byte) (spectator ? 0 : 1));
+    Protocol.putString(player.output, gameId);
+    player.lastFrameNanos = System.nanoTime();
+    flush(player);
+  }
+
+  /**
+   * A spectator that joined a game after it ended, and after its players
+   * left it, waits for a game that never starts. Sends it to the first
+   * pair's current game instead.
+   */
+  private void rejoinStalledSpectators() {
+    long now = System.nanoTime();
+    for (int i = 0; i < spectatorList.size(); i ++) {
+      Player spectator = spectatorList.get(i);
+      if (spectator.round < watchedRound && spectator.channel.isConnected()
+          && now - spectator.lastFrameNanos > STALLED_NANOS) {
+        spectator.round = watchedRound;
+        spectatorRejoins ++;
+        register(spectator);
+      }
+    }
+  }
+
+  private void move(Player player) {
+    if (player.movesSeen == ROWS * COLUMNS) {
+      // Tied; the TIED frame follows
+      return;
+    }
+    int column = random.nextInt(COLUMNS);
+    while (player.heights[column] == ROWS) {
+      column = (column + 1) % COLUMNS;
+    }
+    player.output.putShort((short) 2).put(Protocol.MOVE).put((byte) column);
+    player.moveSentNanos = System.nanoTime();
+    if (player.pair == 0) {
+      watchedRound = player.round;
+      watchedMoveNanos[player.movesSeen + 1] = player.moveSentNanos;
+    }
+    flush(player);
+  }
+
+  private void flush(Player player) {
+    player.output.flip();
+    try {
+      player.channel.write(player.output);
+    } catch (IOException e) {
+      disconnect(player);
+      return;
+    }
+    player.output.compact();
+    int ops = SelectionKey.OP_READ;
+    if (player.output.position() > 0) {
+      ops |= SelectionKey.OP_WRITE;
+    }
+    player.key.interestOps(ops);
+  }
+
+  private void disconnect(Player player) {
+    if (player.key.isValid()) {
+      player.key.cancel();
+      disconnects ++;
+    }
+    try {
+      player.channel.close();
+    } catch (IOException e) {
+      // Already gone
+    }
+  }
+
+  private void read(Player player) {
+    try {
+      if (player.channel.read(player.input) < 0) {
+        disconnect(player);
+        return;
+      }
+    } catch (IOException e) {
+      disconnect(player);
+      return;
+    }
+    ByteBuffer input = player.input;
+    input.flip();
+    int length;
+    while ((length = Protocol.completeFrameLength(input)) != -1) {
+      int end = input.position() + length;
+      input.position(input.position() + Protocol.LENGTH_BYTES);
+      if (player.pair == -1) {
+        handleSpectatorFrame(player, input.get());
+      } else {
+        handleFrame(player, input.get());
+      }
+      input.position(end);
+    }
+    input.compact();
+  }
+
+  private void handleSpectatorFrame(Player spectator, byte type) {
+    ByteBuffer input = spectator.input;
+    long now = System.nanoTime();
+    spectator.lastFrameNanos = now;
+    if (type == Protocol.REGISTERED) {
+      spectator.movesSeen = -1;
+    } else if (type == Protocol.BOARD) {
+      // The first follows REGISTERED, any other stands for skipped moves
+      if (spectator.movesSeen != -1) {
+        spectatorBoards ++;
+      }
+      input.position(input.position() + 2);
+      spectator.movesSeen = input.getShort();
+    } else if (type == Protocol.MOVE_MADE) {
+      input.position(input.position() + 3);
+      int moveNumber = input.getShort();
+      spectator.movesSeen = moveNumber;
+      spectatorMoves ++;
+      if (spectator.round == watchedRound) {
+        lags[lagCount % LATENCY_SAMPLES] = now - watchedMoveNanos[moveNumber];
+        lagCount ++;
+      }
+    } else if (type == Protocol.WIN || type == Protocol.TIED) {
+      spectator.round ++;
+      register(spectator);
+    } else if (type != Protocol.START) {
+      errors ++;
+    }
+  }
+
+  private void handleFrame(Player player, byte type) {
+    ByteBuffer input = player.input;
+    if (type == Protocol.REGISTERED) {
+      player.piece = (char) input.get();
+      Arrays.fill(player.heights, 0);
+      player.movesSeen = 0;
+    } else if (type == Protocol.START) {
+      if (input.get() == 1) {
+        move(player);
+      }
+    } else if (type == Protocol.MOVE_MADE) {
+      int column = input.get();
+      input.get();
+      char piece = (char) input.get();
+      player.heights[column] ++;
+      player.movesSeen ++;
+      if (piece == player.piece) {
+        movesPlayed ++;
+        recordLatency(System.nanoTime() - player.moveSentNanos);
+      } else {
+        move(player);
+      }
+    } else if (type == Protocol.WIN || type == Protocol.TIED) {
+      // Counted by both players
+      gamesFinished ++;
+      player.round ++;
+      register(player);
+    } else if (type == Protocol.NOT_IN_PROGRESS) {
+      // Answered a winning move before its WIN arrived
+      lateMoves ++;
+    } else if (type != Protocol.BOARD) {
+      errors ++;
+    }
+  }
+
+  private void recordLatency(long nanos) {
+    latencies[latencyCount % LATENCY_SAMPLES] = nanos;
+    latencyCount ++;
+  }
+
+  private String report(long connectNanos, long playNanos) {
+    StringBuilder report = new StringBuilder();
+    report.append("connections\t").append(connected).append(" of ").append(connections + spectators)
+        .append(" in ").append(connectNanos / 1000000).append(" ms");
+    if (failedConnects > 0) {
+      report.append(", ").append(failedConnects).append(" failed");
+    }
+    report.append('\n');
+    report.append("disconnects\t").append(disconnects).append('\n');
+    report.append("moves\t").append(movesPlayed).append(" (")
+        .append(movesPlayed * 1000000000L / Math.max(1, playNanos)).append("/s)\n");
+    report.append("games\t").append(gamesFinished / 2).append('\n');
+    report.append("late moves\t").append(lateMoves).append('\n');
+    report.append("errors\t").append(errors).append('\n');
+    appendPercentiles(report, "latency us", latencies, latencyCount);
+    if (spectators > 0) {
+      report.append("spectator moves\t").append(spectatorMoves).append(" (")
+          .append(spectatorMoves * 1000000000L / Math.max(1, playNanos)).append("/s)\n");
+      report.append("spectator boards\t").append(spectatorBoards).append('\n');
+      report.append("spectator rejoins\t").append(spectatorRejoins).append('\n');
+      appendPercentiles(report, "spectator lag us", lags, lagCount);
+    }
+    return report.toString();
+  }
+
+  private static void appendPercentiles(StringBuilder report, String name,
+      long[] values, int count) {
+    int samples = Math.min(count, LATENCY_SAMPLES);
+    if (samples == 0) {
+      return;
+    }
+    long[] sorted = Arrays.copyOf(values, samples);
+    Arrays.sort(sorted);
+    report.append(name).append("\tp50 ").append(percentile(sorted, 0.5) / 1000)
+        .append("\tp99 ").append(percentile(sorted, 0.99) / 1000)
+        .append("\tp99.9 ").append(percentile(sorted, 0.999) / 1000)
+        .append("\tmax ").append(sorted[samples - 1] / 1000).append('\n');
+  }
+
+  private static long percentile(long[] sorted, double fraction) {
+    return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))];
+  }
+}
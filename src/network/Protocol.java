@@ -0,0 +1,143 @@
+package network;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import utilities.IBoardSnapshot;
+
+/**
+ * Frames of the network protocol. Every frame is an unsigned 16-bit
+ * length, then that many bytes: a type byte and its payload. Strings
+ * are a length byte followed by UTF-8.
+ *
+ * Client to server:
+ *   REGISTER    byte mode (0 human, 1 computer), byte 1 for a player or
+ *               0 for a spectator, string game ID; the game is created
+ *               if there is none under that ID. A player may
+ *               register again once its game is over, a spectator
+ *               at any time. Anything else from a spectator is
+ *               answered with INVALID_TURN.
+ *   MOVE        byte column
+ *   UNDO, REDO
+ *   REPLAY      byte ply
+ * A frame of an unknown type, or too short for its type, is answered
+ * with INVALID_MOVE.
+ *
+ * Server to client, one per IListener notification:
+ *   REGISTERED  byte piece, string listener ID; then a BOARD
+ *   REJECTED
+ *   START       byte 1 if the receiver is the player to go first
+ *   MOVE_MADE, MOVE_UNDONE
+ *               byte column, byte row (0 = top), byte piece,
+ *               short move number
+ *   WIN         byte piece
+ *   TIED
+ *   INVALID_MOVE, INVALID_TURN, NOT_IN_PROGRESS
+ *   BOARD       byte rows, byte columns, short move number, then one
+ *               piece byte per cell, row by row from the top
+ *
+ * Spectators get the same frames, except that a spectator fallen
+ * behind may be sent a BOARD in place of the moves it missed, and one
+ * catching up this way after a new game started gets no START.
+ */
+public final class Protocol {
+  public static final byte REGISTER = 0x01;
+  public static final byte MOVE = 0x02;
+  public static final byte UNDO = 0x03;
+  public static final byte REDO = 0x04;
+  public static final byte REPLAY = 0x05;
+
+  public static final byte REGISTERED = 0x41;
+  public static final byte REJECTED = 0x42;
+  public static final byte START = 0x43;
+  public static final byte MOVE_MADE = 0x44;
+  public static final byte MOVE_UNDONE = 0x45;
+  public static final byte WIN = 0x46;
+  public static final byte TIED = 0x47;
+  public static final byte INVALID_MOVE = 0x48;
+  public static final byte INVALID_TURN = 0x49;
+  public static final byte NOT_IN_PROGRESS = 0x4A;
+  public static final byte BOARD = 0x4B;
+
+  /** Bytes of the length field in front of every frame */
+  public static final int LENGTH_BYTES = 2;
+  /** Longest frame a client may send, length field included */
+  public static final int MAX_CLIENT_FRAME = 2 + 1 + 2 + 1 + 255;
+
+  private Protocol() {
+  }
+
+  /**
+   * Length of the frame at the buffer's position, -1 if it has not
+   * been read in full yet. The position is not moved.
+   */
+  public static int completeFrameLength(ByteBuffer buffer) {
+    if (buffer.remaining() < LENGTH_BYTES) {
+      return -1;
+    }
+    int length = LENGTH_BYTES + (buffer.getShort(buffer.position()) & 0xFFFF);
+    return (buffer.remaining() < length) ? -1 : length;
+  }
+
+  /**
+   * Fewest payload bytes, after the type byte, a frame of type from a
+   * client must carry; 0 for a type clients do not send.
+   */
+  public static int clientPayloadBytes(byte type) {
+    if (type == REGISTER) {
+      // Mode, player and an empty string at least
+      return 3;
+    }
+    if (type == MOVE || type == REPLAY) {
+      return 1;
+    }
+    return 0;
+  }
+
+  public static void putString(ByteBuffer buffer, String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    if (bytes.length > 255) {
+      throw new IllegalArgumentException("String longer than 255 bytes: " + value);
+    }
+    buffer.put((byte) bytes.length).put(bytes);
+  }
+
+  /**
+   * @throws java.nio.BufferUnderflowException if the string runs past
+   * the buffer's limit
+   */
+  public static String getString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.get() & 0xFF];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Bytes of the BOARD frame for board, length field included
+   */
+  public static int boardFrameLength(IBoardSnapshot board) {
+    return LENGTH_BYTES + 5 + board.getNumberOfRows() * board.getNumberOfCols();
+  }
+
+  /**
+   * Writes the BOARD frame for board.
+   */
+  public static void putBoard(ByteBuffer buffer, IBoardSnapshot board) {
+    int rows = board.getNumberOfRows();
+    int cols = board.getNumberOfCols();
+    buffer.putShort((short) (5 + rows * cols)).put(BOARD)
+        .put((byte) rows).put((byte) cols).putShort((short) board.getMoveNumber());
+    for (int row = 0; row < rows; row ++) {
+      for (int col = 0; col < cols; col ++) {
+        buffer.put((byte) board.getPiece(row, col));
+      }
+    }
+  }
+
+  /**
+   * Bytes putString(..) writes for value
+   */
+  public static int stringLength(String value) {
+    return 1 + value.getBytes(StandardCharsets.UTF_8).length;
+  }
+}
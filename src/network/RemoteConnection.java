@@ -0,0 +1,649 @@
+package network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+import model.GameSessionManager;
+import model.IGameMode;
+import utilities.IBoardSnapshot;
+import utilities.ListenerInformation;
+import utilities.Mode;
+import utilities.MoveEvent;
+import views.IListener;
+
+/**
+ * One client of the GameServer, standing in for it as the IListener
+ * of its game. Spectators are not listeners of the game themselves:
+ * they are written to from the game's GameBroadcast, after any frames
+ * of their own, in one gathering write.
+ *
+ * The input buffer is only touched by one thread at a time: the
+ * selector thread reads into it until a frame is complete, then stops
+ * reading and hands it to run(), which asks for reading to resume once
+ * the frames are handled. The output buffer is shared with every
+ * thread that notifies the listener, under the connection's lock.
+ */
+class RemoteConnection implements IListener, Runnable {
+  // A spectator further behind than this is moved to the latest board
+  private static final int COALESCE_BYTES = 1024;
+  private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+  private final GameServer server;
+  private final SocketChannel channel;
+  private final SelectionKey key;
+  private final ByteBuffer input = ByteBuffer.allocate(Protocol.MAX_CLIENT_FRAME);
+  private ByteBuffer output = ByteBuffer.allocate(128);
+  // Guarded by this
+  private boolean writeRequested;
+  private boolean holdWrites;
+  private boolean closeRequested;
+  private boolean closed;
+  // Written by the thread handling frames only
+  private volatile IGameMode game;
+  private String gameId;
+  private boolean player;
+  // Set while registering, before the game can notify from elsewhere
+  private volatile char piece = 'G';
+  private volatile String listenerId = "";
+  private volatile boolean gameOver;
+  // Broadcast to spectate, set before the REGISTERED frame is written; null for none
+  private volatile GameBroadcast nextBroadcast;
+  // Spectating state, on the selector thread only
+  private GameBroadcast broadcast;
+  private int spectatorIndex;
+  private GameBroadcast.Segment segment;
+  // Over segment, positioned at the next byte to send
+  private ByteBuffer view;
+  // Start of the frame view is positioned in
+  private int frameStart;
+  // Checkpoint board being sent, null if none
+  private ByteBuffer boardView;
+  private boolean waitingForWritable;
+  private final ByteBuffer[] gather = new ByteBuffer[3];
+
+  RemoteConnection(GameServer server, SocketChannel channel, SelectionKey key) {
+    this.server = server;
+    this.channel = channel;
+    this.key = key;
+  }
+
+  /**
+   * Reads what has arrived; on the selector thread.
+   */
+  void readIn() {
+    try {
+      if (channel.read(input) < 0) {
+        close();
+        return;
+      }
+    } catch (IOException e) {
+      close();
+      return;
+    }
+    input.flip();
+    boolean complete = Protocol.completeFrameLength(input) != -1;
+    input.compact();
+    if (complete) {
+      key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+      server.dispatch(this);
+    } else if (!input.hasRemaining()) {
+      // Longer than any valid frame
+      close();
+    }
+  }
+
+  /**
+   * Takes up reading after the frames were handled; on the selector thread.
+   */
+  void resumeReading() {
+    if (!key.isValid()) {
+      return;
+    }
+    key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+    input.flip();
+    boolean complete = Protocol.completeFrameLength(input) != -1;
+    input.compact();
+    if (complete) {
+      key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+      server.dispatch(this);
+    }
+  }
+
+  /**
+   * Handles every complete frame in the input buffer.
+   */
+  @Override
+  public void run() {
+    input.flip();
+    int length;
+    int limit = input.limit();
+    while ((length = Protocol.completeFrameLength(input)) != -1) {
+      int end = input.position() + length;
+      input.position(input.position() + Protocol.LENGTH_BYTES);
+      // The payload is read up to the end of its own frame, never into the next
+      input.limit(end);
+      try {
+        if (input.hasRemaining()) {
+          handleFrame(input.get());
+        } else {
+          sendFrame(Protocol.INVALID_MOVE);
+        }
+      } catch (RuntimeException e) {
+        sendFrame(Protocol.INVALID_MOVE);
+      }
+      input.limit(limit);
+      input.position(end);
+    }
+    input.compact();
+    server.requestRead(this);
+  }
+
+  /**
+   * Handles a frame whose payload is what remains of the input, which
+   * is limited to the frame. A payload too short for its type is
+   * answered with INVALID_MOVE.
+   */
+  private void handleFrame(byte type) {
+    if (input.remaining() < Protocol.clientPayloadBytes(type)) {
+      sendFrame(Protocol.INVALID_MOVE);
+      return;
+    }
+    if (type == Protocol.REGISTER) {
+      Mode mode = (input.get() == 0) ? Mode.HUMAN : Mode.COMPUTER;
+      boolean isPlayer = input.get() != 0;
+      register(mode, isPlayer, Protocol.getString(input));
+      return;
+    }
+    if (game == null) {
+      sendFrame(Protocol.NOT_IN_PROGRESS);
+      return;
+    }
+    if (!player) {
+      sendFrame(Protocol.INVALID_TURN);
+      return;
+    }
+    if (type == Protocol.MOVE) {
+      game.selectColumnForMove(this, input.get());
+    } else if (type == Protocol.UNDO) {
+      game.undoMove(this);
+    } else if (type == Protocol.REDO) {
+      game.redoMove(this);
+    } else if (type == Protocol.REPLAY) {
+      game.replayToPly(this, input.get() & 0xFF);
+    } else {
+      sendFrame(Protocol.INVALID_MOVE);
+    }
+  }
+
+  /**
+   * Joins or starts the game under id. A connection still in a game
+   * that is not over is turned away; a player leaving a finished game
+   * stops listening to it and ends it in the session manager.
+   */
+  private void register(Mode mode, boolean isPlayer, String id) {
+    GameSessionManager games = server.getGames();
+    if (game != null) {
+      if (player && !gameOver) {
+        sendFrame(Protocol.REJECTED);
+        return;
+      }
+      game.unregisterListener(this);
+      if (player) {
+        games.endGame(gameId);
+      }
+      game = null;
+    }
+    IGameMode newGame = games.getGame(id);
+    if (newGame == null) {
+      newGame = games.createGame(id, mode);
+      if (newGame == null) {
+        newGame = games.getGame(id);
+      }
+    }
+    if (newGame == null) {
+      sendFrame(Protocol.REJECTED);
+      return;
+    }
+    gameOver = false;
+    if (!isPlayer) {
+      spectate(newGame, id);
+      return;
+    }
+    // Events sent while registering stay in the buffer until the reply is in front of them
+    int eventsStart;
+    synchronized (this) {
+      holdWrites = true;
+      eventsStart = output.position();
+    }
+    ListenerInformation information = newGame.registerListener(this, isPlayer);
+    // Before taking this lock: the snapshot may need the game's lock, held while events come in
+    IBoardSnapshot board = newGame.getBoardSnapshot();
+    boolean closedMeanwhile;
+    synchronized (this) {
+      holdWrites = false;
+      closedMeanwhile = closed && information != null;
+      if (information == null) {
+        writeFrame(Protocol.REJECTED);
+      } else {
+        piece = information.getPieceColor();
+        listenerId = information.getId();
+        game = newGame;
+        gameId = id;
+        player = isPlayer;
+        nextBroadcast = null;
+        insertRegistered(eventsStart, board);
+      }
+      requestWrite();
+    }
+    if (closedMeanwhile) {
+      // close() may have looked for the game before it was set
+      newGame.unregisterListener(this);
+    }
+  }
+
+  /**
+   * Joins the broadcast of newGame. The board follows from the
+   * broadcast's checkpoint, after the REGISTERED frame.
+   */
+  private void spectate(IGameMode newGame, String id) {
+    GameBroadcast newBroadcast = server.broadcastFor(id, newGame);
+    synchronized (this) {
+      piece = 'G';
+      listenerId = newBroadcast.newSpectatorId();
+      game = newGame;
+      gameId = id;
+      player = false;
+      nextBroadcast = newBroadcast;
+      int idLength = Protocol.stringLength(listenerId);
+      if (reserve(Protocol.LENGTH_BYTES + 2 + idLength)) {
+        output.putShort((short) (2 + idLength)).put(Protocol.REGISTERED).put((byte) piece);
+        Protocol.putString(output, listenerId);
+      }
+      requestWrite();
+    }
+  }
+
+  /**
+   * Puts the REGISTERED and BOARD frames at eventsStart, ahead of
+   * anything the game sent since. Caller holds the lock.
+   */
+  private void insertRegistered(int eventsStart, IBoardSnapshot board) {
+    output.flip();
+    output.position(eventsStart);
+    ByteBuffer events = ByteBuffer.allocate(output.remaining());
+    events.put(output).flip();
+    output.limit(output.capacity());
+    output.position(eventsStart);
+    int idLength = Protocol.stringLength(listenerId);
+    if (!reserve(Protocol.LENGTH_BYTES + 2 + idLength)) {
+      return;
+    }
+    output.putShort((short) (2 + idLength)).put(Protocol.REGISTERED).put((byte) piece);
+    Protocol.putString(output, listenerId);
+    writeBoard(board);
+    if (reserve(events.remaining())) {
+      output.put(events);
+    }
+  }
+
+  private void writeBoard(IBoardSnapshot board) {
+    if (reserve(Protocol.boardFrameLength(board))) {
+      Protocol.putBoard(output, board);
+    }
+  }
+
+  /**
+   * Makes room for bytes more output, closing the connection if it
+   * would pass the server's limit. Caller holds the lock.
+   * @return false if the connection is closing
+   */
+  private boolean reserve(int bytes) {
+    if (closed || closeRequested) {
+      return false;
+    }
+    if (output.remaining() >= bytes) {
+      return true;
+    }
+    int needed = output.position() + bytes;
+    if (needed > server.getMaxOutputBytes()) {
+      // The client is not reading: drop it rather than buffer without end
+      closeRequested = true;
+      requestWrite();
+      return false;
+    }
+    int capacity = output.capacity();
+    while (capacity < needed) {
+      capacity *= 2;
+    }
+    ByteBuffer larger = ByteBuffer.allocate(Math.min(capacity, server.getMaxOutputBytes()));
+    output.flip();
+    larger.put(output);
+    output = larger;
+    return true;
+  }
+
+  private void writeFrame(byte type) {
+    if (reserve(Protocol.LENGTH_BYTES + 1)) {
+      output.putShort((short) 1).put(type);
+    }
+  }
+
+  private void requestWrite() {
+    if (!writeRequested && !holdWrites) {
+      writeRequested = true;
+      server.requestWrite(this);
+    }
+  }
+
+  private synchronized void sendFrame(byte type) {
+    writeFrame(type);
+    requestWrite();
+  }
+
+  private synchronized void sendFrame(byte type, byte value) {
+    if (reserve(Protocol.LENGTH_BYTES + 2)) {
+      output.putShort((short) 2).put(type).put(value);
+      requestWrite();
+    }
+  }
+
+  private synchronized void sendMove(byte type, MoveEvent move) {
+    if (reserve(Protocol.LENGTH_BYTES + 6)) {
+      output.putShort((short) 6).put(type)
+          .put((byte) move.getColumn()).put((byte) move.getRow())
+          .put((byte) move.getPiece()).putShort((short) move.getMoveNumber());
+      requestWrite();
+    }
+  }
+
+  /**
+   * Writes out what it can of the output, and of the broadcast for a
+   * spectator; on the selector thread. Nothing is written while a
+   * registration holds the output.
+   */
+  void writeOut() {
+    synchronized (this) {
+      writeRequested = false;
+      waitingForWritable = false;
+      if (closed) {
+        return;
+      }
+      if (holdWrites) {
+        // Registering: the reply goes in at eventsStart, so the buffer
+        // must not move; register() asks for the write once it is in
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        return;
+      }
+      boolean more = false;
+      if (!closeRequested) {
+        try {
+          more = (broadcast == null && nextBroadcast == null) ? writeOwnFrames()
+              : writeSpectatorFrames();
+        } catch (IOException e) {
+          closeRequested = true;
+        }
+      }
+      if (!closeRequested) {
+        if (more) {
+          // Socket full; carry on when it drains
+          waitingForWritable = true;
+          writeRequested = true;
+          key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+        } else {
+          key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        }
+        return;
+      }
+    }
+    close();
+  }
+
+  /**
+   * Called by the broadcast when it has new frames; on the selector thread.
+   */
+  void writeBroadcast() {
+    if (!waitingForWritable) {
+      writeOut();
+    }
+  }
+
+  /**
+   * @return true if output is left for when the socket drains
+   */
+  private boolean writeOwnFrames() throws IOException {
+    output.flip();
+    channel.write(output);
+    output.compact();
+    return output.position() > 0;
+  }
+
+  /**
+   * Writes the spectator's own frames, then the checkpoint board if it
+   * was moved to one, then the broadcast, in one gathering write. A
+   * frame only partly written goes out on its own first, so frames are
+   * never interleaved.
+   * @return true if anything is left for when the socket drains
+   */
+  private boolean writeSpectatorFrames() throws IOException {
+    if (boardView != null && boardView.position() > 0) {
+      channel.write(boardView);
+      if (boardView.hasRemaining()) {
+        return true;
+      }
+      boardView = null;
+    }
+    if (view != null && view.position() > frameStart) {
+      int frameEnd = frameStart + Protocol.LENGTH_BYTES + (view.getShort(frameStart) & 0xFFFF);
+      view.limit(frameEnd);
+      channel.write(view);
+      if (view.hasRemaining()) {
+        return true;
+      }
+      frameStart = frameEnd;
+    }
+    if (nextBroadcast != broadcast) {
+      switchBroadcast();
+    }
+    if (broadcast == null) {
+      return writeOwnFrames();
+    }
+    boolean more;
+    do {
+      GameBroadcast.Checkpoint checkpoint = broadcast.getCheckpoint();
+      if (isBehind(checkpoint)) {
+        catchUp(checkpoint);
+      } else if (segment.next != null && view.position() == segment.end) {
+        moveTo(segment.next, segment.next.start);
+      }
+      view.limit(segment.end);
+      output.flip();
+      gather[0] = output;
+      gather[1] = (boardView != null) ? boardView : EMPTY;
+      gather[2] = view;
+      channel.write(gather);
+      output.compact();
+      gather[1] = null;
+      if (boardView != null && !boardView.hasRemaining()) {
+        boardView = null;
+      }
+      int sent = view.position();
+      while (frameStart < sent) {
+        int frameEnd = frameStart + Protocol.LENGTH_BYTES + (view.getShort(frameStart) & 0xFFFF);
+        if (frameEnd > sent) {
+          break;
+        }
+        frameStart = frameEnd;
+      }
+      more = output.position() > 0 || boardView != null || view.hasRemaining();
+    } while (!more && segment.next != null);
+    return more;
+  }
+
+  /**
+   * @return true if more than COALESCE_BYTES of frames are left to send,
+   * and skipping to checkpoint would not go back
+   */
+  private boolean isBehind(GameBroadcast.Checkpoint checkpoint) {
+    GameBroadcast.Segment next = segment.next;
+    if (segment == checkpoint.segment) {
+      return segment.end - view.position() > COALESCE_BYTES
+          && checkpoint.offset > view.position();
+    }
+    if (next != checkpoint.segment) {
+      return true;
+    }
+    return segment.end - view.position() + next.end - next.start > COALESCE_BYTES;
+  }
+
+  private void moveTo(GameBroadcast.Segment newSegment, int offset) {
+    if (segment != newSegment) {
+      segment = newSegment;
+      view = segment.data.duplicate();
+    }
+    view.limit(view.capacity());
+    view.position(offset);
+    frameStart = offset;
+  }
+
+  /**
+   * Leaves the broadcast spectated so far for nextBroadcast, skipping
+   * whatever of the old one was not sent.
+   */
+  private void switchBroadcast() {
+    if (broadcast != null) {
+      broadcast.removeSpectator(this);
+    }
+    broadcast = nextBroadcast;
+    segment = null;
+    view = null;
+    boardView = null;
+    if (broadcast != null) {
+      broadcast.addSpectator(this);
+      catchUp(broadcast.getCheckpoint());
+    }
+  }
+
+  /**
+   * Skips to checkpoint: its board, then the frames that follow it.
+   */
+  private void catchUp(GameBroadcast.Checkpoint checkpoint) {
+    moveTo(checkpoint.segment, checkpoint.offset);
+    boardView = checkpoint.boardFrame().duplicate();
+  }
+
+  int getSpectatorIndex() {
+    return spectatorIndex;
+  }
+
+  void setSpectatorIndex(int index) {
+    spectatorIndex = index;
+  }
+
+  /**
+   * On the selector thread. A player leaves its game, forfeiting it if
+   * it is in progress; that takes the game's lock, so it is done on the
+   * game executor.
+   */
+  void close() {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+    }
+    final IGameMode lastGame = game;
+    if (lastGame != null) {
+      server.dispatch(new Runnable() {
+        @Override
+        public void run() {
+          lastGame.unregisterListener(RemoteConnection.this);
+        }
+      });
+    }
+    key.cancel();
+    if (broadcast != null) {
+      broadcast.removeSpectator(this);
+      broadcast = null;
+    }
+    try {
+      channel.close();
+    } catch (IOException e) {
+      // Nothing left to do with it
+    }
+    server.connectionClosed();
+  }
+
+  @Override
+  public void gameStartSignal(IListener firstPlayerToGo) {
+    sendFrame(Protocol.START, (byte) ((firstPlayerToGo == this) ? 1 : 0));
+  }
+
+  @Override
+  public void invalidTurnNotify() {
+    sendFrame(Protocol.INVALID_TURN);
+  }
+
+  @Override
+  public void invalidMoveNotify() {
+    sendFrame(Protocol.INVALID_MOVE);
+  }
+
+  @Override
+  public void gameNotInProgressNotify() {
+    sendFrame(Protocol.NOT_IN_PROGRESS);
+  }
+
+  /**
+   * Move without an event: send the whole board
+   */
+  @Override
+  public void correctMoveNotify() {
+    IGameMode currentGame = game;
+    if (currentGame != null) {
+      IBoardSnapshot board = currentGame.getBoardSnapshot();
+      synchronized (this) {
+        writeBoard(board);
+        requestWrite();
+      }
+    }
+  }
+
+  @Override
+  public void moveMadeNotify(MoveEvent move) {
+    sendMove(Protocol.MOVE_MADE, move);
+  }
+
+  @Override
+  public void moveUndoneNotify(MoveEvent undone) {
+    gameOver = false;
+    sendMove(Protocol.MOVE_UNDONE, undone);
+  }
+
+  @Override
+  public void gameWinNotify(char winnerPiece) {
+    gameOver = true;
+    sendFrame(Protocol.WIN, (byte) winnerPiece);
+  }
+
+  @Override
+  public void gameTied() {
+    gameOver = true;
+    sendFrame(Protocol.TIED);
+  }
+
+  @Override
+  public char getPiece() {
+    return piece;
+  }
+
+  @Override
+  public String getId() {
+    return listenerId;
+  }
+
+  @Override
+  public void shutFrame() {
+  }
+}
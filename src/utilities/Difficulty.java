@@ -0,0 +1,15 @@
+package utilities;
+
+/**
+ * Built-in computer players, from cheapest to strongest.
+ * RANDOM - any column that is not full.
+ * GREEDY - wins or blocks an immediate win, otherwise a random move
+ * that does not hand the opponent a win.
+ * ALPHA_BETA - alpha-beta search to a given depth.
+ * MCTS - Monte Carlo tree search with a given number of playouts.
+ * PERFECT - solves the game exactly once at most 28 cells are empty, and
+ * before that plays from a solved opening book or searches for a second.
+ */
+public enum Difficulty {
+  RANDOM, GREEDY, ALPHA_BETA, MCTS, PERFECT;
+}
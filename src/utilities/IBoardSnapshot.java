@@ -0,0 +1,22 @@
+package utilities;
+
+/**
+ * Read-only view of the board as of one move. Snapshots never change
+ * once made, so a single one can be handed to every listener.
+ */
+public interface IBoardSnapshot {
+  /**
+   * @return piece at row (0 is the top row) and col, ' ' if empty
+   */
+  char getPiece(int row, int col);
+
+  /**
+   * Number of moves made when the snapshot was taken - increases by
+   * one with every move, so it doubles as the snapshot's version
+   */
+  int getMoveNumber();
+
+  int getNumberOfRows();
+
+  int getNumberOfCols();
+}
@@ -0,0 +1,115 @@
+package utilities;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative values, such as latencies in
+ * nanoseconds, in the manner of HdrHistogram: below 16 every value has a
+ * bucket of its own, above that there are eight buckets to every power
+ * of two, so a percentile is known to within 1/8 of itself over the
+ * whole range of long. Each bucket is a LongAdder, so threads recording
+ * the same values at once do not contend; reading sums them up.
+ */
+public class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  // Values below this have a bucket each
+  private static final int LINEAR = 2 * SUB_BUCKETS;
+  private static final int BUCKETS = LINEAR + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final LongAdder[] counts = new LongAdder[BUCKETS];
+  private final LongAdder total = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  public LatencyHistogram() {
+    for (int i = 0; i < counts.length; i ++) {
+      counts[i] = new LongAdder();
+    }
+  }
+
+  private static int bucketOf(long value) {
+    if (value < LINEAR) {
+      return (int) Math.max(0, value);
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return LINEAR + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * @return largest value that falls in bucket
+   */
+  private static long highestIn(int bucket) {
+    if (bucket < LINEAR) {
+      return bucket;
+    }
+    int exponent = (bucket - LINEAR) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+    int subBucket = (bucket - LINEAR) % SUB_BUCKETS;
+    return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+  }
+
+  /**
+   * Adds value; negative values count as 0.
+   */
+  public void record(long value) {
+    counts[bucketOf(value)].increment();
+    total.add(Math.max(0, value));
+    max.accumulate(value);
+  }
+
+  public long getCount() {
+    long count = 0;
+    for (LongAdder bucket : counts) {
+      count += bucket.sum();
+    }
+    return count;
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+  public long getMean() {
+    long count = getCount();
+    return (count == 0) ? 0 : total.sum() / count;
+  }
+
+  /**
+   * Value at or below which fraction of the values recorded so far
+   * were, rounded up to the top of its bucket.
+   * @param fraction between 0 and 1, e.g. 0.99 for the 99th percentile
+   * @return 0 if nothing was recorded
+   */
+  public long percentile(double fraction) {
+    long[] snapshot = new long[counts.length];
+    long count = 0;
+    for (int i = 0; i < counts.length; i ++) {
+      snapshot[i] = counts[i].sum();
+      count += snapshot[i];
+    }
+    if (count == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(fraction * count));
+    long seen = 0;
+    for (int i = 0; i < snapshot.length; i ++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return Math.min(highestIn(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  /**
+   * Clears the histogram. Values recorded while it runs may be kept or lost.
+   */
+  public void reset() {
+    for (LongAdder bucket : counts) {
+      bucket.reset();
+    }
+    total.reset();
+    max.reset();
+  }
+}
@@ -0,0 +1,77 @@
+package utilities;
+
+/**
+ * A move that has just been made, or taken back, passed to listeners
+ * in place of a copy of the board. One instance is shared by all
+ * listeners, and the game reuses it for its next event, so the event
+ * a listener is handed is mutable: its column, row, piece and move
+ * number change under anyone who keeps it past the callback. Read it
+ * during the callback, and keep retain() to hold on to it; retained
+ * events never change. The board from getBoard() never changes either
+ * and can always be kept.
+ */
+public class MoveEvent {
+  private int column;
+  private int row;
+  private char piece;
+  private int moveNumber;
+  private IBoardSnapshot board;
+
+  public MoveEvent(int column, int row, char piece, IBoardSnapshot board) {
+    this.column = column;
+    this.row = row;
+    this.piece = piece;
+    this.moveNumber = board.getMoveNumber();
+    this.board = board;
+  }
+
+  /**
+   * For events that are reused: set(..) each one, and override getBoard().
+   */
+  protected MoveEvent() {
+  }
+
+  protected void set(int column, int row, char piece, int moveNumber) {
+    this.column = column;
+    this.row = row;
+    this.piece = piece;
+    this.moveNumber = moveNumber;
+  }
+
+  public int getColumn() {
+    return column;
+  }
+
+  /**
+   * Row the piece landed in, 0 being the top row
+   */
+  public int getRow() {
+    return row;
+  }
+
+  public char getPiece() {
+    return piece;
+  }
+
+  /**
+   * 1 for the first move of the game
+   */
+  public int getMoveNumber() {
+    return moveNumber;
+  }
+
+  /**
+   * Board just after the move, or without it if it was taken back
+   */
+  public IBoardSnapshot getBoard() {
+    return board;
+  }
+
+  /**
+   * @return this event, or an immutable copy of it if the game reuses
+   * this one; every caller gets the same copy
+   */
+  public MoveEvent retain() {
+    return this;
+  }
+}
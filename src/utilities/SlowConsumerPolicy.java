@@ -0,0 +1,17 @@
+package utilities;
+
+/**
+ * What an asynchronously notified listener does when its event
+ * queue is full.
+ * DROP - the new event is discarded.
+ * COALESCE - the listener is brought up to the latest state rather
+ * than kept in step: a new move or takeback replaces a board change
+ * at the end of the queue, and a win or tie is folded into the board
+ * change before it, to follow it. Failing that, the oldest event a
+ * later board makes stale goes to make room. A result that still holds
+ * is never discarded, nor is the newest board.
+ * DISCONNECT - the listener is dropped from the game's notifications.
+ */
+public enum SlowConsumerPolicy {
+  DROP, COALESCE, DISCONNECT;
+}
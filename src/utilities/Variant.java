@@ -0,0 +1,69 @@
+package utilities;
+
+/**
+ * Board size and the length of the line that wins. STANDARD is the
+ * usual 6 rows by 7 columns, four in a row; any other combination
+ * plays on a board sized for it.
+ */
+public final class Variant {
+  public static final Variant STANDARD = new Variant(6, 7, 4);
+
+  private final int rows;
+  private final int cols;
+  private final int connect;
+
+  /**
+   * @throws IllegalArgumentException if the board is empty or no line
+   * of connect pieces fits on it
+   */
+  public Variant(int rows, int cols, int connect) {
+    if (rows < 1 || cols < 1) {
+      throw new IllegalArgumentException("Board needs at least one row and column");
+    }
+    if (connect < 2 || connect > Math.max(rows, cols)) {
+      throw new IllegalArgumentException("Cannot connect " + connect + " on a "
+          + rows + "x" + cols + " board");
+    }
+    this.rows = rows;
+    this.cols = cols;
+    this.connect = connect;
+  }
+
+  public int getNumberOfRows() {
+    return rows;
+  }
+
+  public int getNumberOfCols() {
+    return cols;
+  }
+
+  /**
+   * Pieces in a row needed to win
+   */
+  public int getConnectLength() {
+    return connect;
+  }
+
+  public boolean isStandard() {
+    return equals(STANDARD);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (!(other instanceof Variant)) {
+      return false;
+    }
+    Variant variant = (Variant) other;
+    return rows == variant.rows && cols == variant.cols && connect == variant.connect;
+  }
+
+  @Override
+  public int hashCode() {
+    return (rows * 31 + cols) * 31 + connect;
+  }
+
+  @Override
+  public String toString() {
+    return rows + "x" + cols + " connect-" + connect;
+  }
+}
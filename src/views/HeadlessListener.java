@@ -0,0 +1,139 @@
+package views;
+
+import java.util.Arrays;
+
+import utilities.MoveEvent;
+
+/**
+ * Listener without a display, for driving games from code: it records
+ * what happened instead of showing it. Fields are volatile as events
+ * may arrive on a dispatch thread.
+ */
+public class HeadlessListener implements IListener {
+  private final char piece;
+  private final String id;
+  private volatile boolean gameStarted;
+  private volatile boolean gameOver;
+  private volatile char winner = ' ';
+  private volatile int lastColumn = -1;
+  private volatile int invalidMoves;
+  //Moves seen per column, over every game since construction
+  private long[] columnCounts = new long[0];
+
+  public HeadlessListener(char piece, String id) {
+    this.piece = piece;
+    this.id = id;
+  }
+
+  /**
+   * Clears the state of the last game, keeping the column counts.
+   */
+  public void reset() {
+    gameStarted = false;
+    gameOver = false;
+    winner = ' ';
+    lastColumn = -1;
+    invalidMoves = 0;
+  }
+
+  @Override
+  public void gameStartSignal(IListener firstPlayerToGo) {
+    gameStarted = true;
+  }
+
+  @Override
+  public void invalidTurnNotify() {
+    invalidMoves ++;
+  }
+
+  @Override
+  public void invalidMoveNotify() {
+    invalidMoves ++;
+  }
+
+  @Override
+  public void gameNotInProgressNotify() {
+  }
+
+  @Override
+  public void correctMoveNotify() {
+  }
+
+  @Override
+  public synchronized void moveMadeNotify(MoveEvent move) {
+    int column = move.getColumn();
+    if (column >= columnCounts.length) {
+      columnCounts = Arrays.copyOf(columnCounts,
+          move.getBoard().getNumberOfCols());
+    }
+    columnCounts[column] ++;
+    lastColumn = column;
+  }
+
+  @Override
+  public void moveUndoneNotify(MoveEvent undone) {
+    winner = ' ';
+    gameOver = false;
+  }
+
+  @Override
+  public void gameWinNotify(char winnerPiece) {
+    winner = winnerPiece;
+    gameOver = true;
+  }
+
+  @Override
+  public void gameTied() {
+    gameOver = true;
+  }
+
+  @Override
+  public char getPiece() {
+    return piece;
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  @Override
+  public void shutFrame() {
+  }
+
+  public boolean isGameStarted() {
+    return gameStarted;
+  }
+
+  public boolean isGameOver() {
+    return gameOver;
+  }
+
+  /**
+   * @return piece of the winner, ' ' while there is none or after a tie
+   */
+  public char getWinner() {
+    return winner;
+  }
+
+  /**
+   * @return column of the latest move, -1 before the first
+   */
+  public int getLastColumn() {
+    return lastColumn;
+  }
+
+  /**
+   * Invalid moves and turns in the current game
+   */
+  public int getInvalidMoves() {
+    return invalidMoves;
+  }
+
+  /**
+   * @return copy of the number of moves seen in each column
+   */
+  public synchronized long[] getColumnCounts() {
+    return columnCounts.clone();
+  }
+}
@@ -1,5 +1,7 @@
 package views;
 
+import utilities.MoveEvent;
+
 public interface IListener {
   /**Notify beginning of game (all required players registered)*/
   void gameStartSignal(IListener firstPlayerToGo);
@@ -16,6 +18,27 @@ public interface IListener {
   /**Send notification and board for views to update their UI*/
   void correctMoveNotify();
   
+  /**
+   * A move was made - the event carries the move and a snapshot of the
+   * board, shared by all listeners and valid until the callback
+   * returns: the game reuses the event for its next one, so a listener
+   * that keeps it sees it change. Keep move.retain() instead, which
+   * never changes. Listeners that only re-read the board can leave
+   * this to call correctMoveNotify().
+   */
+  default void moveMadeNotify(MoveEvent move) {
+    correctMoveNotify();
+  }
+  
+  /**
+   * A move was taken back - the event carries the move that was removed
+   * and a snapshot of the board without it. Like a move's event, it is
+   * only valid until the callback returns.
+   */
+  default void moveUndoneNotify(MoveEvent undone) {
+    correctMoveNotify();
+  }
+  
   /**Game has been won - display message accordingly*/
   void gameWinNotify(char winnerPiece);
   
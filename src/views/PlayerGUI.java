@@ -14,7 +14,9 @@ import javax.swing.JTextField;
 import javax.swing.table.DefaultTableModel;
 
 import model.IGameMode;
+import utilities.IBoardSnapshot;
 import utilities.ListenerInformation;
+import utilities.MoveEvent;
 
 public class PlayerGUI implements IListener {
 
@@ -35,6 +37,7 @@ public class PlayerGUI implements IListener {
   private final int numCols;
   private final char player1Color = 'Y';
   private final char player2Color = 'R';
+  private int lastMoveNumber = 0;
   
   public PlayerGUI(IGameMode model) {
     this.model = model;
@@ -51,6 +54,10 @@ public class PlayerGUI implements IListener {
 
     numRows = model.getNumberOfRows();
     numCols = model.getNumberOfCols();
+    if (!model.getVariant().isStandard()) {
+      frame.setTitle("CONNECT " + model.getVariant().getConnectLength()
+          + " (" + numRows + "x" + numCols + ")");
+    }
     
     emptyIcon = new ImageIcon(this.getClass().getResource("/images/unoccupied.png"));
     blackIcon = new ImageIcon(this.getClass().getResource("/images/black.png"));
@@ -159,16 +166,55 @@ public class PlayerGUI implements IListener {
 
   @Override
   public void correctMoveNotify() {
-    //Render board
-    char[][] board = model.getCopyOfGameBoard();
+    renderBoard(model.getBoardSnapshot());
+  }
+  
+  @Override
+  public void moveMadeNotify(MoveEvent move) {
+    //Only the new piece changed, unless moves were skipped - then redraw all
+    if (move.getMoveNumber() != lastMoveNumber + 1) {
+      renderBoard(move.getBoard());
+    } else {
+      renderCell(move.getPiece(), move.getRow(), move.getColumn());
+    }
+    lastMoveNumber = move.getMoveNumber();
+  }
+  
+  @Override
+  public void moveUndoneNotify(MoveEvent undone) {
+    //Also undoes the blacking out of a finished game
+    renderBoard(undone.getBoard());
+    submit.setEnabled(true);
+  }
+  
+  private void renderBoard(IBoardSnapshot board) {
+    for (int i = 0; i < board.getNumberOfRows(); i ++) {
+      for (int j = 0; j < board.getNumberOfCols(); j ++) {
+        renderCell(board.getPiece(i, j), i, j);
+      }
+    }
+    lastMoveNumber = board.getMoveNumber();
+  }
+  
+  private void renderCell(char piece, int row, int col) {
     char myColor = getPiece();
     char opponentColor = ((myColor == player1Color) ? player2Color : player1Color);
-    for (int i = 0; i < board.length; i ++) {
-      for (int j = 0; j < board[0].length; j ++) {
-        if (board[i][j] == myColor) {
-          table.setValueAt(myColorIcon, i, j);
-        } else if (board[i][j] == opponentColor) {
-          table.setValueAt(opponentColorIcon, i, j);
+    if (piece == myColor) {
+      table.setValueAt(myColorIcon, row, col);
+    } else if (piece == opponentColor) {
+      table.setValueAt(opponentColorIcon, row, col);
+    } else {
+      //Clears a piece taken back, or the black of a finished game
+      table.setValueAt(emptyIcon, row, col);
+    }
+  }
+  
+  private void blackOutEmptyCells() {
+    IBoardSnapshot board = model.getBoardSnapshot();
+    for (int i = 0; i < board.getNumberOfRows(); i ++) {
+      for (int j = 0; j < board.getNumberOfCols(); j ++) {
+        if (board.getPiece(i, j) == ' ') {
+          table.setValueAt(blackIcon, i, j);
         }
       }
     }
@@ -176,15 +222,7 @@ public class PlayerGUI implements IListener {
 
   @Override
   public void gameWinNotify(char winnerPiece) {
-
-    char[][] board = model.getCopyOfGameBoard();
-    for (int i = 0; i < board.length; i ++) {
-      for (int j = 0; j < board[0].length; j ++) {
-        if (board[i][j] == ' ') {
-          table.setValueAt(blackIcon, i, j);
-        }
-      }
-    }
+    blackOutEmptyCells();
     if (winnerPiece == getPiece()) {
       JOptionPane.showMessageDialog(frame, "Congratulations, you won!\n");
     } else {
@@ -196,14 +234,7 @@ public class PlayerGUI implements IListener {
   @Override
   public void gameTied() {
     JOptionPane.showMessageDialog(frame, "Game Over - No Winner!\n");
-    char[][] board = model.getCopyOfGameBoard();
-    for (int i = 0; i < board.length; i ++) {
-      for (int j = 0; j < board[0].length; j ++) {
-        if (board[i][j] == ' ') {
-          table.setValueAt(blackIcon, i, j);
-        }
-      }
-    }
+    blackOutEmptyCells();
     submit.setEnabled(false);
   }
 
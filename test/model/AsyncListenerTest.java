@@ -0,0 +1,220 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.Test;
+
+import utilities.MoveEvent;
+import utilities.SlowConsumerPolicy;
+import views.IListener;
+
+/**
+ * Each SlowConsumerPolicy on a full queue of one and of two events:
+ * events are queued while the executor is held back, then delivered
+ * in one go.
+ */
+public class AsyncListenerTest {
+  private final List<Runnable> tasks = new ArrayList<Runnable>();
+  private final Executor heldBack = new Executor() {
+    @Override
+    public void execute(Runnable task) {
+      tasks.add(task);
+    }
+  };
+  private final RecordingListener target = new RecordingListener();
+
+  /**
+   * Writes down each event it is sent as a short string.
+   */
+  private static class RecordingListener implements IListener {
+    final List<String> events = new ArrayList<String>();
+
+    @Override
+    public void gameStartSignal(IListener firstPlayerToGo) {
+      events.add("start");
+    }
+
+    @Override
+    public void moveMadeNotify(MoveEvent move) {
+      events.add("move " + move.getMoveNumber());
+    }
+
+    @Override
+    public void moveUndoneNotify(MoveEvent undone) {
+      events.add("undo " + undone.getMoveNumber());
+    }
+
+    @Override
+    public void gameWinNotify(char winnerPiece) {
+      events.add("win " + winnerPiece);
+    }
+
+    @Override
+    public void gameTied() {
+      events.add("tied");
+    }
+
+    @Override
+    public void invalidTurnNotify() {
+    }
+
+    @Override
+    public void invalidMoveNotify() {
+    }
+
+    @Override
+    public void gameNotInProgressNotify() {
+    }
+
+    @Override
+    public void correctMoveNotify() {
+      events.add("redraw");
+    }
+
+    @Override
+    public char getPiece() {
+      return 'Y';
+    }
+
+    @Override
+    public String getId() {
+      return "recording";
+    }
+
+    @Override
+    public void shutFrame() {
+    }
+  }
+
+  private AsyncListener listener(int capacity, SlowConsumerPolicy policy) {
+    return new AsyncListener(target, heldBack, capacity, policy);
+  }
+
+  /**
+   * Event for the moveNumber-th move of "0123456...", made or taken back.
+   */
+  private static MoveEvent move(int moveNumber) {
+    StringBuilder moves = new StringBuilder();
+    for (int i = 0; i < moveNumber; i ++) {
+      moves.append(i % BitBoard.COLS);
+    }
+    BitBoard board = BitBoard.fromMoves(moves.toString(), 'Y', 'R');
+    return new MoveEvent(0, 0, (moveNumber % 2 == 1) ? 'Y' : 'R', board.snapshot());
+  }
+
+  private List<String> deliver() {
+    for (Runnable task : tasks) {
+      task.run();
+    }
+    tasks.clear();
+    return target.events;
+  }
+
+  private static List<String> events(String... events) {
+    List<String> list = new ArrayList<String>();
+    for (String event : events) {
+      list.add(event);
+    }
+    return list;
+  }
+
+  @Test
+  public void dropKeepsOldestAtCapacityOne() {
+    AsyncListener async = listener(1, SlowConsumerPolicy.DROP);
+    async.moveMadeNotify(move(1));
+    async.moveMadeNotify(move(2));
+    async.gameWinNotify('R');
+    assertEquals(events("move 1"), deliver());
+    assertEquals(2, async.getDroppedCount());
+  }
+
+  @Test
+  public void dropKeepsOldestAtCapacityTwo() {
+    AsyncListener async = listener(2, SlowConsumerPolicy.DROP);
+    async.gameStartSignal(target);
+    async.moveMadeNotify(move(1));
+    async.moveMadeNotify(move(2));
+    async.gameTied();
+    assertEquals(events("start", "move 1"), deliver());
+    assertEquals(2, async.getDroppedCount());
+  }
+
+  @Test
+  public void coalesceKeepsLatestBoardAndResultAtCapacityOne() {
+    AsyncListener async = listener(1, SlowConsumerPolicy.COALESCE);
+    async.moveMadeNotify(move(1));
+    async.moveMadeNotify(move(2));
+    async.moveMadeNotify(move(3));
+    async.gameWinNotify('Y');
+    assertEquals(events("move 3", "win Y"), deliver());
+    assertEquals(2, async.getCoalescedCount());
+    assertEquals(0, async.getDroppedCount());
+  }
+
+  @Test
+  public void coalesceReplacesResultTakenBackAtCapacityOne() {
+    AsyncListener async = listener(1, SlowConsumerPolicy.COALESCE);
+    async.moveMadeNotify(move(7));
+    async.gameWinNotify('Y');
+    async.moveUndoneNotify(move(6));
+    assertEquals(events("undo 6"), deliver());
+  }
+
+  @Test
+  public void coalesceKeepsStartAndLatestBoardAtCapacityTwo() {
+    AsyncListener async = listener(2, SlowConsumerPolicy.COALESCE);
+    async.gameStartSignal(target);
+    async.moveMadeNotify(move(1));
+    async.moveMadeNotify(move(2));
+    async.moveMadeNotify(move(3));
+    async.gameTied();
+    assertEquals(events("start", "move 3", "tied"), deliver());
+    assertEquals(0, async.getDroppedCount());
+  }
+
+  /**
+   * A queue ending in a result has no board change at its end to fold
+   * a new move into: the older board makes way instead.
+   */
+  @Test
+  public void coalesceMakesRoomBehindResultAtCapacityTwo() {
+    AsyncListener async = listener(2, SlowConsumerPolicy.COALESCE);
+    async.moveMadeNotify(move(7));
+    async.gameWinNotify('Y');
+    async.moveUndoneNotify(move(6));
+    async.moveMadeNotify(move(7));
+    async.gameWinNotify('Y');
+    assertEquals(events("win Y", "move 7", "win Y"), deliver());
+    assertEquals(0, async.getDroppedCount());
+  }
+
+  @Test
+  public void disconnectAtCapacityOne() {
+    AsyncListener async = listener(1, SlowConsumerPolicy.DISCONNECT);
+    async.moveMadeNotify(move(1));
+    assertFalse(async.isDisconnected());
+    async.moveMadeNotify(move(2));
+    async.gameWinNotify('R');
+    assertTrue(async.isDisconnected());
+    assertEquals(events(), deliver());
+    assertEquals(2, async.getDroppedCount());
+  }
+
+  @Test
+  public void disconnectAtCapacityTwo() {
+    AsyncListener async = listener(2, SlowConsumerPolicy.DISCONNECT);
+    async.gameStartSignal(target);
+    async.moveMadeNotify(move(1));
+    assertFalse(async.isDisconnected());
+    async.moveMadeNotify(move(2));
+    assertTrue(async.isDisconnected());
+    assertEquals(events(), deliver());
+    assertEquals(3, async.getDroppedCount());
+  }
+}
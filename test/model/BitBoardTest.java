@@ -0,0 +1,122 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * BitBoard's four in a row tests against a naive scan of the cells, on
+ * seeded random boards.
+ */
+public class BitBoardTest {
+  private static final int BOARDS = 200000;
+  private static final int GAMES = 20000;
+  private static final int[][] DIRECTIONS = {{1, 0}, {0, 1}, {1, 1}, {1, -1}};
+
+  /**
+   * Random pieces anywhere on the board, not only reachable positions:
+   * alignmentThrough must find exactly the fours through the cell, and
+   * alignment any four at all.
+   */
+  @Test
+  public void alignmentMatchesNaiveScan() {
+    Random random = new Random(1);
+    for (int i = 0; i < BOARDS; i ++) {
+      long pos = random.nextLong() & random.nextLong() & BitBoard.BOARD_MASK;
+      int col = random.nextInt(BitBoard.COLS);
+      int row = random.nextInt(BitBoard.ROWS);
+      long cell = 1L << (col * BitBoard.H1 + row);
+      pos |= cell;
+      String at = Long.toHexString(pos) + " at " + col + "," + row;
+      assertEquals(at, naiveFourThrough(pos, col, row), BitBoard.alignmentThrough(pos, cell));
+      assertEquals(at, naiveFourAnywhere(pos), BitBoard.alignment(pos));
+    }
+  }
+
+  /**
+   * Random games played to a full board, past any win: after every move
+   * findWinner must report a win exactly when the rows of
+   * returnBoardCurrentState hold four in a row through the new piece.
+   */
+  @Test
+  public void findWinnerMatchesNaiveScan() {
+    Random random = new Random(1);
+    for (int game = 0; game < GAMES; game ++) {
+      BitBoard board = new BitBoard('Y', 'R');
+      char piece = 'Y';
+      while (!board.isGameOver()) {
+        int col = random.nextInt(BitBoard.COLS);
+        if (!board.updateBoardForMove(col, piece)) {
+          continue;
+        }
+        int row = board.getMostRecentRowFilled(col);
+        char[][] cells = board.returnBoardCurrentState();
+        char expected = naiveFourThrough(cells, row, col) ? piece : 'n';
+        assertEquals("game " + game + " column " + col, expected,
+            board.findWinner(row, col, 'Y', 'R', 'n'));
+        piece = (piece == 'Y') ? 'R' : 'Y';
+      }
+    }
+  }
+
+  private static boolean isSet(long pos, int col, int row) {
+    return col >= 0 && col < BitBoard.COLS && row >= 0 && row < BitBoard.ROWS
+        && ((pos >>> (col * BitBoard.H1 + row)) & 1) != 0;
+  }
+
+  /**
+   * rowFromBottom numbering, as in the bitboard
+   */
+  private static boolean naiveFourThrough(long pos, int col, int rowFromBottom) {
+    for (int[] direction : DIRECTIONS) {
+      for (int start = -3; start <= 0; start ++) {
+        int count = 0;
+        for (int step = start; step < start + 4; step ++) {
+          if (isSet(pos, col + step * direction[0], rowFromBottom + step * direction[1])) {
+            count ++;
+          }
+        }
+        if (count == 4) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean naiveFourAnywhere(long pos) {
+    for (int col = 0; col < BitBoard.COLS; col ++) {
+      for (int row = 0; row < BitBoard.ROWS; row ++) {
+        if (isSet(pos, col, row) && naiveFourThrough(pos, col, row)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * row numbered from the top, as in returnBoardCurrentState
+   */
+  private static boolean naiveFourThrough(char[][] cells, int row, int col) {
+    char piece = cells[row][col];
+    for (int[] direction : DIRECTIONS) {
+      for (int start = -3; start <= 0; start ++) {
+        int count = 0;
+        for (int step = start; step < start + 4; step ++) {
+          int r = row + step * direction[1];
+          int c = col + step * direction[0];
+          if (r >= 0 && r < BitBoard.ROWS && c >= 0 && c < BitBoard.COLS && cells[r][c] == piece) {
+            count ++;
+          }
+        }
+        if (count == 4) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+}
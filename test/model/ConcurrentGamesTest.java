@@ -0,0 +1,229 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Test;
+
+import utilities.Mode;
+import utilities.MoveEvent;
+import views.IListener;
+
+/**
+ * Many threads playing the same games at once, through the models
+ * GameFactory.newGameModel(..) hands out: every move must be applied
+ * in full and in turn, and seen by the listeners in order.
+ */
+public class ConcurrentGamesTest {
+  private static final int THREADS = 8;
+  private static final int GAMES = 24;
+  private static final int ATTEMPTS_PER_THREAD = 20000;
+
+  /**
+   * Player that checks each event follows on from the one before.
+   * Events come in under the game's lock, so no locking of its own.
+   */
+  private static class CheckingPlayer implements IListener {
+    private final char piece;
+    int ply;
+    int movesSeen;
+    int undosSeen;
+    int results;
+    boolean lastWasResult;
+    final List<String> errors = new ArrayList<String>();
+
+    CheckingPlayer(char piece) {
+      this.piece = piece;
+    }
+
+    @Override
+    public void moveMadeNotify(MoveEvent move) {
+      if (move.getMoveNumber() != ply + 1) {
+        errors.add("move " + move.getMoveNumber() + " after ply " + ply);
+      }
+      if (move.getPiece() != ((move.getMoveNumber() % 2 == 1) ? 'Y' : 'R')) {
+        errors.add("move " + move.getMoveNumber() + " played by " + move.getPiece());
+      }
+      ply = move.getMoveNumber();
+      movesSeen ++;
+      lastWasResult = false;
+    }
+
+    @Override
+    public void moveUndoneNotify(MoveEvent undone) {
+      if (undone.getMoveNumber() != ply - 1) {
+        errors.add("undo to " + undone.getMoveNumber() + " from ply " + ply);
+      }
+      ply = undone.getMoveNumber();
+      undosSeen ++;
+      lastWasResult = false;
+    }
+
+    @Override
+    public void gameWinNotify(char winnerPiece) {
+      if (winnerPiece != ((ply % 2 == 1) ? 'Y' : 'R')) {
+        errors.add(winnerPiece + " won with move " + ply);
+      }
+      results ++;
+      lastWasResult = true;
+    }
+
+    @Override
+    public void gameTied() {
+      if (ply != BitBoard.CELLS) {
+        errors.add("tie at ply " + ply);
+      }
+      results ++;
+      lastWasResult = true;
+    }
+
+    @Override
+    public void gameStartSignal(IListener firstPlayerToGo) {
+    }
+
+    @Override
+    public void invalidTurnNotify() {
+    }
+
+    @Override
+    public void invalidMoveNotify() {
+    }
+
+    @Override
+    public void gameNotInProgressNotify() {
+    }
+
+    @Override
+    public void correctMoveNotify() {
+    }
+
+    @Override
+    public char getPiece() {
+      return piece;
+    }
+
+    @Override
+    public String getId() {
+      return String.valueOf(piece);
+    }
+
+    @Override
+    public void shutFrame() {
+    }
+  }
+
+  @Test
+  public void humanGamesStayConsistent() throws InterruptedException {
+    GameModeBase[] games = new GameModeBase[GAMES];
+    CheckingPlayer[][] players = new CheckingPlayer[GAMES][2];
+    for (int i = 0; i < GAMES; i ++) {
+      games[i] = (GameModeBase) GameFactory.newGameModel(Mode.HUMAN);
+      players[i][0] = new CheckingPlayer('Y');
+      players[i][1] = new CheckingPlayer('R');
+      games[i].registerListener(players[i][0], true);
+      games[i].registerListener(players[i][1], true);
+    }
+    AtomicIntegerArray movesMade = play(games, players);
+
+    for (int i = 0; i < GAMES; i ++) {
+      for (CheckingPlayer player : players[i]) {
+        assertEquals(player.errors.toString(), 0, player.errors.size());
+        assertEquals(movesMade.get(i), player.movesSeen);
+        assertEquals(games[i].getPly(), player.movesSeen - player.undosSeen);
+        assertEquals(games[i].getPly(), player.ply);
+        assertEquals(!games[i].gameInProgress, player.lastWasResult);
+      }
+      assertPieces(games[i]);
+    }
+  }
+
+  @Test
+  public void computerGamesStayConsistent() throws InterruptedException {
+    GameModeBase[] games = new GameModeBase[GAMES];
+    CheckingPlayer[][] players = new CheckingPlayer[GAMES][1];
+    for (int i = 0; i < GAMES; i ++) {
+      GameModeHumanvsComputer game = (GameModeHumanvsComputer) GameFactory.newGameModel(Mode.COMPUTER);
+      game.setSearchDepth(2);
+      game.setEndgameSolverCells(0);
+      games[i] = game;
+      players[i][0] = new CheckingPlayer('Y');
+      game.registerListener(players[i][0], true);
+    }
+    play(games, players);
+
+    for (int i = 0; i < GAMES; i ++) {
+      CheckingPlayer player = players[i][0];
+      assertEquals(player.errors.toString(), 0, player.errors.size());
+      assertEquals(games[i].getPly(), player.movesSeen - player.undosSeen);
+      assertEquals(games[i].getPly(), player.ply);
+      assertEquals(!games[i].gameInProgress, player.lastWasResult);
+      assertTrue(player.movesSeen > 0);
+      assertPieces(games[i]);
+    }
+  }
+
+  /**
+   * Has THREADS threads make random moves, and now and then take one
+   * back, as random players of random games.
+   * @return moves made through selectColumnForMove, per game
+   */
+  private static AtomicIntegerArray play(final GameModeBase[] games,
+      final CheckingPlayer[][] players) throws InterruptedException {
+    final AtomicIntegerArray movesMade = new AtomicIntegerArray(games.length);
+    final CountDownLatch start = new CountDownLatch(1);
+    Thread[] threads = new Thread[THREADS];
+    for (int t = 0; t < THREADS; t ++) {
+      final Random random = new Random(t);
+      threads[t] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          for (int i = 0; i < ATTEMPTS_PER_THREAD; i ++) {
+            int game = random.nextInt(games.length);
+            CheckingPlayer player = players[game][random.nextInt(players[game].length)];
+            if (random.nextInt(20) == 0) {
+              games[game].undoMove(player);
+            } else if (games[game].selectColumnForMove(player, random.nextInt(BitBoard.COLS))) {
+              movesMade.incrementAndGet(game);
+            }
+          }
+        }
+      });
+      threads[t].start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    return movesMade;
+  }
+
+  /**
+   * The board holds the pieces of getPly() moves, taking turns.
+   */
+  private static void assertPieces(GameModeBase game) {
+    int yellow = 0;
+    int red = 0;
+    for (char[] row : game.getCopyOfGameBoard()) {
+      for (char cell : row) {
+        if (cell == 'Y') {
+          yellow ++;
+        } else if (cell == 'R') {
+          red ++;
+        }
+      }
+    }
+    assertEquals(game.getPly(), yellow + red);
+    assertEquals((game.getPly() + 1) / 2, yellow);
+  }
+}
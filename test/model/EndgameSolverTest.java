@@ -0,0 +1,112 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * EndgameSolver against the SolvedPositions corpus: the proven score,
+ * and the score reached by the move it picks, must match, within a
+ * ceiling on the nodes searched so that a slower solver fails too.
+ * Also a solver out of time, alone and as the computer's player.
+ */
+public class EndgameSolverTest {
+  private static final int[] CORPUS_EMPTY_CELLS = {12, 18, 24};
+  /**
+   * About four times the most nodes any position of CORPUS_EMPTY_CELLS
+   * takes today with a table of its own
+   */
+  private static final long[] MAX_NODES = {1500, 40000, 400000};
+  private static final long BUDGET_MILLIS = 50;
+  // Far more than BUDGET_MILLIS, far less than solving the empty board
+  private static final long MAX_MILLIS = 2000;
+
+  @Test
+  public void solvesCorpusWithTableOfItsOwn() {
+    for (int i = 0; i < CORPUS_EMPTY_CELLS.length; i ++) {
+      for (String[] position : SolvedPositions.withEmptyCells(CORPUS_EMPTY_CELLS[i])) {
+        checkSolved(new EndgameSolver(BitBoard.CELLS, 4), position, MAX_NODES[i]);
+      }
+    }
+  }
+
+  /**
+   * Solvers sharing one table, each starting where the others left
+   * off, must still agree with the corpus.
+   */
+  @Test
+  public void solvesCorpusWithSharedTable() {
+    TranspositionTable shared = new TranspositionTable(4);
+    for (int i = 0; i < CORPUS_EMPTY_CELLS.length; i ++) {
+      for (String[] position : SolvedPositions.withEmptyCells(CORPUS_EMPTY_CELLS[i])) {
+        checkSolved(new EndgameSolver(BitBoard.CELLS, shared), position, MAX_NODES[i]);
+        checkSolved(new EndgameSolver(BitBoard.CELLS, shared), position, MAX_NODES[i]);
+      }
+    }
+  }
+
+  /**
+   * Solves given up on the empty board and on the corpus must leave
+   * nothing in a shared table that a later full solve would trust.
+   */
+  @Test
+  public void givesUpWhenOutOfTime() {
+    TranspositionTable shared = new TranspositionTable(4);
+    EndgameSolver solver = new EndgameSolver(BitBoard.CELLS, shared);
+    solver.setTimeBudgetMillis(BUDGET_MILLIS);
+    long start = System.nanoTime();
+    assertEquals(-1, solver.findBestMove(BitBoard.fromMoves("", 'Y', 'R')));
+    assertTrue(solver.ranOutOfTime());
+    assertTrue((System.nanoTime() - start) / 1000000L < MAX_MILLIS);
+
+    solver.setTimeBudgetMillis(1);
+    for (String[] position : SolvedPositions.withEmptyCells(24)) {
+      solver.solve(BitBoard.fromMoves(position[0], 'Y', 'R'));
+    }
+    solver.setTimeBudgetMillis(0);
+    for (String[] position : SolvedPositions.withEmptyCells(24)) {
+      checkSolved(solver, position, Long.MAX_VALUE);
+      assertFalse(solver.ranOutOfTime());
+    }
+  }
+
+  /**
+   * The computer's player with the solver taking on the empty board:
+   * the solver runs out of its half of the budget and the search plays.
+   */
+  @Test
+  public void strategyKeepsToTimeBudget() {
+    AlphaBetaStrategy strategy = new AlphaBetaStrategy(BitBoard.CELLS,
+        new TranspositionTable(4), false);
+    strategy.setEndgameSolverCells(BitBoard.CELLS);
+    strategy.getSearch().setTimeBudgetMillis(BUDGET_MILLIS);
+    BitBoard board = BitBoard.fromMoves("", 'Y', 'R');
+    long start = System.nanoTime();
+    int column = strategy.chooseColumn(board, 0);
+    assertTrue((System.nanoTime() - start) / 1000000L < MAX_MILLIS);
+    assertTrue(strategy.getEndgameSolver().ranOutOfTime());
+    assertTrue(board.canPlay(column));
+    assertEquals(BUDGET_MILLIS, strategy.getSearch().getTimeBudgetMillis());
+  }
+
+  private static void checkSolved(EndgameSolver solver, String[] position, long maxNodes) {
+    BitBoard board = BitBoard.fromMoves(position[0], 'Y', 'R');
+    int expected = Integer.parseInt(position[1]);
+    int column = solver.findBestMove(board);
+    assertEquals(position[0], expected, solver.getScore());
+    long nodes = solver.getNodesSearched();
+    assertTrue(position[0] + " took " + nodes + " nodes", nodes <= maxNodes);
+    int side = board.getMoveCount() & 1;
+    int reached;
+    if (board.isWinningMove(column, side)) {
+      reached = (BitBoard.CELLS + 1 - board.getMoveCount()) / 2;
+    } else {
+      board.play(column, side);
+      reached = -solver.solve(board);
+      board.undo(column);
+    }
+    assertEquals(position[0] + " column " + column, expected, reached);
+  }
+}
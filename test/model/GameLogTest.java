@@ -0,0 +1,182 @@
+package model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import utilities.Mode;
+import utilities.Variant;
+
+/**
+ * GameLog written, then cut short or damaged the way a crash or a bad
+ * disk would, and read back with recover(..).
+ */
+public class GameLogTest {
+  private Path file;
+
+  @Before
+  public void createFile() throws IOException {
+    file = Files.createTempFile("game-log", ".bin");
+    Files.delete(file);
+  }
+
+  @After
+  public void deleteFile() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  @Test
+  public void replaysGamesInProgressAfterReopening() throws IOException {
+    GameLog log = GameLog.open(file, 1000, 0);
+    GameLog.GameRecord first = log.startGame("first", Mode.HUMAN, Variant.STANDARD);
+    GameLog.GameRecord ended = log.startGame("ended", Mode.COMPUTER, Variant.STANDARD);
+    first.logMove(3);
+    ended.logMove(2);
+    first.logMove(4);
+    ended.end();
+    log.close();
+
+    int firstNumber = recoverOne("first").getGameNumber();
+    log = GameLog.open(file, 1000, 0);
+    GameLog.GameRecord second = log.startGame("second", Mode.COMPUTER, new Variant(7, 9, 5));
+    second.logMove(8);
+    log.resumeGame(firstNumber).logMove(5);
+    log.close();
+
+    List<GameLog.RecoveredGame> games = GameLog.recover(file);
+    assertEquals(2, games.size());
+    assertGame(games.get(0), "first", Mode.HUMAN, 3, 4, 5);
+    assertGame(games.get(1), "second", Mode.COMPUTER, 8);
+    assertEquals(new Variant(7, 9, 5), games.get(1).getVariant());
+  }
+
+  @Test
+  public void replaysUndoneMoves() throws IOException {
+    GameLog log = GameLog.open(file, 1000, 0);
+    GameLog.GameRecord game = log.startGame("undo", Mode.HUMAN, Variant.STANDARD);
+    game.logMove(3);
+    game.logMove(4);
+    game.logUndo();
+    game.logMove(2);
+    log.flush();
+    game.logUndo();
+    game.logUndo();
+    game.logMove(6);
+    log.close();
+
+    assertGame(recoverOne("undo"), "undo", Mode.HUMAN, 6);
+  }
+
+  @Test
+  public void logsOneBytePerMove() throws IOException {
+    GameLog log = GameLog.open(file, 1000, 0);
+    GameLog.GameRecord game = log.startGame("bytes", Mode.HUMAN, Variant.STANDARD);
+    log.flush();
+    long before = log.getBytesWritten();
+    for (int i = 0; i < 20; i ++) {
+      game.logMove(i % 7);
+    }
+    log.flush();
+    // The block's length and CRC, then the moves
+    assertEquals(8 + 20, log.getBytesWritten() - before);
+    assertEquals(20, log.getMovesLogged());
+    log.close();
+  }
+
+  @Test
+  public void dropsTornBlockAsAWhole() throws IOException {
+    long goodBytes = writeTwoBlocks();
+    for (long size = goodBytes + 1; size < Files.size(file); size ++) {
+      Path torn = Files.createTempFile("game-log-torn", ".bin");
+      try {
+        copyTruncated(file, torn, size);
+        assertGame(GameLog.recover(torn).get(0), "torn", Mode.HUMAN, 3, 3);
+      } finally {
+        Files.delete(torn);
+      }
+    }
+  }
+
+  @Test
+  public void dropsBlockThatFailsItsCheck() throws IOException {
+    long goodBytes = writeTwoBlocks();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      // A move in the second block, after its length and CRC
+      channel.write(ByteBuffer.wrap(new byte[] {5}), goodBytes + 9);
+    }
+    assertGame(recoverOne("torn"), "torn", Mode.HUMAN, 3, 3);
+  }
+
+  @Test
+  public void truncatesZeroedTailOnOpen() throws IOException {
+    long goodBytes = writeTwoBlocks();
+    long fullBytes = Files.size(file);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE,
+        StandardOpenOption.APPEND)) {
+      channel.write(ByteBuffer.allocate(64));
+    }
+    assertGame(recoverOne("torn"), "torn", Mode.HUMAN, 3, 3, 4, 4, 2);
+
+    GameLog log = GameLog.open(file, 1000, 0);
+    log.close();
+    assertEquals(fullBytes, Files.size(file));
+    assertTrue(goodBytes < fullBytes);
+  }
+
+  /**
+   * Logs a game in two blocks, the first holding moves 3 and 3.
+   * @return length of the file up to the end of the first block
+   */
+  private long writeTwoBlocks() throws IOException {
+    GameLog log = GameLog.open(file, 1000, 0);
+    GameLog.GameRecord game = log.startGame("torn", Mode.HUMAN, Variant.STANDARD);
+    game.logMove(3);
+    game.logMove(3);
+    log.flush();
+    long goodBytes = Files.size(file);
+    game.logMove(4);
+    game.logMove(4);
+    game.logMove(2);
+    log.close();
+    return goodBytes;
+  }
+
+  private static void copyTruncated(Path from, Path to, long size) throws IOException {
+    byte[] bytes = Files.readAllBytes(from);
+    byte[] truncated = new byte[(int) size];
+    System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+    Files.write(to, truncated);
+  }
+
+  private GameLog.RecoveredGame recoverOne(String gameId) throws IOException {
+    for (GameLog.RecoveredGame game : GameLog.recover(file)) {
+      if (game.getGameId().equals(gameId)) {
+        return game;
+      }
+    }
+    throw new AssertionError("No game " + gameId + " in the log");
+  }
+
+  private static void assertGame(GameLog.RecoveredGame game, String gameId, Mode mode,
+      int... moves) {
+    assertEquals(gameId, game.getGameId());
+    assertEquals(mode, game.getMode());
+    byte[] expected = new byte[moves.length];
+    for (int i = 0; i < moves.length; i ++) {
+      expected[i] = (byte) moves[i];
+    }
+    assertArrayEquals(expected, game.getMoves());
+  }
+}
@@ -0,0 +1,187 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import utilities.IBoardSnapshot;
+import utilities.MoveEvent;
+import utilities.Variant;
+import views.IListener;
+
+/**
+ * A plugged-in strategy that asks for a column that cannot be played:
+ * the game plays a legal move in its place, and records and reports
+ * only that one.
+ */
+public class GameModeHumanvsComputerTest {
+
+  /**
+   * Asks for column -1, then 99, then always column 0, and counts the
+   * columns it asked for that could not be played.
+   */
+  private static class BadStrategy implements IComputerStrategy {
+    private int moves;
+    int illegal;
+
+    @Override
+    public int chooseColumn(IBoardSnapshot board, char piece, char opponentPiece) {
+      int column = (moves == 0) ? -1 : (moves == 1) ? 99 : 0;
+      moves ++;
+      if (column < 0 || column >= board.getNumberOfCols() || board.getPiece(0, column) != ' ') {
+        illegal ++;
+      }
+      return column;
+    }
+
+    @Override
+    public void newGame() {
+    }
+
+    @Override
+    public String getName() {
+      return "bad";
+    }
+
+    @Override
+    public long getLastThinkNanos() {
+      return 0;
+    }
+
+    @Override
+    public long getLastNodes() {
+      return 0;
+    }
+
+    @Override
+    public long getMovesPlayed() {
+      return moves;
+    }
+
+    @Override
+    public long getTotalThinkNanos() {
+      return 0;
+    }
+
+    @Override
+    public long getTotalNodes() {
+      return 0;
+    }
+
+    @Override
+    public long getMemoryBytes() {
+      return 0;
+    }
+  }
+
+  /**
+   * Writes down the columns of the moves it is told of.
+   */
+  private static class RecordingPlayer implements IListener {
+    final List<Integer> columns = new ArrayList<Integer>();
+
+    @Override
+    public void moveMadeNotify(MoveEvent move) {
+      columns.add(move.getColumn());
+    }
+
+    @Override
+    public void gameStartSignal(IListener firstPlayerToGo) {
+    }
+
+    @Override
+    public void invalidTurnNotify() {
+    }
+
+    @Override
+    public void invalidMoveNotify() {
+    }
+
+    @Override
+    public void gameNotInProgressNotify() {
+    }
+
+    @Override
+    public void correctMoveNotify() {
+    }
+
+    @Override
+    public void gameWinNotify(char winnerPiece) {
+    }
+
+    @Override
+    public void gameTied() {
+    }
+
+    @Override
+    public char getPiece() {
+      return 'Y';
+    }
+
+    @Override
+    public String getId() {
+      return "Y";
+    }
+
+    @Override
+    public void shutFrame() {
+    }
+  }
+
+  @Test
+  public void illegalColumnsOnStandardBoard() {
+    BadStrategy strategy = new BadStrategy();
+    checkIllegalColumns((GameModeBase) GameFactory.newGameModel(strategy), strategy);
+  }
+
+  /**
+   * Too big for a bitboard: a row of -1 would be out of GameBoard's bounds.
+   */
+  @Test
+  public void illegalColumnsOnCharBoard() {
+    BadStrategy strategy = new BadStrategy();
+    GameModeBase game = (GameModeBase) GameFactory.newGameModel(strategy);
+    game.setVariant(new Variant(10, 14, 4));
+    checkIllegalColumns(game, strategy);
+  }
+
+  /**
+   * The human shares column 0 with the computer until it is full, then
+   * plays the last column: too few moves for either side to line up
+   * four, and enough for the computer to ask for the full column.
+   */
+  private static void checkIllegalColumns(GameModeBase game, BadStrategy strategy) {
+    RecordingPlayer human = new RecordingPlayer();
+    game.registerListener(human, true);
+    int rows = game.getNumberOfRows();
+    int cols = game.getNumberOfCols();
+    int moves = rows / 2 + 2;
+    for (int i = 0; i < moves; i ++) {
+      int column = (game.getCopyOfGameBoard()[0][0] == ' ') ? 0 : cols - 1;
+      assertTrue(game.selectColumnForMove(human, column));
+    }
+    assertTrue(strategy.illegal >= 3);
+
+    int[] history = game.getMoveHistory();
+    assertEquals(2 * moves, history.length);
+    assertEquals(2 * moves, game.getPly());
+    assertEquals(2 * moves, human.columns.size());
+    for (int i = 0; i < history.length; i ++) {
+      assertTrue(history[i] >= 0 && history[i] < cols);
+      assertEquals(history[i], (int) human.columns.get(i));
+    }
+    int pieces = 0;
+    for (char[] row : game.getCopyOfGameBoard()) {
+      for (char cell : row) {
+        if (cell != ' ') {
+          pieces ++;
+        }
+      }
+    }
+    assertEquals(2 * moves, pieces);
+  }
+}
@@ -0,0 +1,133 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Test;
+
+import utilities.Mode;
+import views.IListener;
+
+/**
+ * Games of a GameSessionManager: recorded once in the game log, and
+ * evicted only once nobody plays or looks them up.
+ */
+public class GameSessionManagerTest {
+  private static final long IDLE_TIMEOUT_MILLIS = 300;
+  private static final long PLAY_INTERVAL_MILLIS = 50;
+
+  private static class QuietPlayer implements IListener {
+    private final char piece;
+
+    QuietPlayer(char piece) {
+      this.piece = piece;
+    }
+
+    @Override
+    public void gameStartSignal(IListener firstPlayerToGo) {
+    }
+
+    @Override
+    public void invalidTurnNotify() {
+    }
+
+    @Override
+    public void invalidMoveNotify() {
+    }
+
+    @Override
+    public void gameNotInProgressNotify() {
+    }
+
+    @Override
+    public void correctMoveNotify() {
+    }
+
+    @Override
+    public void gameWinNotify(char winnerPiece) {
+    }
+
+    @Override
+    public void gameTied() {
+    }
+
+    @Override
+    public char getPiece() {
+      return piece;
+    }
+
+    @Override
+    public String getId() {
+      return String.valueOf(piece);
+    }
+
+    @Override
+    public void shutFrame() {
+    }
+  }
+
+  @Test
+  public void duplicateGameIdLeavesNothingInLog() throws IOException {
+    Path file = Files.createTempFile("game-log", ".bin");
+    Files.delete(file);
+    try {
+      GameLog log = GameLog.open(file, 1000, 0);
+      GameSessionManager games = new GameSessionManager(IDLE_TIMEOUT_MILLIS, 1, 1);
+      games.setGameLog(log);
+      IGameMode first = games.createGame("first", Mode.HUMAN);
+      assertNull(games.createGame("first", Mode.HUMAN));
+      assertNotNull(games.createGame("second", Mode.HUMAN));
+      IListener yellow = new QuietPlayer('Y');
+      first.registerListener(yellow, true);
+      first.registerListener(new QuietPlayer('R'), true);
+      first.selectColumnForMove(yellow, 3);
+      log.close();
+
+      List<GameLog.RecoveredGame> recovered = GameLog.recover(file);
+      assertEquals(2, recovered.size());
+      assertEquals("first", recovered.get(0).getGameId());
+      assertEquals(1, recovered.get(0).getMoves().length);
+      // The rejected duplicate took no game number
+      assertEquals("second", recovered.get(1).getGameId());
+      assertEquals(1, recovered.get(1).getGameNumber());
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * A game played more often than the timeout, by a client holding its
+   * model and never looking it up, survives every eviction pass; once
+   * play stops, it goes.
+   */
+  @Test
+  public void evictsGameOnlyOncePlayStops() throws InterruptedException {
+    GameSessionManager games = new GameSessionManager(IDLE_TIMEOUT_MILLIS, 1, 1);
+    IGameMode played = games.createGame("played", Mode.HUMAN);
+    games.createGame("idle", Mode.HUMAN);
+    IListener yellow = new QuietPlayer('Y');
+    played.registerListener(yellow, true);
+    played.registerListener(new QuietPlayer('R'), true);
+
+    long playUntil = System.nanoTime() + 4 * IDLE_TIMEOUT_MILLIS * 1000000L;
+    while (System.nanoTime() < playUntil) {
+      played.selectColumnForMove(yellow, 3);
+      played.undoMove(yellow);
+      Thread.sleep(PLAY_INTERVAL_MILLIS);
+      games.evictIdleGames();
+    }
+    assertSame(played, games.getGame("played"));
+    assertNull(games.getGame("idle"));
+
+    Thread.sleep(2 * IDLE_TIMEOUT_MILLIS);
+    assertEquals(1, games.evictIdleGames());
+    assertEquals(0, games.getNumberOfGames());
+  }
+}
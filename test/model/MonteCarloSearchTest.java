@@ -0,0 +1,93 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * MonteCarloSearch against a random player, and its tree carried over
+ * from one move to the next.
+ */
+public class MonteCarloSearchTest {
+  private static final int GAMES = 10;
+  private static final long PLAYOUTS = 2000;
+
+  @Test
+  public void beatsRandomPlayer() {
+    int wins = 0;
+    for (int game = 0; game < GAMES; game ++) {
+      MonteCarloSearch search = new MonteCarloSearch(1 << 16, PLAYOUTS);
+      search.setSeed(game);
+      if (play(search, new Random(game), game % 2) == game % 2) {
+        wins ++;
+      }
+    }
+    assertTrue(wins + " wins in " + GAMES, wins >= GAMES - 1);
+  }
+
+  /**
+   * Plays one game, the search as side.
+   * @return side that won, -1 for a draw
+   */
+  private static int play(MonteCarloSearch search, Random random, int side) {
+    BitBoard board = new BitBoard('Y', 'R');
+    int toMove = 0;
+    while (board.getMoveCount() < BitBoard.CELLS) {
+      int col;
+      if (toMove == side) {
+        col = search.findBestMove(board, toMove);
+      } else {
+        do {
+          col = random.nextInt(BitBoard.COLS);
+        } while (!board.canPlay(col));
+      }
+      board.play(col, toMove);
+      if (board.hasWon(toMove)) {
+        return toMove;
+      }
+      toMove = 1 - toMove;
+    }
+    return -1;
+  }
+
+  @Test
+  public void keepsSubtreeOfReply() {
+    MonteCarloSearch search = new MonteCarloSearch(1 << 16, PLAYOUTS);
+    search.setSeed(1);
+    BitBoard board = new BitBoard('Y', 'R');
+    int first = search.findBestMove(board, 0);
+    assertEquals(0, search.getReusedVisits());
+    int nodesAfterFirst = search.getNodesUsed();
+    board.play(first, 0);
+    board.play(first, 1);
+
+    search.findBestMove(board, 0);
+    // The reply was explored below the first move, and its visits carry on
+    assertTrue(search.getReusedVisits() > 0);
+    assertTrue(search.getNodesUsed() > nodesAfterFirst);
+    assertEquals(PLAYOUTS, search.getPlayouts());
+  }
+
+  @Test
+  public void startsNewTreeForUnrelatedBoard() {
+    MonteCarloSearch search = new MonteCarloSearch(1 << 16, PLAYOUTS);
+    search.setSeed(1);
+    BitBoard board = new BitBoard('Y', 'R');
+    search.findBestMove(board, 0);
+    search.findBestMove(BitBoard.fromMoves("0011", 'Y', 'R'), 0);
+    assertEquals(0, search.getReusedVisits());
+  }
+
+  @Test
+  public void growsTreeOnlyAsNeeded() {
+    MonteCarloSearch search = new MonteCarloSearch(1 << 18, 100);
+    long before = search.getMemoryBytes();
+    search.findBestMove(new BitBoard('Y', 'R'), 0);
+    assertTrue(search.getNodesUsed() <= 101);
+    assertEquals(before, search.getMemoryBytes());
+    assertTrue(before < (1 << 18));
+  }
+}
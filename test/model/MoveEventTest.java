@@ -0,0 +1,152 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.Test;
+
+import utilities.Mode;
+import utilities.MoveEvent;
+import utilities.SlowConsumerPolicy;
+import views.IListener;
+
+/**
+ * The game reuses its MoveEvent from move to move: what a listener
+ * keeps with retain() must hold its values, and asynchronous listeners
+ * must all be handed the same copy.
+ */
+public class MoveEventTest {
+
+  /**
+   * Keeps every event it is sent, as handed to it and retained.
+   */
+  private static class KeepingListener implements IListener {
+    private final char piece;
+    final List<MoveEvent> handed = new ArrayList<MoveEvent>();
+    final List<MoveEvent> retained = new ArrayList<MoveEvent>();
+
+    KeepingListener(char piece) {
+      this.piece = piece;
+    }
+
+    @Override
+    public void moveMadeNotify(MoveEvent move) {
+      handed.add(move);
+      retained.add(move.retain());
+    }
+
+    @Override
+    public void moveUndoneNotify(MoveEvent undone) {
+      handed.add(undone);
+      retained.add(undone.retain());
+    }
+
+    @Override
+    public void gameStartSignal(IListener firstPlayerToGo) {
+    }
+
+    @Override
+    public void invalidTurnNotify() {
+    }
+
+    @Override
+    public void invalidMoveNotify() {
+    }
+
+    @Override
+    public void gameNotInProgressNotify() {
+    }
+
+    @Override
+    public void correctMoveNotify() {
+    }
+
+    @Override
+    public void gameWinNotify(char winnerPiece) {
+    }
+
+    @Override
+    public void gameTied() {
+    }
+
+    @Override
+    public char getPiece() {
+      return piece;
+    }
+
+    @Override
+    public String getId() {
+      return String.valueOf(piece);
+    }
+
+    @Override
+    public void shutFrame() {
+    }
+  }
+
+  @Test
+  public void retainedEventsKeepTheirValues() {
+    GameModeBase game = (GameModeBase) GameFactory.newGameModel(Mode.HUMAN);
+    KeepingListener yellow = new KeepingListener('Y');
+    KeepingListener red = new KeepingListener('R');
+    game.registerListener(yellow, true);
+    game.registerListener(red, true);
+    int[] columns = {3, 3, 4, 2};
+    for (int i = 0; i < columns.length; i ++) {
+      game.selectColumnForMove((i % 2 == 0) ? yellow : red, columns[i]);
+    }
+    game.undoMove(yellow);
+
+    // The reused event now holds the takeback
+    assertSame(yellow.handed.get(0), yellow.handed.get(4));
+    int[] rows = {BitBoard.ROWS - 1, BitBoard.ROWS - 2, BitBoard.ROWS - 1, BitBoard.ROWS - 1};
+    for (int i = 0; i < columns.length; i ++) {
+      MoveEvent move = yellow.retained.get(i);
+      assertEquals(columns[i], move.getColumn());
+      assertEquals(rows[i], move.getRow());
+      assertEquals((i % 2 == 0) ? 'Y' : 'R', move.getPiece());
+      assertEquals(i + 1, move.getMoveNumber());
+      assertEquals(i + 1, move.getBoard().getMoveNumber());
+      assertSame(move, red.retained.get(i));
+    }
+    MoveEvent undone = yellow.retained.get(4);
+    assertEquals(2, undone.getColumn());
+    assertEquals(3, undone.getMoveNumber());
+  }
+
+  @Test
+  public void asyncListenersShareOneCopy() {
+    final List<Runnable> tasks = new ArrayList<Runnable>();
+    GameModeBase game = (GameModeBase) GameFactory.newGameModel(Mode.HUMAN);
+    game.setAsyncDispatch(new Executor() {
+      @Override
+      public void execute(Runnable task) {
+        tasks.add(task);
+      }
+    }, 16, SlowConsumerPolicy.DROP);
+    KeepingListener yellow = new KeepingListener('Y');
+    KeepingListener red = new KeepingListener('R');
+    KeepingListener spectator = new KeepingListener('G');
+    game.registerListener(yellow, true);
+    game.registerListener(red, true);
+    game.registerListener(spectator, false);
+    game.selectColumnForMove(yellow, 3);
+    game.selectColumnForMove(red, 4);
+    for (Runnable task : tasks) {
+      task.run();
+    }
+
+    for (int i = 0; i < 2; i ++) {
+      MoveEvent move = yellow.handed.get(i);
+      assertSame(move, red.handed.get(i));
+      assertSame(move, spectator.handed.get(i));
+      assertSame(move, move.retain());
+      assertEquals(3 + i, move.getColumn());
+      assertEquals(i + 1, move.getMoveNumber());
+    }
+  }
+}
@@ -0,0 +1,181 @@
+package model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import utilities.Difficulty;
+import utilities.Mode;
+import utilities.MoveEvent;
+import views.IListener;
+
+/**
+ * Undo and redo: taking back a win, a new move dropping what could be
+ * redone, and the computer's reply taken back with the move it answered.
+ */
+public class MoveHistoryTest {
+
+  /**
+   * Writes down the results and takebacks it is sent.
+   */
+  private static class RecordingPlayer implements IListener {
+    private final char piece;
+    final List<String> events = new ArrayList<String>();
+
+    RecordingPlayer(char piece) {
+      this.piece = piece;
+    }
+
+    @Override
+    public void moveUndoneNotify(MoveEvent undone) {
+      events.add("undo " + undone.getColumn());
+    }
+
+    @Override
+    public void gameWinNotify(char winnerPiece) {
+      events.add("win " + winnerPiece);
+    }
+
+    @Override
+    public void gameNotInProgressNotify() {
+      events.add("not in progress");
+    }
+
+    @Override
+    public void gameStartSignal(IListener firstPlayerToGo) {
+    }
+
+    @Override
+    public void invalidTurnNotify() {
+    }
+
+    @Override
+    public void invalidMoveNotify() {
+    }
+
+    @Override
+    public void correctMoveNotify() {
+    }
+
+    @Override
+    public void gameTied() {
+    }
+
+    @Override
+    public char getPiece() {
+      return piece;
+    }
+
+    @Override
+    public String getId() {
+      return String.valueOf(piece);
+    }
+
+    @Override
+    public void shutFrame() {
+    }
+  }
+
+  private final RecordingPlayer yellow = new RecordingPlayer('Y');
+  private final RecordingPlayer red = new RecordingPlayer('R');
+
+  private IGameMode humanGame(int... columns) {
+    IGameMode game = GameFactory.newGameModel(Mode.HUMAN);
+    game.registerListener(yellow, true);
+    game.registerListener(red, true);
+    for (int i = 0; i < columns.length; i ++) {
+      assertTrue(game.selectColumnForMove((i % 2 == 0) ? yellow : red, columns[i]));
+    }
+    return game;
+  }
+
+  @Test
+  public void undoAfterWinResumesGame() {
+    IGameMode game = humanGame(0, 1, 0, 1, 0, 1, 0);
+    assertTrue(yellow.events.contains("win Y"));
+    assertFalse(game.selectColumnForMove(red, 2));
+    assertTrue(red.events.contains("not in progress"));
+
+    red.events.clear();
+    assertTrue(game.undoMove(red));
+    assertEquals(6, game.getPly());
+    // Yellow is to move again, and this time does not win
+    assertTrue(game.selectColumnForMove(yellow, 2));
+    assertTrue(game.selectColumnForMove(red, 0));
+    assertEquals(8, game.getPly());
+    assertFalse(red.events.contains("not in progress"));
+    assertFalse(red.events.contains("win Y"));
+  }
+
+  @Test
+  public void redoAfterWinEndsGameAgain() {
+    IGameMode game = humanGame(0, 1, 0, 1, 0, 1, 0);
+    assertTrue(game.undoMove(yellow));
+    yellow.events.clear();
+    assertTrue(game.redoMove(yellow));
+    assertEquals(7, game.getPly());
+    assertTrue(yellow.events.contains("win Y"));
+    assertFalse(game.selectColumnForMove(red, 2));
+  }
+
+  @Test
+  public void newMoveDropsRedo() {
+    IGameMode game = humanGame(3, 3, 4);
+    assertTrue(game.undoMove(yellow));
+    assertTrue(game.undoMove(yellow));
+    assertArrayEquals(new int[] {3, 3, 4}, game.getMoveHistory());
+
+    assertTrue(game.selectColumnForMove(red, 2));
+    assertArrayEquals(new int[] {3, 2}, game.getMoveHistory());
+    assertFalse(game.redoMove(yellow));
+    assertEquals(2, game.getPly());
+  }
+
+  @Test
+  public void sameMoveKeepsRedo() {
+    IGameMode game = humanGame(3, 3, 4);
+    assertTrue(game.undoMove(yellow));
+    assertTrue(game.undoMove(yellow));
+    assertTrue(game.selectColumnForMove(red, 3));
+    assertTrue(game.redoMove(yellow));
+    assertEquals(3, game.getPly());
+  }
+
+  @Test
+  public void undoAgainstComputerTakesBackBothPlies() {
+    IGameMode game = GameFactory.newGameModel(GameFactory.newStrategy(Difficulty.RANDOM, 0));
+    game.registerListener(yellow, true);
+    assertTrue(game.selectColumnForMove(yellow, 3));
+    assertTrue(game.selectColumnForMove(yellow, 3));
+    assertEquals(4, game.getPly());
+    int[] history = game.getMoveHistory();
+
+    assertTrue(game.undoMove(yellow));
+    assertEquals(2, game.getPly());
+    assertEquals(2, yellow.events.size());
+    assertEquals("undo " + history[3], yellow.events.get(0));
+    assertEquals("undo 3", yellow.events.get(1));
+    char[][] cells = game.getCopyOfGameBoard();
+    int pieces = 0;
+    for (char[] row : cells) {
+      for (char cell : row) {
+        if (cell != ' ') {
+          pieces ++;
+        }
+      }
+    }
+    assertEquals(2, pieces);
+
+    // Redo brings back the computer's reply too, and it is the human's turn
+    assertTrue(game.redoMove(yellow));
+    assertEquals(4, game.getPly());
+    assertTrue(game.selectColumnForMove(yellow, 3));
+    assertEquals(6, game.getPly());
+  }
+}
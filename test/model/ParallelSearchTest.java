@@ -0,0 +1,124 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/**
+ * Lazy SMP against the single-threaded search, and the shared table it
+ * relies on under concurrent stores.
+ */
+public class ParallelSearchTest {
+  private static final int THREADS = 4;
+  private static final int[] CORPUS_EMPTY_CELLS = {12, 18};
+  private static final long HAMMER_MILLIS = 300;
+
+  /**
+   * Searched to the end of the game, both searches must find the exact
+   * score, and the parallel one a move that keeps it. One table serves
+   * every thread and every position.
+   */
+  @Test
+  public void matchesSerialSearch() {
+    TranspositionTable shared = new TranspositionTable(4);
+    EndgameSolver solver = new EndgameSolver(BitBoard.CELLS, 4);
+    for (int emptyCells : CORPUS_EMPTY_CELLS) {
+      ParallelSearch parallel = new ParallelSearch(new AlphaBetaSearch(emptyCells, shared),
+          THREADS);
+      try {
+        for (String[] position : SolvedPositions.withEmptyCells(emptyCells)) {
+          BitBoard board = BitBoard.fromMoves(position[0], 'Y', 'R');
+          int side = board.getMoveCount() & 1;
+          AlphaBetaSearch serial = new AlphaBetaSearch(emptyCells, new TranspositionTable(4));
+          serial.findBestMove(board, side);
+          int column = parallel.findBestMove(board, side);
+          assertEquals(position[0], serial.getScore(), parallel.getScore());
+
+          int expected = Integer.signum(Integer.parseInt(position[1]));
+          assertEquals(position[0], expected, Integer.signum(parallel.getScore()));
+          int reached;
+          if (board.isWinningMove(column, side)) {
+            reached = 1;
+          } else {
+            board.play(column, side);
+            reached = -Integer.signum(solver.solve(board));
+            board.undo(column);
+          }
+          assertEquals(position[0] + " column " + column, expected, reached);
+        }
+      } finally {
+        parallel.shutdown();
+      }
+    }
+  }
+
+  /**
+   * Entries whose every field follows from the key, stored and probed
+   * by several threads over far more keys than slots: a probe must find
+   * the entry for its own key or nothing.
+   */
+  @Test
+  public void tableNeverReturnsAnotherKeysEntry() throws InterruptedException {
+    final TranspositionTable table = new TranspositionTable(1);
+    final AtomicLong found = new AtomicLong();
+    final AtomicLong wrong = new AtomicLong();
+    final long until = System.nanoTime() + HAMMER_MILLIS * 1000000L;
+    Thread[] threads = new Thread[THREADS];
+    for (int t = 0; t < THREADS; t ++) {
+      final Random random = new Random(t);
+      threads[t] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          long hits = 0;
+          long misses = 0;
+          while (System.nanoTime() < until) {
+            for (int i = 0; i < 1024; i ++) {
+              long key = 1 + random.nextInt(1 << 20);
+              table.store(key, depthOf(key), boundOf(key), scoreOf(key), moveOf(key));
+              long probed = 1 + random.nextInt(1 << 20);
+              long entry = table.probe(probed);
+              if (entry == 0) {
+                continue;
+              }
+              hits ++;
+              if (TranspositionTable.score(entry) != scoreOf(probed)
+                  || TranspositionTable.depth(entry) != depthOf(probed)
+                  || TranspositionTable.bound(entry) != boundOf(probed)
+                  || TranspositionTable.move(entry) != moveOf(probed)) {
+                misses ++;
+              }
+            }
+          }
+          found.addAndGet(hits);
+          wrong.addAndGet(misses);
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertTrue(found.get() > 0);
+    assertEquals(0, wrong.get());
+  }
+
+  private static int scoreOf(long key) {
+    return (int) (key * 2654435761L);
+  }
+
+  private static int depthOf(long key) {
+    return (int) (key % 43);
+  }
+
+  private static int boundOf(long key) {
+    return (int) (key % 3);
+  }
+
+  private static int moveOf(long key) {
+    return (int) (key % 8) - 1;
+  }
+}
@@ -0,0 +1,50 @@
+package model;
+
+/**
+ * Endgame positions with their exact scores, checked by
+ * EndgameSolverTest and timed by SolverBenchmark. Moves are zero-based
+ * columns with the first player moving first; scores are for the side
+ * to move, in the solver's units (positive win, 0 draw, negative loss).
+ *
+ * The 12-cell scores were checked against a plain minimax of the
+ * whole remaining tree, and the winner of every position against a
+ * full-depth AlphaBetaSearch.
+ */
+final class SolvedPositions {
+  static final String[][] EMPTY_12 = {
+    {"465643625456403534125540221066", "0"},
+    {"530032233530654600116211306521", "1"},
+    {"245104661531153451355330200661", "0"},
+    {"004055164241013622044512542016", "1"},
+  };
+
+  static final String[][] EMPTY_18 = {
+    {"665065361435434133055225", "0"},
+    {"431153222610320010555621", "0"},
+    {"123644634435221641106453", "1"},
+    {"344063621513454460540056", "2"},
+  };
+
+  static final String[][] EMPTY_24 = {
+    {"315440610554651123", "0"},
+    {"512411266123020310", "2"},
+    {"216602144362361100", "-1"},
+    {"010550021244203441", "1"},
+  };
+
+  private SolvedPositions() {
+  }
+
+  static String[][] withEmptyCells(int emptyCells) {
+    switch (emptyCells) {
+      case 12:
+        return EMPTY_12;
+      case 18:
+        return EMPTY_18;
+      case 24:
+        return EMPTY_24;
+      default:
+        throw new IllegalArgumentException("No positions with " + emptyCells + " empty cells");
+    }
+  }
+}
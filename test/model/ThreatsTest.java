@@ -0,0 +1,101 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Threats.scan on fixed positions, given as the columns played from
+ * the empty board. Each result is checked as the columns of its cells.
+ */
+public class ThreatsTest {
+  private final Threats threats = new Threats();
+
+  private void scan(String moves) {
+    BitBoard board = BitBoard.fromMoves(moves, 'Y', 'R');
+    threats.scan(board, board.getMoveCount() & 1);
+  }
+
+  /**
+   * Columns of cells, in order, as a string
+   */
+  private static String columns(long cells) {
+    StringBuilder columns = new StringBuilder();
+    while (cells != 0) {
+      columns.append(BitBoard.columnOf(cells & -cells));
+      cells &= cells - 1;
+    }
+    return columns.toString();
+  }
+
+  /**
+   * Y to move wins in column 3 at the bottom. R's three on the second
+   * row (an even threat) makes column 3 losing too, which only matters
+   * if Y did not win there first.
+   */
+  @Test
+  public void immediateWinAndEvenThreatAbove() {
+    scan("001122");
+    assertEquals("3", columns(threats.getWins()));
+    assertEquals("", columns(threats.getForcedBlocks()));
+    assertEquals("3", columns(threats.getLosingMoves()));
+    assertEquals("012456", columns(threats.getSafeMoves()));
+    assertEquals("0123456", columns(threats.getPlayable()));
+    assertFalse(threats.isLost());
+  }
+
+  /**
+   * R threatens to complete column 6: Y's only safe move is to block.
+   */
+  @Test
+  public void singleThreatForcesBlock() {
+    scan("061656");
+    assertEquals("", columns(threats.getWins()));
+    assertEquals("6", columns(threats.getForcedBlocks()));
+    assertEquals("", columns(threats.getLosingMoves()));
+    assertEquals("6", columns(threats.getSafeMoves()));
+    assertFalse(threats.isLost());
+  }
+
+  /**
+   * R's open three on the bottom row wins at both ends: Y can block
+   * only one of them.
+   */
+  @Test
+  public void doubleThreatIsLost() {
+    scan("626324");
+    assertEquals("", columns(threats.getWins()));
+    assertEquals("15", columns(threats.getForcedBlocks()));
+    assertEquals("", columns(threats.getSafeMoves()));
+    assertTrue(threats.isLost());
+  }
+
+  /**
+   * Y's three on the third row (an odd threat) is not playable yet:
+   * R must not fill the cell below it, in column 3.
+   */
+  @Test
+  public void oddThreatAboveMakesMoveBelowLosing() {
+    scan("04465546536");
+    assertEquals("", columns(threats.getWins()));
+    assertEquals("", columns(threats.getForcedBlocks()));
+    assertEquals("3", columns(threats.getLosingMoves()));
+    assertEquals("012456", columns(threats.getSafeMoves()));
+    assertFalse(threats.isLost());
+  }
+
+  /**
+   * A full column is not playable, and a scan forgets the one before.
+   */
+  @Test
+  public void fullColumnAndRescan() {
+    scan("001122");
+    scan("000000");
+    assertEquals("123456", columns(threats.getPlayable()));
+    assertEquals("", columns(threats.getWins()));
+    assertEquals("", columns(threats.getLosingMoves()));
+    assertEquals("123456", columns(threats.getSafeMoves()));
+  }
+}
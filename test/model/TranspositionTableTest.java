@@ -0,0 +1,47 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * TranspositionTable's hit, miss and collision counters, as added by
+ * the searches that probe the table.
+ */
+public class TranspositionTableTest {
+
+  @Test
+  public void collisionIsOnlyAnotherPositionInTheSlot() {
+    TranspositionTable table = new TranspositionTable(1);
+    long key = 12345;
+    assertFalse(table.isCollision(key));
+    table.store(key, 3, TranspositionTable.BOUND_EXACT, 7, 2);
+    assertFalse(table.isCollision(key));
+
+    long other = key + 1;
+    while (!table.isCollision(other)) {
+      other ++;
+    }
+    assertEquals(0, table.probe(other));
+    assertEquals(7, TranspositionTable.score(table.probe(key)));
+  }
+
+  @Test
+  public void searchAddsItsProbesWhenDone() {
+    // A small table fills up, so the search runs into other positions
+    TranspositionTable table = new TranspositionTable(1);
+    AlphaBetaSearch search = new AlphaBetaSearch(10, table);
+    search.findBestMove(new BitBoard('Y', 'R'), 0);
+    assertTrue(table.getHits() > 0);
+    assertTrue(table.getMisses() > 0);
+    assertTrue(table.getCollisions() > 0);
+    assertTrue(table.getCollisions() <= table.getMisses());
+
+    table.resetCounters();
+    assertEquals(0, table.getHits());
+    assertEquals(0, table.getMisses());
+    assertEquals(0, table.getCollisions());
+  }
+}
@@ -0,0 +1,92 @@
+package model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import utilities.IBoardSnapshot;
+import utilities.Variant;
+
+/**
+ * WideBitBoard against GameBoard on seeded random games over variants
+ * up to 128 bits: both must agree after every move.
+ */
+public class WideBitBoardTest {
+  private static final int GAMES_PER_VARIANT = 300;
+  private static final Variant[] VARIANTS = {
+    Variant.STANDARD,
+    new Variant(7, 8, 4),
+    new Variant(7, 9, 4),
+    new Variant(9, 12, 5),
+    new Variant(11, 10, 5),
+    new Variant(15, 8, 6),
+    new Variant(4, 5, 4),
+    new Variant(6, 7, 3),
+    new Variant(1, 64, 4),
+    new Variant(3, 32, 4),
+  };
+
+  @Test
+  public void agreesWithGameBoard() {
+    Random random = new Random(18);
+    for (Variant variant : VARIANTS) {
+      for (int game = 0; game < GAMES_PER_VARIANT; game ++) {
+        playGame(variant, random);
+      }
+    }
+  }
+
+  private static void playGame(Variant variant, Random random) {
+    WideBitBoard wide = new WideBitBoard(variant, 'Y', 'R');
+    GameBoard naive = new GameBoard(variant);
+    String at = variant.toString();
+    int cols = variant.getNumberOfCols();
+    char piece = 'Y';
+    char winner = 'n';
+    while (winner == 'n' && !naive.isGameOver()) {
+      assertEquals(at, naive.computerFindNextWinMove('Y'), wide.computerFindNextWinMove('Y'));
+      assertEquals(at, naive.computerFindNextWinMove('R'), wide.computerFindNextWinMove('R'));
+      int col = random.nextInt(cols);
+      assertEquals(at, naive.getFirstEmptyRowFromBottom(col), wide.getFirstEmptyRowFromBottom(col));
+      boolean played = naive.updateBoardForMove(col, piece);
+      assertEquals(at, played, wide.updateBoardForMove(col, piece));
+      if (!played) {
+        continue;
+      }
+      int row = naive.getMostRecentRowFilled(col);
+      assertEquals(at, row, wide.getMostRecentRowFilled(col));
+      winner = naive.findWinner(row, col, 'Y', 'R', 'n');
+      assertEquals(at, winner, wide.findWinner(row, col, 'Y', 'R', 'n'));
+      assertEquals(at, naive.isGameOver(), wide.isGameOver());
+      assertSameBoard(at, naive, wide);
+
+      // Take the move back and make it again
+      if (random.nextInt(4) == 0) {
+        assertEquals(at, true, naive.undoMove(col));
+        assertEquals(at, true, wide.undoMove(col));
+        assertSameBoard(at, naive, wide);
+        naive.updateBoardForMove(col, piece);
+        wide.updateBoardForMove(col, piece);
+      }
+      piece = (piece == 'Y') ? 'R' : 'Y';
+    }
+  }
+
+  private static void assertSameBoard(String at, IGameBoard naive, IGameBoard wide) {
+    char[][] expected = naive.returnBoardCurrentState();
+    assertArrayEquals(at, expected, wide.returnBoardCurrentState());
+    IBoardSnapshot expectedSnapshot = naive.snapshot();
+    IBoardSnapshot snapshot = wide.snapshot();
+    assertEquals(at, expectedSnapshot.getMoveNumber(), snapshot.getMoveNumber());
+    assertEquals(at, expected.length, snapshot.getNumberOfRows());
+    assertEquals(at, expected[0].length, snapshot.getNumberOfCols());
+    for (int row = 0; row < expected.length; row ++) {
+      for (int col = 0; col < expected[0].length; col ++) {
+        assertEquals(at, expectedSnapshot.getPiece(row, col), snapshot.getPiece(row, col));
+      }
+    }
+  }
+}
@@ -0,0 +1,226 @@
+package network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import model.GameSessionManager;
+
+/**
+ * Spectators of a game whose broadcast runs over several segments: one
+ * reading along and one not reading until the game is over, on sockets
+ * small enough for it to fall behind. Both must end with the game's
+ * board and its result; the one behind by way of a checkpoint BOARD.
+ */
+public class GameBroadcastTest {
+  private static final int SOCKET_BUFFER_BYTES = 4096;
+  private static final int ROWS = 6;
+  private static final int COLS = 7;
+  // A tied game
+  private static final String TIE = "331650114266141231434452363064260555520200";
+  // Yellow stacks column 3 and wins
+  private static final String WIN = "3434343";
+
+  private GameServer server;
+  private TestClient yellow;
+  private TestClient red;
+
+  /**
+   * What a spectator has been told: the board and its move number.
+   */
+  private static class Watched {
+    final char[][] cells = new char[ROWS][COLS];
+    int moveNumber = -1;
+    int boards;
+    int frames;
+    byte result;
+
+    /**
+     * Reads frames up to and including the game's result, checking that
+     * each follows from the last.
+     */
+    void readGame(TestClient spectator) throws IOException {
+      while (result == 0) {
+        readFrame(spectator);
+      }
+    }
+
+    void readFrame(TestClient spectator) throws IOException {
+      ByteBuffer frame = spectator.read();
+      byte type = frame.get();
+      frames ++;
+      if (type == Protocol.BOARD) {
+        assertEquals(ROWS, frame.get());
+        assertEquals(COLS, frame.get());
+        moveNumber = frame.getShort();
+        for (int row = 0; row < ROWS; row ++) {
+          for (int col = 0; col < COLS; col ++) {
+            cells[row][col] = (char) frame.get();
+          }
+        }
+        boards ++;
+        return;
+      }
+      // Nothing may come before the first board
+      assertTrue(moveNumber >= 0);
+      if (type == Protocol.MOVE_MADE || type == Protocol.MOVE_UNDONE) {
+        int col = frame.get();
+        int row = frame.get();
+        char piece = (char) frame.get();
+        int number = frame.getShort();
+        boolean top = row == 0 || cells[row - 1][col] == ' ';
+        if (type == Protocol.MOVE_MADE) {
+          assertEquals(moveNumber + 1, number);
+          assertEquals(' ', cells[row][col]);
+          assertTrue(row == ROWS - 1 || cells[row + 1][col] != ' ');
+          cells[row][col] = piece;
+        } else {
+          assertEquals(moveNumber - 1, number);
+          assertEquals(piece, cells[row][col]);
+          assertTrue(top);
+          cells[row][col] = ' ';
+        }
+        moveNumber = number;
+      } else if (type == Protocol.WIN || type == Protocol.TIED) {
+        result = type;
+      } else {
+        assertEquals(Protocol.START, type);
+      }
+    }
+
+    void assertBoard(String moves) {
+      char[][] expected = new char[ROWS][COLS];
+      int[] heights = new int[COLS];
+      for (char[] row : expected) {
+        Arrays.fill(row, ' ');
+      }
+      for (int i = 0; i < moves.length(); i ++) {
+        int col = moves.charAt(i) - '0';
+        expected[ROWS - 1 - heights[col] ++][col] = (i % 2 == 0) ? 'Y' : 'R';
+      }
+      assertEquals(moves.length(), moveNumber);
+      for (int row = 0; row < ROWS; row ++) {
+        assertEquals(new String(expected[row]), new String(cells[row]));
+      }
+    }
+  }
+
+  @Before
+  public void startGame() throws IOException {
+    server = new GameServer(new GameSessionManager(60000, 1),
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), null);
+    server.setSendBufferBytes(SOCKET_BUFFER_BYTES);
+    server.start();
+    yellow = new TestClient(server);
+    red = new TestClient(server);
+    for (TestClient player : new TestClient[] {yellow, red}) {
+      player.register(true, "watched");
+      player.read(Protocol.REGISTERED);
+      player.read(Protocol.BOARD);
+    }
+    yellow.read(Protocol.START);
+    red.read(Protocol.START);
+  }
+
+  @After
+  public void stopServer() throws IOException {
+    yellow.close();
+    red.close();
+    server.close();
+  }
+
+  private static TestClient spectate(GameServer server, int receiveBufferBytes)
+      throws IOException {
+    TestClient spectator = new TestClient(server, receiveBufferBytes);
+    spectator.register(false, "watched");
+    assertEquals('G', (char) spectator.read(Protocol.REGISTERED).get());
+    return spectator;
+  }
+
+  /**
+   * Yellow plays in column 3 and takes it back, for 16 bytes of frames
+   * per round, until three segments are full.
+   * @param reader spectator that reads along, null for none
+   */
+  private void fillSegments(TestClient reader, Watched watched) throws IOException {
+    int rounds = 3 * GameBroadcast.SEGMENT_BYTES / 16;
+    for (int i = 0; i < rounds; i ++) {
+      yellow.send(Protocol.MOVE, (byte) 3);
+      yellow.read(Protocol.MOVE_MADE);
+      red.read(Protocol.MOVE_MADE);
+      yellow.send(Protocol.UNDO);
+      yellow.read(Protocol.MOVE_UNDONE);
+      red.read(Protocol.MOVE_UNDONE);
+      if (reader != null) {
+        watched.readFrame(reader);
+        watched.readFrame(reader);
+      }
+    }
+  }
+
+  private void play(String moves) throws IOException {
+    for (int i = 0; i < moves.length(); i ++) {
+      TestClient mover = (i % 2 == 0) ? yellow : red;
+      mover.send(Protocol.MOVE, (byte) (moves.charAt(i) - '0'));
+      yellow.read(Protocol.MOVE_MADE);
+      red.read(Protocol.MOVE_MADE);
+    }
+  }
+
+  @Test
+  public void spectatorsEndWithWin() throws IOException {
+    TestClient prompt = spectate(server, 0);
+    TestClient slow = spectate(server, SOCKET_BUFFER_BYTES);
+    try {
+      Watched promptWatched = new Watched();
+      promptWatched.readFrame(prompt);
+      fillSegments(prompt, promptWatched);
+      play(WIN);
+      yellow.read(Protocol.WIN);
+
+      promptWatched.readGame(prompt);
+      assertEquals(Protocol.WIN, promptWatched.result);
+      promptWatched.assertBoard(WIN);
+      // Read along: every frame, and the one board it joined with
+      assertEquals(1, promptWatched.boards);
+      assertEquals(1 + 6 * GameBroadcast.SEGMENT_BYTES / 16 + WIN.length() + 1,
+          promptWatched.frames);
+
+      Watched slowWatched = new Watched();
+      slowWatched.readGame(slow);
+      assertEquals(Protocol.WIN, slowWatched.result);
+      slowWatched.assertBoard(WIN);
+      assertTrue(slowWatched.boards > 1);
+    } finally {
+      prompt.close();
+      slow.close();
+    }
+  }
+
+  @Test
+  public void slowSpectatorEndsWithTie() throws IOException {
+    TestClient slow = spectate(server, SOCKET_BUFFER_BYTES);
+    try {
+      fillSegments(null, null);
+      play(TIE);
+      yellow.read(Protocol.TIED);
+
+      Watched watched = new Watched();
+      watched.readGame(slow);
+      assertEquals(Protocol.TIED, watched.result);
+      watched.assertBoard(TIE);
+      assertTrue(watched.boards > 1);
+    } finally {
+      slow.close();
+    }
+  }
+}
@@ -0,0 +1,165 @@
+package network;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import model.GameSessionManager;
+import utilities.IBoardSnapshot;
+
+/**
+ * Protocol frames through a GameServer over loopback: a game played by
+ * two clients, and frames too short for their type.
+ */
+public class GameServerTest {
+  private GameServer server;
+
+  @Before
+  public void startServer() throws IOException {
+    server = new GameServer(new GameSessionManager(60000, 1),
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), null);
+    server.start();
+  }
+
+  @After
+  public void stopServer() throws IOException {
+    server.close();
+  }
+
+  @Test
+  public void playsGameOverLoopback() throws IOException {
+    TestClient yellow = new TestClient(server);
+    TestClient red = new TestClient(server);
+    try {
+      yellow.register(true, "loopback");
+      assertRegistered(yellow, 'Y', "Player1");
+      red.register(true, "loopback");
+      assertRegistered(red, 'R', "Player2");
+      assertEquals(1, yellow.read(Protocol.START).get());
+      assertEquals(0, red.read(Protocol.START).get());
+
+      // Yellow stacks column 3 while red plays column 4, and wins
+      for (int move = 1; move <= 7; move ++) {
+        TestClient mover = (move % 2 == 1) ? yellow : red;
+        int column = (move % 2 == 1) ? 3 : 4;
+        mover.send(Protocol.MOVE, (byte) column);
+        for (TestClient client : new TestClient[] {yellow, red}) {
+          ByteBuffer made = client.read(Protocol.MOVE_MADE);
+          assertEquals(column, made.get());
+          assertEquals(5 - (move - 1) / 2, made.get());
+          assertEquals((move % 2 == 1) ? 'Y' : 'R', (char) made.get());
+          assertEquals(move, made.getShort());
+        }
+      }
+      assertEquals('Y', (char) yellow.read(Protocol.WIN).get());
+      assertEquals('Y', (char) red.read(Protocol.WIN).get());
+      red.send(Protocol.MOVE, (byte) 0);
+      red.read(Protocol.NOT_IN_PROGRESS);
+    } finally {
+      yellow.close();
+      red.close();
+    }
+  }
+
+  private static void assertRegistered(TestClient client, char piece, String id)
+      throws IOException {
+    ByteBuffer registered = client.read(Protocol.REGISTERED);
+    assertEquals(piece, (char) registered.get());
+    assertEquals(id, Protocol.getString(registered));
+    ByteBuffer board = client.read(Protocol.BOARD);
+    assertEquals(6, board.get());
+    assertEquals(7, board.get());
+    assertEquals(0, board.getShort());
+  }
+
+  /**
+   * Every short frame is answered on its own, in one write with the
+   * frames that follow, none of which it may read as its payload.
+   */
+  @Test
+  public void rejectsFramesTooShortForTheirType() throws IOException {
+    TestClient client = new TestClient(server);
+    try {
+      byte[] id = "short".getBytes(StandardCharsets.UTF_8);
+      ByteBuffer frames = ByteBuffer.allocate(64);
+      // No type at all
+      frames.putShort((short) 0);
+      // MOVE without its column
+      frames.putShort((short) 1).put(Protocol.MOVE);
+      // REGISTER without its game ID
+      frames.putShort((short) 3).put(Protocol.REGISTER).put((byte) 0).put((byte) 1);
+      // REGISTER whose game ID runs past the frame
+      frames.putShort((short) 6).put(Protocol.REGISTER).put((byte) 0).put((byte) 1)
+          .put((byte) 10).put(id, 0, 2);
+      // A good one
+      frames.putShort((short) (4 + id.length)).put(Protocol.REGISTER).put((byte) 0)
+          .put((byte) 1).put((byte) id.length).put(id);
+      client.sendRaw(Arrays.copyOf(frames.array(), frames.position()));
+
+      for (int i = 0; i < 4; i ++) {
+        client.read(Protocol.INVALID_MOVE);
+      }
+      assertRegistered(client, 'Y', "Player1");
+      assertEquals(1, server.getGames().getNumberOfGames());
+    } finally {
+      client.close();
+    }
+  }
+
+  /**
+   * The board frame as Protocol writes it and a client reads it back.
+   */
+  @Test
+  public void boardFrameRoundTrip() {
+    final String cells = "  Y    R  ";
+    IBoardSnapshot board = new IBoardSnapshot() {
+      @Override
+      public char getPiece(int row, int col) {
+        return cells.charAt(row * 5 + col);
+      }
+
+      @Override
+      public int getMoveNumber() {
+        return 2;
+      }
+
+      @Override
+      public int getNumberOfRows() {
+        return 2;
+      }
+
+      @Override
+      public int getNumberOfCols() {
+        return 5;
+      }
+    };
+    ByteBuffer buffer = ByteBuffer.allocate(Protocol.boardFrameLength(board) + 1);
+    Protocol.putBoard(buffer, board);
+    assertEquals(Protocol.boardFrameLength(board), buffer.position());
+    buffer.flip();
+    assertEquals(buffer.remaining(), Protocol.completeFrameLength(buffer));
+    buffer.limit(buffer.limit() - 1);
+    assertEquals(-1, Protocol.completeFrameLength(buffer));
+    buffer.limit(buffer.limit() + 1);
+
+    buffer.getShort();
+    assertEquals(Protocol.BOARD, buffer.get());
+    assertEquals(2, buffer.get());
+    assertEquals(5, buffer.get());
+    assertEquals(2, buffer.getShort());
+    StringBuilder read = new StringBuilder();
+    while (buffer.hasRemaining()) {
+      read.append((char) buffer.get());
+    }
+    assertEquals(cells, read.toString());
+  }
+}
@@ -0,0 +1,96 @@
+package network;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Blocking client for the tests, speaking Protocol frames to a
+ * GameServer over loopback. A frame read is returned without its
+ * length field: the type, then the payload.
+ */
+class TestClient implements Closeable {
+  private static final int READ_TIMEOUT_MILLIS = 5000;
+
+  private final Socket socket;
+  private final DataInputStream in;
+  private final OutputStream out;
+
+  TestClient(GameServer server) throws IOException {
+    this(server, 0);
+  }
+
+  /**
+   * @param receiveBufferBytes socket receive buffer, 0 for the system's;
+   * a small one for a client that reads slowly
+   */
+  TestClient(GameServer server, int receiveBufferBytes) throws IOException {
+    socket = new Socket();
+    if (receiveBufferBytes > 0) {
+      socket.setReceiveBufferSize(receiveBufferBytes);
+    }
+    socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()));
+    socket.setTcpNoDelay(true);
+    socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+    in = new DataInputStream(socket.getInputStream());
+    out = socket.getOutputStream();
+  }
+
+  /**
+   * Sends bytes as they are, frames or not.
+   */
+  void sendRaw(byte... bytes) throws IOException {
+    out.write(bytes);
+    out.flush();
+  }
+
+  void send(byte type, byte... payload) throws IOException {
+    ByteBuffer frame = ByteBuffer.allocate(Protocol.LENGTH_BYTES + 1 + payload.length);
+    frame.putShort((short) (1 + payload.length)).put(type).put(payload);
+    sendRaw(frame.array());
+  }
+
+  void register(boolean isPlayer, String gameId) throws IOException {
+    byte[] id = gameId.getBytes(StandardCharsets.UTF_8);
+    byte[] payload = new byte[3 + id.length];
+    payload[0] = 0;
+    payload[1] = (byte) (isPlayer ? 1 : 0);
+    payload[2] = (byte) id.length;
+    System.arraycopy(id, 0, payload, 3, id.length);
+    send(Protocol.REGISTER, payload);
+  }
+
+  /**
+   * @return the next frame, type first
+   */
+  ByteBuffer read() throws IOException {
+    byte[] frame = new byte[in.readUnsignedShort()];
+    in.readFully(frame);
+    return ByteBuffer.wrap(frame);
+  }
+
+  /**
+   * Reads the next frame and checks its type.
+   * @return the frame, positioned after the type
+   */
+  ByteBuffer read(byte type) throws IOException {
+    ByteBuffer frame = read();
+    byte actual = frame.get();
+    if (actual != type) {
+      throw new AssertionError("expected frame 0x" + Integer.toHexString(type)
+          + ", got 0x" + Integer.toHexString(actual));
+    }
+    return frame;
+  }
+
+  @Override
+  public void close() throws IOException {
+    socket.close();
+  }
+}